@@ -2,14 +2,19 @@ package commons.box.app;
 
 
 import commons.box.app.bean.*;
+import commons.box.app.internal.InternalBeanCopier;
 import commons.box.app.internal.InternalBeanMapAccess;
+import commons.box.app.internal.InternalBeanMapper;
 import commons.box.app.internal.InternalBeanMetaAccess;
 import commons.box.app.internal.InternalBeanObjectAccess;
+import commons.box.app.internal.InternalBeanValidator;
+import commons.box.app.internal.InternalPropertyPath;
 import commons.box.util.Collects;
 import commons.box.util.Logs;
 import commons.box.util.Strs;
 
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -422,6 +427,79 @@ public class AppBean implements BeanAccess {
         return this;
     }
 
+    /**
+     * 编译多级属性路径 返回的实例可重复使用 避免每次调用时重新拆分路径及查找各级属性
+     * <p>
+     * root 为根对象的类型 用于预先解析属性链 可为空 运行时类型不同时按实际类型解析并缓存
+     *
+     * @param root
+     * @param path 属性路径 多级属性使用.分隔
+     * @return
+     * @throws AppError
+     */
+    public PropertyPath compile(Class<?> root, String path) throws AppError {
+        return new InternalPropertyPath(this, this.throwError, root, path);
+    }
+
+    /**
+     * 编译多级属性路径
+     *
+     * @param path 属性路径 多级属性使用.分隔
+     * @return
+     * @throws AppError
+     */
+    public PropertyPath compile(String path) throws AppError {
+        return this.compile(null, path);
+    }
+
+    /**
+     * 生成对象复制器 按属性名匹配且类型可赋值的属性会被复制 返回的实例可重复使用
+     *
+     * @param sourceType
+     * @param targetType
+     * @return
+     * @throws AppError
+     */
+    public <S, T> BeanCopier<S, T> copier(Class<S> sourceType, Class<T> targetType) throws AppError {
+        return new InternalBeanCopier<>(sourceType, targetType, null);
+    }
+
+    /**
+     * 生成对象复制器 converters 以目标属性名为键 定义了转换器的属性先转换再设置 不再要求类型可赋值
+     *
+     * @param sourceType
+     * @param targetType
+     * @param converters
+     * @return
+     * @throws AppError
+     */
+    public <S, T> BeanCopier<S, T> copier(Class<S> sourceType, Class<T> targetType, Map<String, TypeConverter<?, ?>> converters) throws AppError {
+        return new InternalBeanCopier<>(sourceType, targetType, converters);
+    }
+
+    /**
+     * 生成对象与Map之间的转换器 返回的实例可重复使用
+     *
+     * @param type
+     * @return
+     * @throws AppError
+     */
+    public <T> BeanMapper<T> mapper(Class<T> type) throws AppError {
+        return new InternalBeanMapper<>(type);
+    }
+
+    /**
+     * 生成对象验证器 validators 以属性名为键 每个属性的规则按列表顺序执行 返回的实例可重复使用
+     *
+     * @param type
+     * @param validators
+     * @return
+     * @throws AppError
+     */
+    public <T> BeanValidator<T> validator(Class<T> type, Map<String, List<DataValidator<?>>> validators) throws AppError {
+        return new InternalBeanValidator<>(type, validators);
+    }
+
     @SuppressWarnings("ConstantConditions")
     private <T, O> O get(BeanAccess bo, T bean, String prop) throws AppError {
         if (bo == null || bean == null || prop == null) return null;
@@ -1,12 +1,13 @@
 package commons.box.app;
 
+import commons.box.app.internal.InternalASMClassAccess;
 import commons.box.app.internal.InternalClassAccess;
 import commons.box.util.Logs;
 import commons.box.util.Strs;
 import commons.box.util.Types;
 
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>创建作者：xingxiuyi </p>
@@ -14,23 +15,89 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public final class AppClass<T> {
     private static final AppLog LOG = Logs.get(AppClass.class);
-    private static final String ASM_CLASS_LOADER_NAME = "commons.box.bean.InternalASMClassAccess";
-    private static final Map<String, AppClass<?>> CACHE_DEFAULT = new ConcurrentHashMap<>();
-    private static final Map<String, AppClass<?>> CACHE_ASM = new ConcurrentHashMap<>();
-
-    private static final Map<String, AppClass<?>> CACHE_INNER = new SafeRefMap<>(); // TODO 需使用单例 独立的用于缓存临时类的空间
-
+    private static final String ASM_CLASS_LOADER_NAME = "commons.box.app.internal.InternalASMClassAccess";
+    // 按类缓存 值保存在对应的 Class 中 随类加载器一同卸载 不同类加载器的同名类互不影响
+    private static final Map<AccessStrategy, ClassValue<AppClass<?>>> CACHES = createCaches();
+    // 匿名类、合成类或CGLIB等生成的类 按其对应的用户类缓存 使用反射机制
+    private static final ClassValue<AppClass<?>> CACHE_INNER = new ClassCache(AccessStrategy.REFLECT, false);
 
     private static final AccessClassLoader LOADER_DEFAULT = new InternalClassLoader();
-    public static AccessClassLoader LOADER_ASM = LOADER_DEFAULT;
+    public static final AccessClassLoader LOADER_HANDLE = new InternalHandleClassLoader();
+    public static final AccessClassLoader LOADER_ASM = new InternalASMClassLoader();
 
     private static final boolean ASM = detectASM();
-    private static final AppClass<Object> DEFAULT = new AppClass<>(ASM, Object.class);
+    private static final AccessStrategy STRATEGY = detectStrategy();
+    private static final boolean LAZY = detectLazy();
+    private static final String INDEX = System.getProperty(AppClass.INDEX_FILE);
+    private static final AppClass<Object> DEFAULT = new AppClass<>(STRATEGY, Object.class);
     /**
-     * 当 app.asm=false 时使用默认机制, 而不是使用ASM
+     * 当 app.asm=true 时默认使用ASM机制 未设置或为false时默认使用反射机制
      */
     public static final String ASM_ENABLE = "app.asm";
 
+    /**
+     * 指定默认的访问策略 值为 AccessStrategy 的名称(不区分大小写) 如 app.access=handle 优先于 app.asm
+     */
+    public static final String ACCESS_STRATEGY = "app.access";
+
+    /**
+     * 当 app.lazy=true 时类的字段、方法、属性及注解信息在首次使用时才扫描
+     */
+    public static final String LAZY_ENABLE = "app.lazy";
+
+    /**
+     * 类信息索引文件 指定后启动时从该文件恢复类的属性、字段及方法列表 退出时写回新扫描的类
+     */
+    public static final String INDEX_FILE = "app.index";
+
+    /**
+     * 类成员的访问策略
+     */
+    public static enum AccessStrategy {
+        /**
+         * 基于反射 Method.invoke/Field.get
+         */
+        REFLECT,
+        /**
+         * 构造时绑定 MethodHandle 调用时通过 MethodHandle 访问 便于JIT内联
+         */
+        HANDLE,
+        /**
+         * 属性访问生成字节码实现 字段与方法使用 MethodHandle
+         */
+        ASM
+    }
+
+    private static Map<AccessStrategy, ClassValue<AppClass<?>>> createCaches() {
+        Map<AccessStrategy, ClassValue<AppClass<?>>> caches = new EnumMap<>(AccessStrategy.class);
+        for (AccessStrategy as : AccessStrategy.values()) caches.put(as, new ClassCache(as, true));
+        return caches;
+    }
+
+    /**
+     * 检测默认的访问策略
+     *
+     * @return
+     */
+    private static AccessStrategy detectStrategy() {
+        String as = System.getProperty(ACCESS_STRATEGY);
+        if (Strs.isNotBlank(as)) {
+            for (AccessStrategy s : AccessStrategy.values()) if (s.name().equalsIgnoreCase(as.trim())) return s;
+            LOG.warn("未知的访问策略 " + ACCESS_STRATEGY + "=" + as + " 使用默认策略");
+        }
+        return ASM ? AccessStrategy.ASM : AccessStrategy.REFLECT;
+    }
+
+    /**
+     * 检测是否延迟扫描类信息
+     *
+     * @return
+     */
+    private static boolean detectLazy() {
+        String lz = System.getProperty(LAZY_ENABLE);
+        return Strs.isNotBlank(lz) && Types.isTrue(lz);
+    }
+
     /**
      * 检测是否使用asm
      *
@@ -38,7 +105,7 @@ public final class AppClass<T> {
      */
     private static boolean detectASM() {
         String ad = System.getProperty(ASM_ENABLE);
-        if (Strs.isNotBlank(ad) && !Types.isTrue(ad)) return false;
+        if (Strs.isBlank(ad) || !Types.isTrue(ad)) return false;
 
         try {
             Class<?> asmcls = Class.forName(ASM_CLASS_LOADER_NAME);
@@ -58,39 +125,51 @@ public final class AppClass<T> {
      * @param type
      * @return
      */
-    @SuppressWarnings("unchecked")
-    private static AppClass<?> loadFromCache(boolean enableASM, Class<?> type) {
+    private static AppClass<?> loadFromCache(AccessStrategy strategy, Class<?> type) {
         if (type == null) return DEFAULT;
-        String tn = type.getName();
-        if (tn == null) return DEFAULT;
-        Map<String, AppClass<?>> CACHE = enableASM ? CACHE_ASM : CACHE_DEFAULT;
-        if (CACHE == null) return DEFAULT;
-
-        AppClass<?> ai = CACHE.get(tn);
-        if (ai == null) {
-            if (Strs.contains(tn, Types.CLASS_INNER_SEPARATOR)) { // 匿名类或CGLIB 使用独立的存储机制 且使用默认反射而不是使用asm
-                type = Types.getUserClass(type);
-                tn = type.getName();
-                if (tn == null) return DEFAULT;
-                ai = CACHE_INNER.get(tn);
-                if (ai == null) {
-                    try {
-                        ai = new AppClass<>(false, type);
-                    } catch (Throwable e) {
-                        ai = DEFAULT;
-                    }
-                    CACHE_INNER.put(tn, ai);
-                }
-            } else {
-                try {
-                    ai = new AppClass<>(enableASM, type);
-                } catch (Throwable e) {
-                    ai = DEFAULT;
-                }
-                CACHE.put(tn, ai);
+        ClassValue<AppClass<?>> cache = (strategy != null) ? CACHES.get(strategy) : null;
+        if (cache == null) return DEFAULT;
+        return cache.get(type);
+    }
+
+    /**
+     * 按类保存的实例 首次访问时创建 创建失败时使用 DEFAULT
+     */
+    private static final class ClassCache extends ClassValue<AppClass<?>> {
+        private final AccessStrategy strategy;
+        private final boolean detectInner;
+
+        private ClassCache(AccessStrategy strategy, boolean detectInner) {
+            this.strategy = strategy;
+            this.detectInner = detectInner;
+        }
+
+        @Override
+        protected AppClass<?> computeValue(Class<?> type) {
+            String tn = type.getName();
+            if (tn == null) return DEFAULT;
+            if (this.detectInner && isGenerated(type, tn)) { // 匿名类或CGLIB 使用独立的存储机制 且使用默认反射而不是使用asm
+                Class<?> ut = Types.getUserClass(type);
+                return (ut != null) ? CACHE_INNER.get(ut) : DEFAULT;
+            }
+
+            try {
+                return new AppClass<>(this.strategy, type);
+            } catch (Throwable e) {
+                return DEFAULT;
             }
         }
-        return ai;
+    }
+
+    /**
+     * 是否匿名类、合成类或CGLIB生成的类 普通的静态内部类不属于此类
+     *
+     * @param type
+     * @param name
+     * @return
+     */
+    private static boolean isGenerated(Class<?> type, String name) {
+        return type.isAnonymousClass() || type.isSynthetic() || Strs.contains(name, Types.CLASS_GLIBC_SEPARATOR);
     }
 
     /**
@@ -99,9 +178,20 @@ public final class AppClass<T> {
      * @param type
      * @return
      */
-    @SuppressWarnings("unchecked")
     public static <C> AppClass<C> from(boolean enableASM, Class<C> type) {
-        return (AppClass<C>) loadFromCache(enableASM, type);
+        return from(enableASM ? AccessStrategy.ASM : AccessStrategy.REFLECT, type);
+    }
+
+    /**
+     * 公共方法 按指定的访问策略获取实例 不同策略的实例独立缓存 可用于对比各策略
+     *
+     * @param strategy
+     * @param type
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <C> AppClass<C> from(AccessStrategy strategy, Class<C> type) {
+        return (AppClass<C>) loadFromCache((strategy != null) ? strategy : STRATEGY, type);
     }
 
     /**
@@ -111,7 +201,34 @@ public final class AppClass<T> {
      * @return
      */
     public static <C> AppClass<C> from(Class<C> type) {
-        return from(ASM, type);
+        return from(STRATEGY, type);
+    }
+
+    /**
+     * 默认的访问策略
+     *
+     * @return
+     */
+    public static AccessStrategy strategy() {
+        return STRATEGY;
+    }
+
+    /**
+     * 是否延迟扫描类信息
+     *
+     * @return
+     */
+    public static boolean lazy() {
+        return LAZY;
+    }
+
+    /**
+     * 类信息索引文件 未指定时返回null
+     *
+     * @return
+     */
+    public static String index() {
+        return INDEX;
     }
 
     public static interface AccessClassLoader {
@@ -129,8 +246,33 @@ public final class AppClass<T> {
         }
     }
 
-    private static <T> InternalClassAccess<T> loadinst(boolean enableASM, Class<T> objectClass) {
-        AccessClassLoader cl = enableASM ? LOADER_ASM : LOADER_DEFAULT;
+    private static final class InternalHandleClassLoader implements AccessClassLoader {
+        private InternalHandleClassLoader() {
+        }
+
+        @Override
+        public <T> InternalClassAccess<T> inst(Class<T> objectClass) {
+            LOG.debug("载入了 ClassAccess(HANDLE) 实例 - " + objectClass);
+            return new InternalClassAccess<T>(objectClass.getName(), objectClass, AccessStrategy.HANDLE);
+        }
+    }
+
+    private static final class InternalASMClassLoader implements AccessClassLoader {
+        private InternalASMClassLoader() {
+        }
+
+        @Override
+        public <T> InternalClassAccess<T> inst(Class<T> objectClass) {
+            LOG.debug("载入了 ClassAccess(ASM) 实例 - " + objectClass);
+            return new InternalASMClassAccess<T>(objectClass);
+        }
+    }
+
+    private static <T> InternalClassAccess<T> loadinst(AccessStrategy strategy, Class<T> objectClass) {
+        AccessClassLoader cl;
+        if (strategy == AccessStrategy.ASM) cl = LOADER_ASM;
+        else if (strategy == AccessStrategy.HANDLE) cl = LOADER_HANDLE;
+        else cl = LOADER_DEFAULT;
         if (cl == null) cl = LOADER_DEFAULT;
         return cl.inst(objectClass);
     }
@@ -138,10 +280,10 @@ public final class AppClass<T> {
     private final String name;
     private final InternalClassAccess<T> accessClass;
 
-    private AppClass(boolean enableASM, Class<T> objectClass) throws AppError {
+    private AppClass(AccessStrategy strategy, Class<T> objectClass) throws AppError {
         if (objectClass == null) throw AppError.error("无法创建 AppClass 缺少类型");
         this.name = objectClass.getName();
-        this.accessClass = loadinst(enableASM, objectClass);
+        this.accessClass = loadinst(strategy, objectClass);
     }
 
     /**
@@ -0,0 +1,27 @@
+package commons.box.app;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批量数据载入器 DataCache.getAll 中未缓存的键通过一次 loadAll 载入
+ *
+ * @param <K>
+ * @param <V>
+ */
+public interface BatchDataLoader<K, V> extends DataLoader<K, V> {
+    /**
+     * 批量载入 结果中缺少的键按null值缓存
+     *
+     * @param keys
+     * @return
+     */
+    public Map<K, V> loadAll(Set<K> keys);
+
+    @Override
+    public default V load(K key) {
+        Map<K, V> map = this.loadAll(Collections.singleton(key));
+        return (map != null) ? map.get(key) : null;
+    }
+}
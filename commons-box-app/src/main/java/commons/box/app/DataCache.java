@@ -1,23 +1,59 @@
 package commons.box.app;
 
-import com.google.common.cache.*;
-
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import commons.box.app.internal.InternalDataCacheCounter;
+import commons.box.app.internal.InternalDataCacheOffHeap;
+import commons.box.app.internal.InternalDataCacheStatsMXBean;
+import commons.box.util.Logs;
+
+import javax.management.ObjectName;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * 数据map 通过定义loader来实现值得载入机制
  * <p>
- * 如果定义了max（值大于0时），此类将按需清除部分记录
+ * 如果定义了max（值大于0时），此类将按需清除部分记录 也可以通过maxWeight按 {@link DataWeigher} 计算的权重总和限制大小
+ * <p>
+ * 定义了堆外容量时 因容量限制被清除的记录序列化后转入堆外存储 再次读取时从堆外取回 不需要调用loader 取回的记录仍按最初写入的时间过期 堆外空间回收时丢弃的记录计为清除并通知移除命令
+ * <p>
+ * loader为 {@link BatchDataLoader} 时 getAll 中未缓存的键通过一次 loadAll 载入
+ * <p>
+ * 通过 stats 获取命中、载入耗时及清除次数的统计 也可以注册为JMX MBean
+ * <p>
+ * 同一个键同时只有一个线程执行载入 其他线程等待载入结果 定义了refreshAfterWrite时 到期的记录在执行器中异步重新载入 载入完成前仍返回旧值
  *
  * @author xingxiuyi
  * 创建于 14/12/14
  * 版权所有 xingxiuyi
  */
 public final class DataCache<K, V> {
-    private final LoadingCache<K, DataEntry<K, V>> cache;
+    private static final AppLog LOG = Logs.get(DataCache.class);
+
+    private final LoadingCache<K, Stored<V>> cache;
+    private final Executor executor;
+    private final OffHeap<K, V> offHeap;
+    private final InternalDataCacheCounter counter;
 
     public static <K, V> DataCache<K, V> build() {
         Spec spec = new Spec(-1);
@@ -67,73 +103,209 @@ public final class DataCache<K, V> {
         return build(loader, spec, removalCmd);
     }
 
+    /**
+     * 缓存构建器 用于设置异步刷新等更多特性
+     *
+     * @param <K>
+     * @param <V>
+     * @return
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
     private static <K, V> DataCache<K, V> build(DataLoader<K, V> loader, Spec spec) {
         return build(loader, spec, null);
     }
 
-    @SuppressWarnings("unchecked")
     private static <K, V> DataCache<K, V> build(DataLoader<K, V> loader, Spec spec, Consumer<DataEntry<K, V>> removalCmd) {
-        CacheBuilder<K, DataEntry<K, V>> cb = (CacheBuilder) CacheBuilder.newBuilder();
+        return build(loader, spec, removalCmd, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> DataCache<K, V> build(DataLoader<K, V> loader, Spec spec, Consumer<DataEntry<K, V>> removalCmd, DataCacheStatsListener statsListener) {
+        CacheBuilder<K, Stored<V>> cb = (CacheBuilder) CacheBuilder.newBuilder();
+        Executor executor = (spec != null && spec.executor != null) ? spec.executor : DefaultExecutor.INSTANCE;
         if (spec != null) {
+            if (spec.max > 0 && spec.maxWeight > 0) throw AppError.error("DataCache不能同时设置max与maxWeight");
             if (spec.max > 0) cb = cb.maximumSize(spec.max);
+            if (spec.maxWeight > 0) {
+                DataWeigher<K, V> weigher = (spec.weigher != null) ? (DataWeigher<K, V>) spec.weigher : DataWeigher.bytes();
+                cb = cb.maximumWeight(spec.maxWeight).weigher(new Weighers<>(weigher));
+            }
             if (spec.expireAfterAccess > 0) cb = cb.expireAfterAccess(spec.expireAfterAccess, TimeUnit.MILLISECONDS);
             if (spec.expireAfterWrite > 0) cb = cb.expireAfterWrite(spec.expireAfterWrite, TimeUnit.MILLISECONDS);
+            if (spec.refreshAfterWrite > 0) cb = cb.refreshAfterWrite(spec.refreshAfterWrite, TimeUnit.MILLISECONDS);
             if (spec.initCapacity > 0) cb = cb.initialCapacity(spec.initCapacity);
         }
 
-        if (removalCmd != null) cb = cb.removalListener(new RemovalCmds<>(removalCmd));
+        SafeLinkedMap.Ticker ticker = (spec != null && spec.ticker != null) ? spec.ticker : System::nanoTime;
+        if (spec != null && spec.ticker != null) cb = cb.ticker(new Ticker() {
+            @Override
+            public long read() {
+                return ticker.read();
+            }
+        });
 
-        return new DataCache(cb.build(new DataCacheLoader<>(loader)));
+        InternalDataCacheCounter counter = new InternalDataCacheCounter(statsListener);
+        OffHeap<K, V> offHeap = null;
+        if (spec != null && spec.offHeapCapacity > 0) {
+            DataSerializer<V> serializer = (spec.serializer != null) ? (DataSerializer<V>) spec.serializer : DataSerializer.serializable();
+            offHeap = new OffHeap<>(spec.offHeapCapacity, serializer, spec.expireAfterWrite, spec.expireAfterAccess, ticker, removalCmd, counter);
+        }
+
+        cb = cb.removalListener(new RemovalCmds<>(removalCmd, offHeap, counter));
+
+        // 重新载入在执行器中进行 载入期间读取方得到旧值
+        CacheLoader<K, Stored<V>> cl = CacheLoader.asyncReloading(new DataCacheLoader<>(loader, offHeap, counter), executor);
+        return new DataCache(cb.build(cl), executor, offHeap, counter);
     }
 
-    private DataCache(LoadingCache<K, DataEntry<K, V>> cache) {
+    private DataCache(LoadingCache<K, Stored<V>> cache, Executor executor, OffHeap<K, V> offHeap, InternalDataCacheCounter counter) {
         this.cache = cache;
+        this.executor = executor;
+        this.offHeap = offHeap;
+        this.counter = counter;
     }
 
     public V get(K key) {
         try {
-            DataEntry<K, V> nv = this.cache.get(key);
-            if (nv != null) return nv.getValue();
-        } catch (Throwable e) {
-            throw new AppError("DataCache载入元素出错", e);
+            Stored<V> nv = this.present(key);
+            if (nv == null) nv = this.cache.get(key);
+            if (nv != null) return nv.value;
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            throw loadError(e);
         }
         return null;
     }
 
+    /**
+     * 获取值 不存在时使用传入的loader载入 同一键并发缺失时只执行一次载入
+     *
+     * @param key
+     * @param loader
+     * @return
+     */
     public V get(K key, DataLoader<K, V> loader) {
         if (loader == null) return this.get(key);
-        DataEntry<K, V> nv = this.cache.getIfPresent(key);
-        if (nv == null) {
-            nv = new DataEntry<>(key, loader.load(key));
-            this.cache.put(key, nv);
+        try {
+            Stored<V> nv = this.present(key);
+            if (nv == null) nv = this.cache.get(key, () -> {
+                Stored<V> de = (this.offHeap != null) ? this.offHeap.promote(key) : null;
+                return (de != null) ? de : Stored.of(this.offHeap, load(this.counter, loader, key));
+            });
+            if (nv != null) return nv.value;
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            throw loadError(e);
         }
+        return null;
+    }
 
-        return nv.getValue();
+    /**
+     * 载入出错时 loader 抛出的 AppError 原样返回 其他异常包装为 AppError
+     */
+    private static AppError loadError(Throwable e) {
+        Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+        if (cause instanceof AppError) return (AppError) cause;
+        return AppError.error("DataCache载入元素出错", cause);
+    }
+
+    /**
+     * 异步获取值 已缓存时直接返回完成的结果 否则在执行器中载入
+     *
+     * @param key
+     * @return
+     */
+    public CompletableFuture<V> getAsync(K key) {
+        Stored<V> nv = this.fresh(key, this.cache.getIfPresent(key));
+        if (nv != null) {
+            this.counter.recordHits(1);
+            return CompletableFuture.completedFuture(nv.value);
+        }
+        return CompletableFuture.supplyAsync(() -> this.get(key), this.executor);
+    }
+
+    /**
+     * 异步获取值 不存在时使用传入的loader载入
+     *
+     * @param key
+     * @param loader
+     * @return
+     */
+    public CompletableFuture<V> getAsync(K key, DataLoader<K, V> loader) {
+        Stored<V> nv = this.fresh(key, this.cache.getIfPresent(key));
+        if (nv != null) {
+            this.counter.recordHits(1);
+            return CompletableFuture.completedFuture(nv.value);
+        }
+        return CompletableFuture.supplyAsync(() -> this.get(key, loader), this.executor);
+    }
+
+    /**
+     * 在执行器中重新载入 载入完成前仍返回旧值
+     *
+     * @param key
+     */
+    public void refresh(K key) {
+        if (key == null) return;
+        this.cache.refresh(key);
     }
 
     public V getIfPresent(K key) {
-        DataEntry<K, V> nv = this.cache.getIfPresent(key);
-        if (nv != null) return nv.getValue();
+        Stored<V> nv = this.present(key);
+        if (nv == null && this.offHeap != null && key != null) {
+            nv = this.offHeap.promote(key);
+            if (nv != null) this.cache.asMap().putIfAbsent(key, nv);
+        }
+        if (nv != null) return nv.value;
         else return null;
     }
 
+    /**
+     * 批量获取 重复的键只计算一次 未缓存的键一次载入
+     *
+     * @param keys
+     * @return
+     */
     public Map<K, V> getAll(Iterable<? extends K> keys) {
         Map<K, V> map = new HashMap<>();
+        if (keys == null) return map;
+        Set<K> requests = new LinkedHashSet<>();
+        for (K key : keys) if (key != null) requests.add(key);
+        if (requests.isEmpty()) return map;
         try {
-            Map<K, DataEntry<K, V>> all = this.cache.getAll(keys);
-            if (all != null) for (Map.Entry<K, DataEntry<K, V>> me : all.entrySet()) {
+            Map<K, Stored<V>> all = new HashMap<>(requests.size());
+            for (K key : requests) {
+                Stored<V> nv = this.fresh(key, this.cache.getIfPresent(key));
+                if (nv != null) all.put(key, nv);
+            }
+            this.counter.recordHits(all.size());
+            if (requests.size() > all.size()) {
+                this.counter.recordMisses(requests.size() - all.size());
+                all = this.cache.getAll(requests);
+            }
+            for (Map.Entry<K, Stored<V>> me : all.entrySet()) {
                 if (me == null || me.getKey() == null || me.getValue() == null) continue;
-                map.put(me.getKey(), me.getValue().getValue());
+                map.put(me.getKey(), me.getValue().value);
             }
-        } catch (Throwable e) {
-            throw new AppError("DataCache载入元素出错", e);
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            throw loadError(e);
         }
         return map;
     }
 
+    /**
+     * 写入 先移除堆外的旧记录再写入堆内 避免写入后新值随即转入堆外又被移除
+     * <p>
+     * 两步之间旧值仍可能因容量转入堆外 其过期时间不晚于新值 新值被替换或移除时会一并移除 因容量转入堆外时覆盖旧值
+     *
+     * @param key
+     * @param value
+     */
     public void put(K key, V value) {
         if (key == null) return;
-        this.cache.put(key, new DataEntry<>(key, value));
+        if (this.offHeap != null) this.offHeap.store.remove(key);
+        this.cache.put(key, Stored.of(this.offHeap, value));
     }
 
     public void putAll(Map<K, V> map) {
@@ -145,21 +317,143 @@ public final class DataCache<K, V> {
         return this.cache.size();
     }
 
+    /**
+     * 移除 先移除堆内记录再移除堆外记录 避免移除期间旧值转入堆外后被再次取回
+     *
+     * @param key
+     */
     public void remove(K key) {
+        if (key == null) return;
         this.cache.invalidate(key);
+        if (this.offHeap != null) this.offHeap.store.remove(key);
+    }
+
+    /**
+     * 统计快照
+     *
+     * @return
+     */
+    public DataCacheStats stats() {
+        return this.counter.snapshot();
+    }
+
+    /**
+     * 将统计注册为JMX MBean 名称为 commons.box:type=DataCache,name=名称 已存在同名注册时出错
+     * <p>
+     * MBean 只弱引用缓存 不再使用时应调用 unregisterMBean 注销
+     *
+     * @param name
+     * @return
+     * @throws AppError
+     */
+    public ObjectName registerMBean(String name) throws AppError {
+        return InternalDataCacheStatsMXBean.register("DataCache", name, this, DataCache::stats, DataCache::size);
+    }
+
+    /**
+     * 注销 registerMBean 注册的MBean
+     *
+     * @param name
+     * @return 未注册时返回false
+     * @throws AppError
+     */
+    public boolean unregisterMBean(String name) throws AppError {
+        return InternalDataCacheStatsMXBean.unregister("DataCache", name);
+    }
+
+    /**
+     * 已缓存的值 同时记录命中或未命中
+     */
+    private Stored<V> present(K key) {
+        Stored<V> nv = (key != null) ? this.fresh(key, this.cache.getIfPresent(key)) : null;
+        if (nv != null) this.counter.recordHits(1);
+        else this.counter.recordMisses(1);
+        return nv;
+    }
+
+    /**
+     * 堆外取回的记录按原写入时间过期 已过期时从缓存中移除并返回null
+     */
+    private Stored<V> fresh(K key, Stored<V> nv) {
+        if (nv == null || !nv.promoted || nv.expireAt > this.offHeap.now()) return nv;
+        this.cache.asMap().remove(key, nv);
+        return null;
+    }
+
+    /**
+     * 调用loader载入并记录耗时
+     */
+    private static <K, V> V load(InternalDataCacheCounter counter, DataLoader<K, V> loader, K key) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            V value = loader.load(key);
+            success = true;
+            return value;
+        } finally {
+            counter.recordLoad(System.nanoTime() - start, success);
+        }
+    }
+
+    /**
+     * 堆外记录数 未启用堆外存储时返回0
+     *
+     * @return
+     */
+    public long offHeapSize() {
+        return (this.offHeap != null) ? this.offHeap.store.size() : 0;
+    }
+
+    /**
+     * 移除指定的多个键 与 remove 相同 先移除堆内记录再移除堆外记录
+     *
+     * @param keys
+     */
+    public void invalidateAll(Iterable<? extends K> keys) {
+        if (keys == null) return;
+        if (this.offHeap == null) {
+            this.cache.invalidateAll(keys);
+            return;
+        }
+        Set<K> ks = new LinkedHashSet<>();
+        for (K key : keys) if (key != null) ks.add(key);
+        this.cache.invalidateAll(ks);
+        for (K key : ks) this.offHeap.store.remove(key);
     }
 
+    /**
+     * 移除键满足条件的记录 直接遍历缓存 不生成副本 先移除堆内记录再移除堆外记录
+     *
+     * @param predicate
+     */
+    public void invalidateIf(Predicate<? super K> predicate) {
+        if (predicate == null) return;
+        this.cache.asMap().keySet().removeIf(predicate);
+        if (this.offHeap != null) this.offHeap.store.removeIf(predicate);
+    }
+
+    /**
+     * 移除全部记录 包括堆外记录 先移除堆内记录再移除堆外记录
+     */
+    public void invalidateAll() {
+        this.cache.invalidateAll();
+        if (this.offHeap != null) this.offHeap.store.clear();
+    }
+
+    /**
+     * 移除全部记录 同 invalidateAll()
+     */
     public void clear() {
-        this.cache.cleanUp();
+        this.invalidateAll();
     }
 
     public Map<K, V> asMap() {
         Map<K, V> map = new HashMap<>();
         try {
-            Map<K, DataEntry<K, V>> all = this.cache.asMap();
-            if (all != null) for (Map.Entry<K, DataEntry<K, V>> me : all.entrySet()) {
+            Map<K, Stored<V>> all = this.cache.asMap();
+            if (all != null) for (Map.Entry<K, Stored<V>> me : all.entrySet()) {
                 if (me == null || me.getKey() == null || me.getValue() == null) continue;
-                map.put(me.getKey(), me.getValue().getValue());
+                map.put(me.getKey(), me.getValue().value);
             }
         } catch (Throwable e) {
             throw AppError.error("DataCache载入元素出错", e);
@@ -167,17 +461,145 @@ public final class DataCache<K, V> {
         return map;
     }
 
-    private static class DataCacheLoader<K, V> extends CacheLoader<K, DataEntry<K, V>> {
+    private static class DataCacheLoader<K, V> extends CacheLoader<K, Stored<V>> {
         private final DataLoader<K, V> loader;
+        private final OffHeap<K, V> offHeap;
+        private final InternalDataCacheCounter counter;
 
-        public DataCacheLoader(DataLoader<K, V> loader) {
+        public DataCacheLoader(DataLoader<K, V> loader, OffHeap<K, V> offHeap, InternalDataCacheCounter counter) {
             this.loader = (loader == null) ? new EmptyLoader<K, V>() : loader;//保证loader不为空
+            this.offHeap = offHeap;
+            this.counter = counter;
+        }
+
+        @SuppressWarnings("NullableProblems")
+        @Override
+        public Stored<V> load(K key) throws Exception {
+            Stored<V> de = (this.offHeap != null) ? this.offHeap.promote(key) : null;
+            if (de != null) return de;
+            return Stored.of(this.offHeap, DataCache.load(this.counter, this.loader, key));
         }
 
         @SuppressWarnings("NullableProblems")
         @Override
-        public DataEntry<K, V> load(K key) throws Exception {
-            return new DataEntry<>(key, this.loader.load(key));
+        public Map<K, Stored<V>> loadAll(Iterable<? extends K> keys) throws Exception {
+            if (!(this.loader instanceof BatchDataLoader)) return super.loadAll(keys);//逐个载入
+
+            Map<K, Stored<V>> map = new HashMap<>();
+            Set<K> misses = new LinkedHashSet<>();
+            for (K key : keys) {
+                Stored<V> de = (this.offHeap != null) ? this.offHeap.promote(key) : null;
+                if (de != null) map.put(key, de);
+                else misses.add(key);
+            }
+            if (misses.isEmpty()) return map;
+
+            // 载入结果中缺少的键按null值缓存 避免重复载入
+            Map<K, V> loaded;
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                loaded = ((BatchDataLoader<K, V>) this.loader).loadAll(misses);
+                success = true;
+            } finally {
+                this.counter.recordLoad(System.nanoTime() - start, success);
+            }
+            for (K key : misses) map.put(key, Stored.of(this.offHeap, (loaded != null) ? loaded.get(key) : null));
+            return map;
+        }
+    }
+
+    /**
+     * 缓存中保存的值 expireAt 为按写入时间计算的过期时间(时间源的纳秒值)
+     * <p>
+     * 堆外取回的记录沿用转入前的过期时间 堆内按取回时间计算的过期不会延长其有效期
+     */
+    private static final class Stored<V> {
+        private final V value;
+        private final long expireAt;
+        private final boolean promoted;
+
+        private Stored(V value, long expireAt, boolean promoted) {
+            this.value = value;
+            this.expireAt = expireAt;
+            this.promoted = promoted;
+        }
+
+        private static <V> Stored<V> of(OffHeap<?, V> offHeap, V value) {
+            return new Stored<>(value, (offHeap != null) ? offHeap.writeDeadline() : Long.MAX_VALUE, false);
+        }
+    }
+
+    /**
+     * 堆外存储及序列化器 过期时间按时间源的纳秒值计算
+     */
+    private static class OffHeap<K, V> {
+        private final InternalDataCacheOffHeap<K> store;
+        private final DataSerializer<V> serializer;
+        private final long expireAfterWrite;
+        private final long expireAfterAccess;
+        private final SafeLinkedMap.Ticker ticker;
+        private final Consumer<DataEntry<K, V>> cmd;
+        private final InternalDataCacheCounter counter;
+
+        public OffHeap(long capacity, DataSerializer<V> serializer, long expireAfterWrite, long expireAfterAccess,
+                       SafeLinkedMap.Ticker ticker, Consumer<DataEntry<K, V>> cmd, InternalDataCacheCounter counter) {
+            this.store = new InternalDataCacheOffHeap<>(capacity, ticker::read, this::evicted);
+            this.serializer = serializer;
+            this.expireAfterWrite = (expireAfterWrite > 0) ? TimeUnit.MILLISECONDS.toNanos(expireAfterWrite) : -1;
+            this.expireAfterAccess = (expireAfterAccess > 0) ? TimeUnit.MILLISECONDS.toNanos(expireAfterAccess) : -1;
+            this.ticker = ticker;
+            this.cmd = cmd;
+            this.counter = counter;
+        }
+
+        public long now() {
+            return this.ticker.read();
+        }
+
+        public long writeDeadline() {
+            return (this.expireAfterWrite > 0) ? this.now() + this.expireAfterWrite : Long.MAX_VALUE;
+        }
+
+        /**
+         * 转入堆外 过期时间沿用写入时的期限 定义了expireAfterAccess时不晚于转入时间加上访问期限
+         *
+         * @return 是否已转入 值为null、无法序列化或超过块大小时返回false
+         */
+        public boolean demote(K key, Stored<V> stored) {
+            if (key == null || stored == null || stored.value == null) return false;
+            long expireAt = stored.expireAt;
+            if (this.expireAfterAccess > 0) expireAt = Math.min(expireAt, this.now() + this.expireAfterAccess);
+            try {
+                return this.store.put(key, this.serializer.serialize(stored.value), expireAt);
+            } catch (Throwable e) {
+                LOG.warn("DataCache无法将元素转入堆外 " + key, e);
+            }
+            return false;
+        }
+
+        /**
+         * 堆外回收块时丢弃的未过期记录 计为清除并通知移除命令
+         */
+        private void evicted(K key, byte[] value) {
+            this.counter.recordEviction();
+            if (this.cmd == null) return;
+            try {
+                this.cmd.accept(new DataEntry<>(key, this.serializer.deserialize(value)));
+            } catch (Throwable e) {
+                LOG.warn("DataCache无法通知堆外清除的元素 " + key, e);
+            }
+        }
+
+        public Stored<V> promote(K key) {
+            InternalDataCacheOffHeap.Record record = this.store.take(key);
+            if (record == null) return null;
+            try {
+                return new Stored<>(this.serializer.deserialize(record.value()), record.expireAt(), true);
+            } catch (Throwable e) {
+                LOG.warn("DataCache无法从堆外取回元素 " + key, e);
+            }
+            return null;
         }
     }
 
@@ -188,19 +610,214 @@ public final class DataCache<K, V> {
         }
     }
 
-    private static class RemovalCmds<K, V> implements RemovalListener<K, DataEntry<K, V>> {
+    private static class RemovalCmds<K, V> implements RemovalListener<K, Stored<V>> {
         private final Consumer<DataEntry<K, V>> cmd;
+        private final OffHeap<K, V> offHeap;
+        private final InternalDataCacheCounter counter;
 
-        public RemovalCmds(Consumer<DataEntry<K, V>> chain) {
+        public RemovalCmds(Consumer<DataEntry<K, V>> chain, OffHeap<K, V> offHeap, InternalDataCacheCounter counter) {
             this.cmd = chain;
+            this.offHeap = offHeap;
+            this.counter = counter;
         }
 
         @SuppressWarnings("NullableProblems")
         @Override
-        public void onRemoval(RemovalNotification<K, DataEntry<K, V>> notification) {
-            if (notification == null || notification.getValue() == null) return;
+        public void onRemoval(RemovalNotification<K, Stored<V>> notification) {
+            if (notification == null) return;
+            // 只有因容量限制清除的记录转入堆外 转入堆外不视为移除 在堆外被回收时才计为清除并通知
+            if (this.offHeap != null && notification.getCause() == RemovalCause.SIZE
+                    && this.offHeap.demote(notification.getKey(), notification.getValue())) return;
+            if (notification.wasEvicted()) this.counter.recordEviction();
+            if (notification.getValue() == null) return;
             if (this.cmd != null)
-                this.cmd.accept(new DataEntry<>(notification.getKey(), notification.getValue().getValue()));
+                this.cmd.accept(new DataEntry<>(notification.getKey(), notification.getValue().value));
+        }
+    }
+
+    private static class Weighers<K, V> implements Weigher<K, Stored<V>> {
+        private final DataWeigher<K, V> weigher;
+
+        public Weighers(DataWeigher<K, V> weigher) {
+            this.weigher = weigher;
+        }
+
+        @SuppressWarnings("NullableProblems")
+        @Override
+        public int weigh(K key, Stored<V> value) {
+            return this.weigher.weigh(key, (value != null) ? value.value : null);
+        }
+    }
+
+    /**
+     * 默认执行器 线程数及队列长度有限 首次使用时创建
+     */
+    private static final class DefaultExecutor {
+        private static final int THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        private static final int QUEUE = 1024;
+        private static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            AtomicInteger seq = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(QUEUE), r -> {
+                Thread t = new Thread(r, "DataCache-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    /**
+     * 缓存构建器 时间单位为毫秒 值小于等于0时不启用对应特性
+     *
+     * @param <K>
+     * @param <V>
+     */
+    public static final class Builder<K, V> {
+        private DataLoader<K, V> loader;
+        private long max = -1;
+        private long maxWeight = -1;
+        private DataWeigher<K, V> weigher;
+        private long expireAfterAccess = -1;
+        private long expireAfterWrite = -1;
+        private long refreshAfterWrite = -1;
+        private int initCapacity = -1;
+        private Executor executor;
+        private Consumer<DataEntry<K, V>> removalCmd;
+        private long offHeapCapacity = -1;
+        private DataSerializer<V> serializer;
+        private DataCacheStatsListener statsListener;
+        private SafeLinkedMap.Ticker ticker;
+
+        private Builder() {
+        }
+
+        public Builder<K, V> loader(DataLoader<K, V> loader) {
+            this.loader = loader;
+            return this;
+        }
+
+        public Builder<K, V> max(long max) {
+            this.max = max;
+            return this;
+        }
+
+        /**
+         * 按权重总和限制大小 不能与max同时使用
+         *
+         * @param maxWeight
+         * @return
+         */
+        public Builder<K, V> maxWeight(long maxWeight) {
+            this.maxWeight = maxWeight;
+            return this;
+        }
+
+        /**
+         * 权重计算器 默认为 {@link DataWeigher#bytes()} 按估算的字节数计算 值不是字符串、数组、集合等可估算的类型时应设置此项
+         *
+         * @param weigher
+         * @return
+         */
+        public Builder<K, V> weigher(DataWeigher<K, V> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Builder<K, V> expireAfterAccess(long expireAfterAccess) {
+            this.expireAfterAccess = expireAfterAccess;
+            return this;
+        }
+
+        public Builder<K, V> expireAfterWrite(long expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+            return this;
+        }
+
+        /**
+         * 写入后经过指定时间 下次读取时在执行器中重新载入 重新载入期间返回旧值
+         *
+         * @param refreshAfterWrite
+         * @return
+         */
+        public Builder<K, V> refreshAfterWrite(long refreshAfterWrite) {
+            this.refreshAfterWrite = refreshAfterWrite;
+            return this;
+        }
+
+        public Builder<K, V> initCapacity(int initCapacity) {
+            this.initCapacity = initCapacity;
+            return this;
+        }
+
+        /**
+         * 重新载入及异步获取使用的执行器 默认为所有DataCache共用的有界线程池 队列满时由调用线程执行
+         *
+         * @param executor
+         * @return
+         */
+        public Builder<K, V> executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * 堆外存储容量(字节) 大于0时因容量限制清除的记录转入堆外
+         *
+         * @param offHeapCapacity
+         * @return
+         */
+        public Builder<K, V> offHeap(long offHeapCapacity) {
+            this.offHeapCapacity = offHeapCapacity;
+            return this;
+        }
+
+        /**
+         * 堆外存储容量(字节)及序列化器
+         *
+         * @param offHeapCapacity
+         * @param serializer      默认为 {@link DataSerializer#serializable()}
+         * @return
+         */
+        public Builder<K, V> offHeap(long offHeapCapacity, DataSerializer<V> serializer) {
+            this.offHeapCapacity = offHeapCapacity;
+            this.serializer = serializer;
+            return this;
+        }
+
+        /**
+         * 统计监听 在缓存操作的线程中同步调用
+         *
+         * @param statsListener
+         * @return
+         */
+        public Builder<K, V> statsListener(DataCacheStatsListener statsListener) {
+            this.statsListener = statsListener;
+            return this;
+        }
+
+        public Builder<K, V> removal(Consumer<DataEntry<K, V>> removalCmd) {
+            this.removalCmd = removalCmd;
+            return this;
+        }
+
+        /**
+         * 计算过期及刷新的时间源(纳秒) 默认为 System.nanoTime 堆内及堆外记录都按此判断是否过期
+         *
+         * @param ticker
+         * @return
+         */
+        public Builder<K, V> ticker(SafeLinkedMap.Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public DataCache<K, V> build() {
+            Spec spec = new Spec(this.max, this.expireAfterAccess, this.expireAfterWrite, this.initCapacity, this.refreshAfterWrite, this.executor,
+                    this.maxWeight, this.weigher, this.offHeapCapacity, this.serializer, this.ticker);
+            return DataCache.build(this.loader, spec, this.removalCmd, this.statsListener);
         }
     }
 
@@ -212,6 +829,13 @@ public final class DataCache<K, V> {
         private final long expireAfterAccess;
         private final long expireAfterWrite;
         private final int initCapacity;
+        private final long refreshAfterWrite;
+        private final Executor executor;
+        private final long maxWeight;
+        private final DataWeigher<?, ?> weigher;
+        private final long offHeapCapacity;
+        private final DataSerializer<?> serializer;
+        private final SafeLinkedMap.Ticker ticker;
 
         public Spec(long max) {
             this(max, -1, -1, -1);
@@ -222,10 +846,22 @@ public final class DataCache<K, V> {
         }
 
         public Spec(long max, long expireAfterAccess, long expireAfterWrite, int initCapacity) {
+            this(max, expireAfterAccess, expireAfterWrite, initCapacity, -1, null, -1, null, -1, null, null);
+        }
+
+        public Spec(long max, long expireAfterAccess, long expireAfterWrite, int initCapacity, long refreshAfterWrite, Executor executor,
+                    long maxWeight, DataWeigher<?, ?> weigher, long offHeapCapacity, DataSerializer<?> serializer, SafeLinkedMap.Ticker ticker) {
             this.max = max;
             this.expireAfterAccess = expireAfterAccess;
             this.expireAfterWrite = expireAfterWrite;
             this.initCapacity = initCapacity;
+            this.refreshAfterWrite = refreshAfterWrite;
+            this.executor = executor;
+            this.maxWeight = maxWeight;
+            this.weigher = weigher;
+            this.offHeapCapacity = offHeapCapacity;
+            this.serializer = serializer;
+            this.ticker = ticker;
         }
 
         public long getMax() {
@@ -243,6 +879,34 @@ public final class DataCache<K, V> {
         public int getInitCapacity() {
             return initCapacity;
         }
+
+        public long getRefreshAfterWrite() {
+            return refreshAfterWrite;
+        }
+
+        public Executor getExecutor() {
+            return executor;
+        }
+
+        public long getMaxWeight() {
+            return maxWeight;
+        }
+
+        public DataWeigher<?, ?> getWeigher() {
+            return weigher;
+        }
+
+        public long getOffHeapCapacity() {
+            return offHeapCapacity;
+        }
+
+        public DataSerializer<?> getSerializer() {
+            return serializer;
+        }
+
+        public SafeLinkedMap.Ticker getTicker() {
+            return ticker;
+        }
     }
 
 }
@@ -0,0 +1,130 @@
+package commons.box.app;
+
+import java.util.Arrays;
+
+/**
+ * 缓存统计快照 由 DataCache.stats 或 SafeLinkedMap.stats 生成 生成后不再变化
+ * <p>
+ * 载入耗时按2的幂次纳秒分段计数 第i段统计耗时小于 2^(i+1) 纳秒的载入 分位数按所在分段的上限估算
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public final class DataCacheStats implements DataObject {
+    private static final long serialVersionUID = -2914466316235290713L;
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long evictionCount;
+    private final long[] loadLatencies;
+
+    public DataCacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime, long evictionCount, long[] loadLatencies) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+        this.loadLatencies = (loadLatencies != null) ? loadLatencies.clone() : new long[0];
+    }
+
+    public long hitCount() {
+        return this.hitCount;
+    }
+
+    public long missCount() {
+        return this.missCount;
+    }
+
+    public long requestCount() {
+        return this.hitCount + this.missCount;
+    }
+
+    /**
+     * 命中率 没有请求时为1
+     *
+     * @return
+     */
+    public double hitRate() {
+        long requests = this.requestCount();
+        return (requests == 0) ? 1.0d : (double) this.hitCount / requests;
+    }
+
+    public double missRate() {
+        long requests = this.requestCount();
+        return (requests == 0) ? 0.0d : (double) this.missCount / requests;
+    }
+
+    public long loadSuccessCount() {
+        return this.loadSuccessCount;
+    }
+
+    public long loadFailureCount() {
+        return this.loadFailureCount;
+    }
+
+    public long loadCount() {
+        return this.loadSuccessCount + this.loadFailureCount;
+    }
+
+    /**
+     * 载入总耗时(纳秒)
+     *
+     * @return
+     */
+    public long totalLoadTime() {
+        return this.totalLoadTime;
+    }
+
+    /**
+     * 平均载入耗时(纳秒)
+     *
+     * @return
+     */
+    public double averageLoadPenalty() {
+        long loads = this.loadCount();
+        return (loads == 0) ? 0.0d : (double) this.totalLoadTime / loads;
+    }
+
+    public long evictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * 各分段的载入次数
+     *
+     * @return
+     */
+    public long[] loadLatencies() {
+        return this.loadLatencies.clone();
+    }
+
+    /**
+     * 载入耗时分位数(纳秒) 取所在分段的上限 没有载入时返回0
+     *
+     * @param percentile 0-1之间
+     * @return
+     */
+    public long loadLatency(double percentile) {
+        long total = 0;
+        for (long c : this.loadLatencies) total += c;
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0.0d), 1.0d) * total);
+        long seen = 0;
+        for (int i = 0; i < this.loadLatencies.length; i++) {
+            seen += this.loadLatencies[i];
+            if (seen >= rank && this.loadLatencies[i] > 0) return (i >= 62) ? Long.MAX_VALUE : (1L << (i + 1));
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return "DataCacheStats{hitCount=" + this.hitCount + ", missCount=" + this.missCount + ", loadSuccessCount=" + this.loadSuccessCount
+                + ", loadFailureCount=" + this.loadFailureCount + ", totalLoadTime=" + this.totalLoadTime + ", evictionCount=" + this.evictionCount
+                + ", loadLatencies=" + Arrays.toString(this.loadLatencies) + "}";
+    }
+}
@@ -0,0 +1,26 @@
+package commons.box.app;
+
+/**
+ * 缓存统计监听 在缓存操作的线程中同步调用 实现需尽快返回且不能抛出异常
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public interface DataCacheStatsListener {
+    public default void hits(int count) {
+    }
+
+    public default void misses(int count) {
+    }
+
+    /**
+     * 载入完成
+     *
+     * @param nanos   耗时(纳秒)
+     * @param success 是否成功
+     */
+    public default void load(long nanos, boolean success) {
+    }
+
+    public default void eviction() {
+    }
+}
@@ -0,0 +1,26 @@
+package commons.box.app;
+
+/**
+ * 缓存统计JMX接口 通过 DataCache.registerMBean 或 SafeLinkedMap.registerMBean 注册
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public interface DataCacheStatsMXBean {
+    public long getHitCount();
+
+    public long getMissCount();
+
+    public double getHitRate();
+
+    public long getLoadSuccessCount();
+
+    public long getLoadFailureCount();
+
+    public double getAverageLoadPenalty();
+
+    public long getLoadLatency99();
+
+    public long getEvictionCount();
+
+    public long getSize();
+}
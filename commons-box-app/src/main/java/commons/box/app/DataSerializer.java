@@ -0,0 +1,72 @@
+package commons.box.app;
+
+import java.io.*;
+
+/**
+ * 数据序列化器 用于将缓存值转换为字节保存到堆外
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public interface DataSerializer<V> {
+    /**
+     * 序列化
+     *
+     * @param value
+     * @return
+     * @throws AppError
+     */
+    public byte[] serialize(V value) throws AppError;
+
+    /**
+     * 反序列化
+     *
+     * @param bytes
+     * @return
+     * @throws AppError
+     */
+    public V deserialize(byte[] bytes) throws AppError;
+
+    /**
+     * 使用JDK序列化 值需实现 Serializable
+     *
+     * @param <V>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> DataSerializer<V> serializable() {
+        return (DataSerializer<V>) Jdk.INSTANCE;
+    }
+
+    /**
+     * JDK序列化实现
+     */
+    public static final class Jdk implements DataSerializer<Object> {
+        static final Jdk INSTANCE = new Jdk();
+
+        private Jdk() {
+        }
+
+        @Override
+        public byte[] serialize(Object value) throws AppError {
+            try {
+                ByteArrayOutputStream bs = new ByteArrayOutputStream(256);
+                try (ObjectOutputStream out = new ObjectOutputStream(bs)) {
+                    out.writeObject(value);
+                }
+                return bs.toByteArray();
+            } catch (IOException e) {
+                throw AppError.error("无法序列化对象 " + ((value != null) ? value.getClass().getName() : null), e);
+            }
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) throws AppError {
+            if (bytes == null) return null;
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return in.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                throw AppError.error("无法反序列化对象", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package commons.box.app;
+
+import commons.box.util.Logs;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 数据权重计算器 用于按内存预算限制缓存大小
+ * <p>
+ * 权重在写入时计算一次 之后值的变化不会影响已计算的权重
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public interface DataWeigher<K, V> {
+    /**
+     * 计算权重 不能小于0
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    public int weigh(K key, V value);
+
+    /**
+     * 按估算的字节数作为权重 见 {@link Bytes#estimate(Object)}
+     *
+     * @param <K>
+     * @param <V>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> DataWeigher<K, V> bytes() {
+        return (DataWeigher<K, V>) Bytes.INSTANCE;
+    }
+
+    /**
+     * 近似字节数估算 按64位JVM开启压缩指针的对象布局计算
+     * <p>
+     * 支持字符串、基本类型包装、数组、集合及map 元素较多的集合只抽样部分元素再按数量推算
+     * <p>
+     * 其他对象无法估算 按固定的 64 字节计算 每个类型首次出现时记录警告 这类值应通过 weigher 提供自定义的权重计算器
+     */
+    public static final class Bytes implements DataWeigher<Object, Object> {
+        static final Bytes INSTANCE = new Bytes();
+
+        private static final int HEADER = 16;
+        private static final int REFERENCE = 4;
+        private static final int ENTRY = 32;
+        private static final int OBJECT = 64;
+        private static final int SAMPLES = 64;
+        private static final int DEPTH = 4;
+        private static final ClassValue<Boolean> UNSIZED = new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                Logs.get(DataWeigher.class).warn("DataWeigher无法估算类型 " + type.getName() + " 的大小 按 " + OBJECT + " 字节计算 请为缓存设置自定义的 weigher");
+                return Boolean.TRUE;
+            }
+        };
+
+        private Bytes() {
+        }
+
+        @Override
+        public int weigh(Object key, Object value) {
+            long size = estimate(key) + estimate(value);
+            return (size > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) size;
+        }
+
+        /**
+         * 估算对象占用的字节数
+         *
+         * @param object
+         * @return
+         */
+        public static long estimate(Object object) {
+            return estimate(object, 0);
+        }
+
+        private static long estimate(Object o, int depth) {
+            if (o == null) return 0;
+            if (o instanceof String) return HEADER + 24 + ((long) ((String) o).length() << 1);
+            if (o instanceof byte[]) return HEADER + ((byte[]) o).length;
+            if (o instanceof Long || o instanceof Double) return 24;
+            if (o instanceof Number || o instanceof Boolean || o instanceof Character) return HEADER;
+            if (o instanceof DataEntry) return HEADER + estimate(((DataEntry<?, ?>) o).getKey(), depth) + estimate(((DataEntry<?, ?>) o).getValue(), depth);
+
+            Class<?> type = o.getClass();
+            if (type.isArray()) return array(o, type.getComponentType(), depth);
+            if (depth >= DEPTH) return (o instanceof Collection || o instanceof Map) ? OBJECT : unsized(type);
+            if (o instanceof Collection) {
+                Collection<?> c = (Collection<?>) o;
+                return 48 + sampled(c.iterator(), c.size(), depth, REFERENCE + 16);
+            }
+            if (o instanceof Map) {
+                Map<?, ?> m = (Map<?, ?>) o;
+                return 64 + sampled(m.entrySet().iterator(), m.size(), depth, ENTRY);
+            }
+            return unsized(type);
+        }
+
+        private static long unsized(Class<?> type) {
+            UNSIZED.get(type);
+            return OBJECT;
+        }
+
+        private static long array(Object array, Class<?> component, int depth) {
+            int length = Array.getLength(array);
+            if (component.isPrimitive()) {
+                int width = (component == long.class || component == double.class) ? 8
+                        : (component == int.class || component == float.class) ? 4
+                        : (component == char.class || component == short.class) ? 2 : 1;
+                return HEADER + (long) length * width;
+            }
+            long size = HEADER + (long) length * REFERENCE;
+            if (length < 1 || depth >= DEPTH) return size;
+            int n = Math.min(length, SAMPLES);
+            long sampled = 0;
+            for (int i = 0; i < n; i++) sampled += estimate(Array.get(array, i), depth + 1);
+            return size + sampled * length / n;
+        }
+
+        private static long sampled(Iterator<?> it, int size, int depth, int overhead) {
+            long sampled = 0;
+            int n = 0;
+            while (n < SAMPLES && it.hasNext()) {
+                Object e = it.next();
+                if (e instanceof Map.Entry) sampled += estimate(((Map.Entry<?, ?>) e).getKey(), depth + 1) + estimate(((Map.Entry<?, ?>) e).getValue(), depth + 1);
+                else sampled += estimate(e, depth + 1);
+                n++;
+            }
+            if (n < 1) return 0;
+            return (long) size * overhead + sampled * size / n;
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package commons.box.app;
 
 
+import commons.box.app.internal.InternalDataCacheCounter;
+import commons.box.app.internal.InternalDataCacheStatsMXBean;
+
+import javax.management.ObjectName;
 import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -111,13 +116,15 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
      * guarded by a lock and operations are applied in batches to avoid lock contention.
      * The penalty of applying the batches is spread across threads so that the amortized
      * cost is slightly higher than performing just the ConcurrentHashMap operation. A
-     * memento of the reads and writes that were performed on the map are recorded in a
-     * buffer. These buffers are drained at the first opportunity after a write or when a
-     * buffer exceeds a threshold size. A mostly strict ordering is achieved by observing
-     * that each buffer is in a weakly sorted order relative to the last drain. This
-     * allows the buffers to be merged in O(n) time so that the operations are run in the
-     * expected order. Due to a lack of a strict ordering guarantee, a task can be
-     * executed out-of-order, such as a removal followed by its addition. The state of the
+     * memento of the reads and writes that were performed on the map are recorded in
+     * buffers. Reads are recorded into striped, fixed-size ring buffers without
+     * allocating; a read may be dropped when a stripe is contended or full, as losing a
+     * reordering only makes the policy slightly less accurate. Writes are recorded as
+     * tasks in a separate queue that is never lossy and is bounded by making writers
+     * drain it once too many tasks are pending. The buffers are drained at the first
+     * opportunity after a write or when a read buffer exceeds a threshold size. Reads
+     * are applied before writes, so a task can be executed out-of-order, such as a
+     * removal followed by its addition or a read of an entry not yet added. The state of the
      * entry is encoded within the value's weight. Alive: The entry is in both the
      * hash-table and the page replacement policy. This is represented by a positive
      * weight. Retired: The entry is not in the hash-table and is pending removal from the
@@ -126,6 +133,24 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
      * represented by a weight of zero. The Least Recently Used page replacement algorithm
      * was chosen due to its simplicity, high hit rate, and ability to be implemented with
      * O(1) time complexity.
+     *
+     * The optional TinyLFU policy (see Policy.TINY_LFU) keeps LRU's O(1) structure but
+     * splits it into a small admission window and a main space made of a probation and
+     * a protected segment. An entry evicted from the window is only admitted into the
+     * main space if a count-min sketch estimates that it is used more often than the
+     * main space's victim, so a scan of one-off keys cannot flush the frequently used
+     * entries. Because the deque's containment check cannot tell which deque a node is
+     * linked on, each node records the segment it belongs to.
+     *
+     * Entries may expire after a duration since their last write or access, or after a
+     * time-to-live given per entry. A lookup never returns an expired entry and removes
+     * it eagerly. Otherwise expired entries are removed while the buffers are drained,
+     * using a hierarchical timer wheel: an entry is scheduled into the bucket of its
+     * deadline at the time it was written, and a bucket whose time has passed either
+     * evicts its entries or reschedules those whose deadline was extended by later
+     * accesses, at a resolution of about a second. Expiration is therefore O(1) amortized
+     * and needs no scan of the map. Until then, an expired entry is still counted by
+     * size() and may be visited by an iterator.
      */
 
     /**
@@ -139,47 +164,131 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
     static final int MAXIMUM_WEIGHT = 1 << 29;
 
     /**
-     * The maximum number of pending operations per buffer.
+     * The number of read buffers to use.
+     */
+    static final int NUMBER_OF_READ_BUFFERS = ceilingNextPowerOfTwo(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Mask value for indexing into the read buffers.
+     */
+    static final int READ_BUFFERS_MASK = NUMBER_OF_READ_BUFFERS - 1;
+
+    /**
+     * The number of pending read operations before attempting to drain.
+     */
+    static final int READ_BUFFER_THRESHOLD = 32;
+
+    /**
+     * The maximum number of read operations to perform per amortized drain.
      */
-    static final int MAXIMUM_BUFFER_SIZE = 1 << 20;
+    static final int READ_BUFFER_DRAIN_THRESHOLD = 2 * READ_BUFFER_THRESHOLD;
 
     /**
-     * The number of pending operations per buffer before attempting to drain.
+     * The maximum number of pending reads per buffer.
      */
-    static final int BUFFER_THRESHOLD = 16;
+    static final int READ_BUFFER_SIZE = 2 * READ_BUFFER_DRAIN_THRESHOLD;
 
     /**
-     * The number of buffers to use.
+     * Mask value for indexing into the read buffer.
      */
-    static final int NUMBER_OF_BUFFERS;
+    static final int READ_BUFFER_INDEX_MASK = READ_BUFFER_SIZE - 1;
 
     /**
-     * Mask value for indexing into the buffers.
+     * The maximum number of write operations to perform per amortized drain.
      */
-    static final int BUFFER_MASK;
+    static final int WRITE_BUFFER_DRAIN_THRESHOLD = 16;
 
     /**
-     * The maximum number of operations to perform per amortized drain.
+     * The number of pending write operations at which a writer must wait to drain.
      */
-    static final int AMORTIZED_DRAIN_THRESHOLD;
+    static final int MAXIMUM_WRITE_BUFFER_SIZE = 1 << 10;
+
+    /**
+     * The percentage of the weighted capacity given to the admission window.
+     */
+    static final double PERCENT_WINDOW = 0.01d;
+
+    /**
+     * The percentage of the main space given to the protected segment.
+     */
+    static final double PERCENT_PROTECTED = 0.80d;
+
+    /**
+     * The maximum number of amortized drains to perform per catch-up, which bounds the
+     * time a maintenance run holds the eviction lock.
+     */
+    static final int MAXIMUM_CATCH_UP_DRAINS = MAXIMUM_WRITE_BUFFER_SIZE / WRITE_BUFFER_DRAIN_THRESHOLD;
+
+    /**
+     * The number of buckets of each timer wheel.
+     */
+    static final int[] TIMER_BUCKETS = {64, 64, 32, 4, 1};
+
+    /**
+     * The time span covered by a bucket of each timer wheel, powers of two close to one
+     * second, minute, hour, day and the total of the last wheel.
+     */
+    static final long[] TIMER_SPANS = {
+            ceilingNextPowerOfTwo(TimeUnit.SECONDS.toNanos(1)),
+            ceilingNextPowerOfTwo(TimeUnit.MINUTES.toNanos(1)),
+            ceilingNextPowerOfTwo(TimeUnit.HOURS.toNanos(1)),
+            ceilingNextPowerOfTwo(TimeUnit.DAYS.toNanos(1)),
+            TIMER_BUCKETS[3] * ceilingNextPowerOfTwo(TimeUnit.DAYS.toNanos(1)),
+            TIMER_BUCKETS[3] * ceilingNextPowerOfTwo(TimeUnit.DAYS.toNanos(1)),
+    };
+
+    /**
+     * The deadline of an entry that does not expire.
+     */
+    static final long NEVER = Long.MAX_VALUE;
 
     /**
      * A queue that discards all entries.
      */
     static final Queue<?> DISCARDING_QUEUE = new DiscardingQueue();
 
-    static {
-        int buffers = ceilingNextPowerOfTwo(Runtime.getRuntime().availableProcessors());
-        AMORTIZED_DRAIN_THRESHOLD = (1 + buffers) * BUFFER_THRESHOLD;
-        NUMBER_OF_BUFFERS = buffers;
-        BUFFER_MASK = buffers - 1;
-    }
-
     static int ceilingNextPowerOfTwo(int x) {
         // From Hacker's Delight, Chapter 3, Harry S. Warren Jr.
         return 1 << (Integer.SIZE - Integer.numberOfLeadingZeros(x - 1));
     }
 
+    static long ceilingNextPowerOfTwo(long x) {
+        return 1L << (Long.SIZE - Long.numberOfLeadingZeros(x - 1));
+    }
+
+    /**
+     * Adds the duration to the time, saturating to {@link #NEVER}.
+     */
+    static long deadlineOf(long time, long duration) {
+        return (duration >= NEVER - time) ? NEVER : time + duration;
+    }
+
+    /**
+     * The page replacement policy.
+     */
+    public enum Policy {
+
+        /**
+         * Least recently used, the entry read or written longest ago is evicted.
+         */
+        LRU,
+
+        /**
+         * Window TinyLFU, new entries pass through a small LRU window and are admitted
+         * into the main space only if they are estimated to be used more often than the
+         * entry they would replace.
+         */
+        TINY_LFU
+    }
+
+    /**
+     * The segment of the page replacement policy that a node is linked on.
+     */
+    static final byte QUEUE_NONE = 0;
+    static final byte QUEUE_WINDOW = 1;
+    static final byte QUEUE_PROBATION = 2;
+    static final byte QUEUE_PROTECTED = 3;
+
     /**
      * The draining status of the buffers.
      */
@@ -206,7 +315,14 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
     final int concurrencyLevel;
 
     // These fields provide support to bound the map by a maximum capacity
+    // (with the TinyLFU policy, the eviction deque is the probation segment)
+    final Policy policy;
     final SafeLinkedDeque<Node> evictionDeque;
+    final SafeLinkedDeque<Node> windowDeque;
+    final SafeLinkedDeque<Node> protectedDeque;
+    FrequencySketch sketch;
+    int windowWeightedSize;
+    int protectedWeightedSize;
 
     // must write under lock
     volatile int weightedSize;
@@ -214,20 +330,33 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
     // must write under lock
     volatile int capacity;
 
-    volatile int nextOrder;
-    int drainedOrder;
-
     final Lock evictionLock;
-    final Queue<Task>[] buffers;
-    final ExecutorService executor;
+    final Queue<Runnable> writeBuffer;
+    final AtomicInteger writeBufferLength;
     final Weigher<? super V> weigher;
-    final AtomicIntegerArray bufferLengths;
     final AtomicReference<DrainStatus> drainStatus;
 
+    // Striped, lossy ring buffers of recent reads, indexed by the thread's id
+    final long[] readBufferReadCount;
+    final AtomicLong[] readBufferWriteCount;
+    final AtomicLong[] readBufferDrainAtWriteCount;
+    final AtomicReference<Node>[][] readBuffers;
+
     // These fields provide support for notifying a listener.
     final Queue<Node> pendingNotifications;
     final EvictionListener<K, V> listener;
 
+    // These fields provide support for expiring entries, times are relative to the
+    // map's creation so that they are non-negative; the wheel is guarded by the lock
+    final Ticker ticker;
+    final long tickerOrigin;
+    final long expireAfterAccessNanos;
+    final long expireAfterWriteNanos;
+    final TimerWheel timerWheel;
+
+    // These fields count the lookups and evictions in striped counters
+    final InternalDataCacheCounter stats;
+
     transient Set<K> keySet;
     transient Collection<V> values;
     transient Set<Entry<K, V>> entrySet;
@@ -249,17 +378,26 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
 
         // The eviction support
         weigher = builder.weigher;
-        executor = builder.executor;
-        nextOrder = Integer.MIN_VALUE;
-        drainedOrder = Integer.MIN_VALUE;
         evictionLock = new ReentrantLock();
+        policy = builder.policy;
         evictionDeque = new SafeLinkedDeque<>();
+        windowDeque = new SafeLinkedDeque<>();
+        protectedDeque = new SafeLinkedDeque<>();
+        sketch = (policy == Policy.TINY_LFU) ? new FrequencySketch(capacity) : null;
+        writeBuffer = new ConcurrentLinkedQueue<>();
+        writeBufferLength = new AtomicInteger();
         drainStatus = new AtomicReference<>(DrainStatus.IDLE);
 
-        buffers = (Queue<Task>[]) new Queue[NUMBER_OF_BUFFERS];
-        bufferLengths = new AtomicIntegerArray(NUMBER_OF_BUFFERS);
-        for (int i = 0; i < NUMBER_OF_BUFFERS; i++) {
-            buffers[i] = new ConcurrentLinkedQueue<>();
+        readBufferReadCount = new long[NUMBER_OF_READ_BUFFERS];
+        readBufferWriteCount = new AtomicLong[NUMBER_OF_READ_BUFFERS];
+        readBufferDrainAtWriteCount = new AtomicLong[NUMBER_OF_READ_BUFFERS];
+        readBuffers = newReadBuffers();
+        for (int i = 0; i < NUMBER_OF_READ_BUFFERS; i++) {
+            readBufferWriteCount[i] = new AtomicLong();
+            readBufferDrainAtWriteCount[i] = new AtomicLong();
+            for (int j = 0; j < READ_BUFFER_SIZE; j++) {
+                readBuffers[i][j] = new AtomicReference<>();
+            }
         }
 
         // The notification queue and listener
@@ -267,6 +405,23 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
         pendingNotifications = (listener == DiscardingListener.INSTANCE)
                 ? (Queue<Node>) DISCARDING_QUEUE
                 : new ConcurrentLinkedQueue<Node>();
+
+        stats = new InternalDataCacheCounter(builder.statsListener);
+
+        ticker = builder.ticker;
+        tickerOrigin = ticker.read();
+        expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        timerWheel = new TimerWheel();
+    }
+
+    /**
+     * Allocates the read buffers' slots, as an array of a parameterized type can only be
+     * created from its raw type.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    AtomicReference<Node>[][] newReadBuffers() {
+        return new AtomicReference[NUMBER_OF_READ_BUFFERS][READ_BUFFER_SIZE];
     }
 
     /**
@@ -301,10 +456,13 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
             throw new IllegalArgumentException();
         }
 
+        catchUp(true);
         evictionLock.lock();
         try {
             this.capacity = Math.min(capacity, MAXIMUM_CAPACITY);
-            drainBuffers(AMORTIZED_DRAIN_THRESHOLD);
+            if (policy == Policy.TINY_LFU) {
+                sketch.ensureCapacity(this.capacity);
+            }
             evict();
         } finally {
             evictionLock.unlock();
@@ -324,6 +482,11 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
      * entries to the notification queue for processing.
      */
     void evict() {
+        if (policy == Policy.TINY_LFU) {
+            evictFromWindowAndMain();
+            return;
+        }
+
         // Attempts to evict entries from the map if it exceeds the maximum
         // capacity. If the eviction fails due to a concurrent removal of the
         // victim, that removal may cancel out the addition that triggered this
@@ -340,8 +503,10 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
             }
 
             // Notify the listener only if the entry was evicted
+            timerWheel.deschedule(node);
             if (data.remove(node.key, node)) {
                 pendingNotifications.add(node);
+                stats.deferEviction();
             }
 
             node.makeDead();
@@ -349,62 +514,275 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
     }
 
     /**
-     * Performs the post-processing work required after the map operation.
-     *
-     * @param task the pending operation to be applied
+     * Evicts entries with the TinyLFU policy. Entries overflowing the window become
+     * candidates at the tail of the probation segment and each is compared with the
+     * victim at its head, the one with the lower estimated frequency is evicted.
      */
-    void afterCompletion(Task task) {
-        boolean delayable = schedule(task);
-        if (shouldDrainBuffers(delayable)) {
-            tryToDrainBuffers(AMORTIZED_DRAIN_THRESHOLD);
+    void evictFromWindowAndMain() {
+        int candidates = 0;
+        final int maxWindow = windowCapacity();
+        while (windowWeightedSize > maxWindow) {
+            Node node = windowDeque.poll();
+            if (node == null) {
+                break;
+            }
+            windowWeightedSize -= node.policyWeight;
+            node.queue = QUEUE_PROBATION;
+            evictionDeque.add(node);
+            candidates++;
         }
-        notifyListener();
+
+        while (hasOverflowed()) {
+            Node victim = evictionDeque.peekFirst();
+            if (victim == null) {
+                victim = protectedDeque.peekFirst();
+            }
+            if (victim == null) {
+                victim = windowDeque.peekFirst();
+            }
+            if (victim == null) {
+                return;
+            }
+
+            Node candidate = (candidates > 0) ? evictionDeque.peekLast() : null;
+            if ((candidate == null) || (candidate == victim)) {
+                evictNode(victim);
+                candidates = Math.max(0, candidates - 1);
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evictNode(victim);
+            } else {
+                evictNode(candidate);
+                candidates--;
+            }
+        }
+    }
+
+    /**
+     * Removes the node from the policy and the data store.
+     */
+    void evictNode(Node node) {
+        unlinkFromPolicy(node);
+        timerWheel.deschedule(node);
+        if (data.remove(node.key, node)) {
+            pendingNotifications.add(node);
+            stats.deferEviction();
+        }
+        node.makeDead();
+    }
+
+    /**
+     * Returns the weighted capacity of the TinyLFU admission window, which always admits
+     * at least one entry.
+     */
+    int windowCapacity() {
+        return Math.max(1, capacity - (int) (capacity * (1d - PERCENT_WINDOW)));
+    }
+
+    /**
+     * Returns the weighted capacity of the TinyLFU protected segment.
+     */
+    int protectedCapacity() {
+        return (int) ((capacity - windowCapacity()) * PERCENT_PROTECTED);
+    }
+
+    /**
+     * Links a new node on the page replacement policy.
+     */
+    void linkToPolicy(Node node) {
+        if (policy == Policy.LRU) {
+            evictionDeque.add(node);
+            return;
+        }
+        sketch.increment(node.key);
+        node.queue = QUEUE_WINDOW;
+        windowDeque.add(node);
+        windowWeightedSize += node.policyWeight;
+    }
+
+    /**
+     * Unlinks the node from the page replacement policy, if linked.
+     */
+    void unlinkFromPolicy(Node node) {
+        if (policy == Policy.LRU) {
+            evictionDeque.remove(node);
+            return;
+        }
+        switch (node.queue) {
+            case QUEUE_WINDOW:
+                windowDeque.remove(node);
+                windowWeightedSize -= node.policyWeight;
+                break;
+            case QUEUE_PROBATION:
+                evictionDeque.remove(node);
+                break;
+            case QUEUE_PROTECTED:
+                protectedDeque.remove(node);
+                protectedWeightedSize -= node.policyWeight;
+                break;
+            default:
+                return;
+        }
+        node.queue = QUEUE_NONE;
+    }
+
+    /**
+     * Applies a change of the node's weight to the segment it is linked on.
+     */
+    void updatePolicyWeight(Node node, int weightDifference) {
+        node.policyWeight += weightDifference;
+        if (node.queue == QUEUE_WINDOW) {
+            windowWeightedSize += weightDifference;
+        } else if (node.queue == QUEUE_PROTECTED) {
+            protectedWeightedSize += weightDifference;
+        }
+    }
+
+    /**
+     * Returns the page replacement policy's deques, in ascending or descending order of
+     * retention.
+     */
+    List<SafeLinkedDeque<Node>> policyDeques(boolean ascending) {
+        if (policy == Policy.LRU) {
+            return Collections.singletonList(evictionDeque);
+        }
+        return ascending
+                ? Arrays.asList(evictionDeque, windowDeque, protectedDeque)
+                : Arrays.asList(protectedDeque, windowDeque, evictionDeque);
+    }
+
+    /**
+     * Returns the current time of the map's ticker, relative to the map's creation.
+     */
+    long now() {
+        return ticker.read() - tickerOrigin;
     }
 
     /**
-     * Schedules the task to be applied to the page replacement policy.
+     * Sets the node's deadlines for a write, given an optional time-to-live that takes
+     * precedence over the map's expire after write duration.
      *
-     * @param task the pending operation
-     * @return if the draining of the buffers can be delayed
+     * @param node the entry being written
+     * @param ttl  the entry's time-to-live in nanoseconds, or zero if unspecified
      */
-    private boolean schedule(Task task) {
-        int index = bufferIndex();
-        int buffered = bufferLengths.incrementAndGet(index);
+    void setDeadlines(Node node, long ttl) {
+        if ((ttl <= 0) && (expireAfterWriteNanos <= 0) && (expireAfterAccessNanos <= 0)) {
+            node.writeDeadline = NEVER;
+            node.deadline = NEVER;
+            return;
+        }
+        long now = now();
+        long writeDeadline = (ttl > 0)
+                ? deadlineOf(now, ttl)
+                : ((expireAfterWriteNanos > 0) ? deadlineOf(now, expireAfterWriteNanos) : NEVER);
+        node.writeDeadline = writeDeadline;
+        node.deadline = (expireAfterAccessNanos > 0)
+                ? Math.min(writeDeadline, deadlineOf(now, expireAfterAccessNanos))
+                : writeDeadline;
+    }
 
-        if (task.isWrite()) {
-            buffers[index].add(task);
-            drainStatus.set(DrainStatus.REQUIRED);
-            return false;
+    /**
+     * Determines whether the node's deadline has passed.
+     */
+    boolean hasExpired(Node node) {
+        long deadline = node.deadline;
+        return (deadline != NEVER) && (deadline <= now());
+    }
+
+    /**
+     * Removes an expired node found by a caller and notifies the listener.
+     */
+    void expireOnCaller(Node node) {
+        if (data.remove(node.key, node)) {
+            node.makeRetired();
+            pendingNotifications.add(node);
+            stats.deferEviction();
+            afterWrite(new RemovalTask(node));
         }
+    }
 
-        // A buffer may discard a read task if its length exceeds a tolerance level
-        if (buffered <= MAXIMUM_BUFFER_SIZE) {
-            buffers[index].add(task);
-            return (buffered <= BUFFER_THRESHOLD);
-        } else { // not optimized for fail-safe scenario
-            bufferLengths.decrementAndGet(index);
-            return false;
+    /**
+     * Evicts the entries whose deadline has passed.
+     */
+    void expireEntries() {
+        if (timerWheel.scheduled > 0) {
+            timerWheel.advance(now());
         }
     }
 
     /**
-     * Returns the index to the buffer that the task should be scheduled on.
+     * Performs the post-processing work required after a read.
+     *
+     * @param node the entry in the page replacement policy
      */
-    static int bufferIndex() {
+    void afterRead(Node node) {
+        final int bufferIndex = readBufferIndex();
+        final long writeCount = recordRead(bufferIndex, node);
+        drainOnReadIfNeeded(bufferIndex, writeCount);
+        notifyListener();
+    }
+
+    /**
+     * Returns the index to the read buffer to record into.
+     */
+    static int readBufferIndex() {
         // A buffer is chosen by the thread's id so that tasks are distributed in a
         // pseudo evenly manner. This helps avoid hot entries causing contention due
         // to other threads trying to append to the same buffer.
-        return (int) Thread.currentThread().getId() & BUFFER_MASK;
+        return ((int) Thread.currentThread().getId()) & READ_BUFFERS_MASK;
+    }
+
+    /**
+     * Records a read in the buffer and return its write count.
+     *
+     * @param bufferIndex the index to the chosen read buffer
+     * @param node        the entry in the page replacement policy
+     * @return the number of writes on the chosen read buffer
+     */
+    long recordRead(int bufferIndex, Node node) {
+        // The location in the buffer is chosen in a racy fashion as the increment
+        // is not atomic with the insertion. This means that concurrent reads can
+        // overlap and overwrite one another, resulting in a lossy buffer.
+        final AtomicLong counter = readBufferWriteCount[bufferIndex];
+        final long writeCount = counter.get();
+        counter.lazySet(writeCount + 1);
+
+        final int index = (int) (writeCount & READ_BUFFER_INDEX_MASK);
+        readBuffers[bufferIndex][index].lazySet(node);
+
+        return writeCount;
+    }
+
+    /**
+     * Attempts to drain the buffers if it is determined to be needed when post-processing
+     * a read.
+     *
+     * @param bufferIndex the index to the chosen read buffer
+     * @param writeCount  the number of writes on the chosen read buffer
+     */
+    void drainOnReadIfNeeded(int bufferIndex, long writeCount) {
+        final long pending = (writeCount - readBufferDrainAtWriteCount[bufferIndex].get());
+        final boolean delayable = (pending < READ_BUFFER_THRESHOLD);
+        if (shouldDrainBuffers(delayable)) {
+            tryToDrainBuffers();
+        }
     }
 
     /**
-     * Returns the ordering value to assign to a task.
+     * Performs the post-processing work required after a write.
+     *
+     * @param task the pending operation to be applied
      */
-    int nextOrdering() {
-        // The next ordering is acquired in a racy fashion as the increment is not
-        // atomic with the insertion into a buffer. This means that concurrent tasks
-        // can have the same ordering and the buffers are in a weakly sorted order.
-        return nextOrder++;
+    void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        drainStatus.lazySet(DrainStatus.REQUIRED);
+        if (writeBufferLength.incrementAndGet() > MAXIMUM_WRITE_BUFFER_SIZE) {
+            // The write buffer is bounded by making the writer catch up the policy
+            // when too many tasks are pending, rather than letting it grow unchecked
+            drainBuffersBlocking();
+        } else if (shouldDrainBuffers(false)) {
+            tryToDrainBuffers();
+        }
+        notifyListener();
     }
 
     /**
@@ -414,201 +792,204 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
      * @return if a drain should be attempted
      */
     boolean shouldDrainBuffers(boolean delayable) {
-        if (executor.isShutdown()) {
-            DrainStatus status = drainStatus.get();
-            return (status != DrainStatus.PROCESSING)
-                    & (!delayable | (status == DrainStatus.REQUIRED));
-        }
-        return false;
+        // The caller always takes part in the maintenance, whether or not a catch-up
+        // executor is scheduled, so that the policy keeps pace with sustained writes
+        DrainStatus status = drainStatus.get();
+        return (status != DrainStatus.PROCESSING)
+                & (!delayable | (status == DrainStatus.REQUIRED));
     }
 
     /**
-     * Attempts to acquire the eviction lock and apply the pending operations to the page
-     * replacement policy.
-     *
-     * @param maxToDrain the maximum number of operations to drain
+     * Attempts to acquire the eviction lock and apply the pending operations, up to the
+     * amortized threshold, to the page replacement policy.
      */
-    void tryToDrainBuffers(int maxToDrain) {
+    void tryToDrainBuffers() {
         if (evictionLock.tryLock()) {
             try {
-                drainStatus.set(DrainStatus.PROCESSING);
-                drainBuffers(maxToDrain);
+                drainStatus.lazySet(DrainStatus.PROCESSING);
+                drainBuffers();
             } finally {
-                drainStatus.compareAndSet(DrainStatus.PROCESSING, DrainStatus.IDLE);
+                finishDrain();
                 evictionLock.unlock();
             }
         }
     }
 
     /**
-     * Drains the buffers and applies the pending operations.
-     *
-     * @param maxToDrain the maximum number of operations to drain
+     * Waits for the eviction lock and applies the pending operations.
      */
-    void drainBuffers(int maxToDrain) {
-        // A mostly strict ordering is achieved by observing that each buffer
-        // contains tasks in a weakly sorted order starting from the last drain.
-        // The buffers can be merged into a sorted list in O(n) time by using
-        // counting sort and chaining on a collision.
-
-        // The output is capped to the expected number of tasks plus additional
-        // slack to optimistically handle the concurrent additions to the buffers.
-        Task[] tasks = new Task[maxToDrain];
-
-        // Moves the tasks into the output array, applies them, and updates the
-        // marker for the starting order of the next drain.
-        int maxTaskIndex = moveTasksFromBuffers(tasks);
-        runTasks(tasks, maxTaskIndex);
-        updateDrainedOrder(tasks, maxTaskIndex);
+    void drainBuffersBlocking() {
+        evictionLock.lock();
+        try {
+            drainStatus.lazySet(DrainStatus.PROCESSING);
+            drainBuffers();
+        } finally {
+            finishDrain();
+            evictionLock.unlock();
+        }
     }
 
     /**
-     * Moves the tasks from the buffers into the output array.
+     * Attempts to acquire the eviction lock and apply the pending operations until the
+     * write buffer is empty, performing at most {@link #MAXIMUM_CATCH_UP_DRAINS} amortized
+     * drains.
      *
-     * @param tasks the ordered array of the pending operations
-     * @return the highest index location of a task that was added to the array
+     * @param blocking if the eviction lock should be waited for
      */
-    int moveTasksFromBuffers(Task[] tasks) {
-        int maxTaskIndex = -1;
-        for (int i = 0; i < buffers.length; i++) {
-            int maxIndex = moveTasksFromBuffer(tasks, i);
-            maxTaskIndex = Math.max(maxIndex, maxTaskIndex);
+    void catchUp(boolean blocking) {
+        if (blocking) {
+            evictionLock.lock();
+        } else if (!evictionLock.tryLock()) {
+            return;
         }
-        return maxTaskIndex;
-    }
-
-    /**
-     * Moves the tasks from the specified buffer into the output array.
-     *
-     * @param tasks       the ordered array of the pending operations
-     * @param bufferIndex the buffer to drain into the tasks array
-     * @return the highest index location of a task that was added to the array
-     */
-    int moveTasksFromBuffer(Task[] tasks, int bufferIndex) {
-        // While a buffer is being drained it may be concurrently appended to. The
-        // number of tasks removed are tracked so that the length can be decremented
-        // by the delta rather than set to zero.
-        Queue<Task> buffer = buffers[bufferIndex];
-        int removedFromBuffer = 0;
-
-        Task task;
-        int maxIndex = -1;
-        while ((task = buffer.poll()) != null) {
-            removedFromBuffer++;
-
-            // The index into the output array is determined by calculating the offset
-            // since the last drain
-            int index = task.getOrder() - drainedOrder;
-            if (index < 0) {
-                // The task was missed by the last drain and can be run immediately
-                task.run();
-            } else if (index >= tasks.length) {
-                // Due to concurrent additions, the order exceeds the capacity of the
-                // output array. It is added to the end as overflow and the remaining
-                // tasks in the buffer will be handled by the next drain.
-                maxIndex = tasks.length - 1;
-                addTaskToChain(tasks, task, maxIndex);
-                break;
-            } else {
-                maxIndex = Math.max(index, maxIndex);
-                addTaskToChain(tasks, task, index);
+        try {
+            drainStatus.lazySet(DrainStatus.PROCESSING);
+            for (int i = 0; i < MAXIMUM_CATCH_UP_DRAINS; i++) {
+                drainBuffers();
+                if (writeBufferLength.get() <= 0) {
+                    break;
+                }
             }
+        } finally {
+            finishDrain();
+            evictionLock.unlock();
         }
-        bufferLengths.addAndGet(bufferIndex, -removedFromBuffer);
-        return maxIndex;
+        notifyListener();
     }
 
     /**
-     * Adds the task as the head of the chain at the index location.
-     *
-     * @param tasks the ordered array of the pending operations
-     * @param task  the pending operation to add
-     * @param index the array location
+     * Leaves the processing state, requiring another drain if writes are still pending.
      */
-    void addTaskToChain(Task[] tasks, Task task, int index) {
-        task.setNext(tasks[index]);
-        tasks[index] = task;
+    void finishDrain() {
+        drainStatus.compareAndSet(DrainStatus.PROCESSING,
+                (writeBufferLength.get() > 0) ? DrainStatus.REQUIRED : DrainStatus.IDLE);
     }
 
     /**
-     * Runs the pending page replacement policy operations.
-     *
-     * @param tasks        the ordered array of the pending operations
-     * @param maxTaskIndex the maximum index of the array
+     * Applies the pending operations to the page replacement policy and evicts entries
+     * that exceed the capacity. This is performed on the caller's thread and amortized
+     * on the map's operations otherwise, so it is needed only to bring the policy up to
+     * date at a chosen time, such as before inspecting it.
      */
-    void runTasks(Task[] tasks, int maxTaskIndex) {
-        for (int i = 0; i <= maxTaskIndex; i++) {
-            runTasksInChain(tasks[i]);
-        }
+    public void cleanUp() {
+        catchUp(true);
     }
 
     /**
-     * Runs the pending operations on the linked chain.
-     *
-     * @param task the first task in the chain of operations
+     * Drains the read and write buffers up to an amortized threshold.
      */
-    void runTasksInChain(Task task) {
-        while (task != null) {
-            Task current = task;
-            task = task.getNext();
-            current.setNext(null);
-            current.run();
-        }
+    void drainBuffers() {
+        drainReadBuffers();
+        drainWriteBuffer();
+        expireEntries();
     }
 
     /**
-     * Updates the order to start the next drain from.
-     *
-     * @param tasks        the ordered array of operations
-     * @param maxTaskIndex the maximum index of the array
+     * Drains the read buffers, each up to an amortized threshold.
      */
-    void updateDrainedOrder(Task[] tasks, int maxTaskIndex) {
-        if (maxTaskIndex >= 0) {
-            Task task = tasks[maxTaskIndex];
-            drainedOrder = task.getOrder() + 1;
+    void drainReadBuffers() {
+        final int start = (int) Thread.currentThread().getId();
+        final int end = start + NUMBER_OF_READ_BUFFERS;
+        for (int i = start; i < end; i++) {
+            drainReadBuffer(i & READ_BUFFERS_MASK);
         }
     }
 
     /**
-     * Notifies the listener of entries that were evicted.
+     * Drains the read buffer up to an amortized threshold.
      */
-    void notifyListener() {
-        Node node;
-        while ((node = pendingNotifications.poll()) != null) {
-            listener.onEviction(node.key, node.getValue());
+    void drainReadBuffer(int bufferIndex) {
+        final long writeCount = readBufferWriteCount[bufferIndex].get();
+        for (int i = 0; i < READ_BUFFER_DRAIN_THRESHOLD; i++) {
+            final int index = (int) (readBufferReadCount[bufferIndex] & READ_BUFFER_INDEX_MASK);
+            final AtomicReference<Node> slot = readBuffers[bufferIndex][index];
+            final Node node = slot.get();
+            if (node == null) {
+                break;
+            }
+
+            slot.lazySet(null);
+            applyRead(node);
+            readBufferReadCount[bufferIndex]++;
         }
+        readBufferDrainAtWriteCount[bufferIndex].lazySet(writeCount);
     }
 
     /**
      * Updates the node's location in the page replacement policy.
      */
-    class ReadTask extends AbstractTask {
-
-        final Node node;
+    void applyRead(Node node) {
+        // An entry may be scheduled for reordering despite having been removed.
+        // This can occur when the entry was concurrently read while a writer was
+        // removing it. If the entry is no longer linked then it does not need to
+        // be processed.
+        if (policy == Policy.LRU) {
+            if (evictionDeque.contains(node)) {
+                evictionDeque.moveToBack(node);
+            }
+            return;
+        }
 
-        ReadTask(Node node) {
-            this.node = node;
+        if (node.queue == QUEUE_NONE) {
+            return;
         }
+        sketch.increment(node.key);
+        if (node.queue == QUEUE_WINDOW) {
+            windowDeque.moveToBack(node);
+        } else if (node.queue == QUEUE_PROTECTED) {
+            protectedDeque.moveToBack(node);
+        } else {
+            // A reused probation entry is promoted, demoting the protected segment's
+            // least recently used entries back to probation if it overflows
+            evictionDeque.remove(node);
+            node.queue = QUEUE_PROTECTED;
+            protectedDeque.add(node);
+            protectedWeightedSize += node.policyWeight;
+
+            final int maxProtected = protectedCapacity();
+            while (protectedWeightedSize > maxProtected) {
+                Node demoted = protectedDeque.poll();
+                if (demoted == null) {
+                    break;
+                }
+                protectedWeightedSize -= demoted.policyWeight;
+                demoted.queue = QUEUE_PROBATION;
+                evictionDeque.add(demoted);
+            }
+        }
+    }
 
-        public void run() {
-            // An entry may scheduled for reordering despite having been previously
-            // removed. This can occur when the entry was concurrently read while a
-            // writer was removing it. If the entry is no longer linked then it does
-            // not need to be processed.
-            if (evictionDeque.contains(node)) {
-                evictionDeque.moveToBack(node);
+    /**
+     * Drains the write buffer up to an amortized threshold.
+     */
+    void drainWriteBuffer() {
+        int drained = 0;
+        for (; drained < WRITE_BUFFER_DRAIN_THRESHOLD; drained++) {
+            Runnable task = writeBuffer.poll();
+            if (task == null) {
+                break;
             }
+            task.run();
         }
+        writeBufferLength.addAndGet(-drained);
+    }
 
-        public boolean isWrite() {
-            return false;
+    /**
+     * Notifies the listener of entries that were evicted, and the statistics listener of
+     * the evictions counted while the eviction lock was held.
+     */
+    void notifyListener() {
+        Node node;
+        while ((node = pendingNotifications.poll()) != null) {
+            listener.onEviction(node.key, node.getValue());
         }
+        stats.flushEvictions();
     }
 
     /**
      * Adds the node to the page replacement policy.
      */
-    final class AddTask extends AbstractTask {
+    final class AddTask implements Runnable {
 
         final Node node;
         final int weight;
@@ -623,20 +1004,18 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
 
             // ignore out-of-order write operations
             if (node.get().isAlive()) {
-                evictionDeque.add(node);
+                node.policyWeight = weight;
+                linkToPolicy(node);
+                timerWheel.schedule(node);
                 evict();
             }
         }
-
-        public boolean isWrite() {
-            return true;
-        }
     }
 
     /**
      * Removes a node from the page replacement policy.
      */
-    final class RemovalTask extends AbstractTask {
+    final class RemovalTask implements Runnable {
 
         final Node node;
 
@@ -646,38 +1025,34 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
 
         public void run() {
             // add may not have been processed yet
-            evictionDeque.remove(node);
+            unlinkFromPolicy(node);
+            timerWheel.deschedule(node);
             node.makeDead();
         }
-
-        public boolean isWrite() {
-            return true;
-        }
     }
 
     /**
      * Updates the weighted size and evicts an entry on overflow.
      */
-    final class UpdateTask extends ReadTask {
+    final class UpdateTask implements Runnable {
 
+        final Node node;
         final int weightDifference;
 
         public UpdateTask(Node node, int weightDifference) {
-            super(node);
+            this.node = node;
             this.weightDifference = weightDifference;
         }
 
-        @Override
         public void run() {
-            super.run();
             weightedSize += weightDifference;
+            updatePolicyWeight(node, weightDifference);
+            applyRead(node);
+            if (node.get().isAlive()) {
+                timerWheel.reschedule(node);
+            }
             evict();
         }
-
-        @Override
-        public boolean isWrite() {
-            return true;
-        }
     }
 
     /* ---------------- Concurrent Map Support -------------- */
@@ -701,31 +1076,113 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
         return Math.max(0, weightedSize);
     }
 
+    /**
+     * Returns the page replacement policy of this map.
+     *
+     * @return the page replacement policy
+     */
+    public Policy policy() {
+        return policy;
+    }
+
+    /**
+     * Returns the number of times {@link #get} found a mapping.
+     *
+     * @return the number of hits
+     */
+    public long hitCount() {
+        return stats.hitCount();
+    }
+
+    /**
+     * Returns the number of times {@link #get} found no mapping.
+     *
+     * @return the number of misses
+     */
+    public long missCount() {
+        return stats.missCount();
+    }
+
+    /**
+     * Returns the ratio of lookups that found a mapping, or <tt>1.0</tt> if there were
+     * no lookups.
+     *
+     * @return the hit rate
+     */
+    public double hitRate() {
+        return stats().hitRate();
+    }
+
+    /**
+     * Returns a snapshot of the lookup and eviction counts. A map does not load values,
+     * so the load counts are always zero.
+     *
+     * @return the statistics of the map
+     */
+    public DataCacheStats stats() {
+        return stats.snapshot();
+    }
+
+    /**
+     * Registers the statistics as a JMX MBean named
+     * <tt>commons.box:type=SafeLinkedMap,name=&lt;name&gt;</tt>. The MBean refers to the
+     * map only weakly, and should be removed with {@link #unregisterMBean(String)} when
+     * the map is discarded.
+     *
+     * @param name the name of the map
+     * @return the name of the registered MBean
+     * @throws AppError if the name is already registered or the MBean could not be
+     *                  registered
+     */
+    public ObjectName registerMBean(String name) throws AppError {
+        return InternalDataCacheStatsMXBean.register("SafeLinkedMap", name, this, SafeLinkedMap::stats, SafeLinkedMap::size);
+    }
+
+    /**
+     * Unregisters the JMX MBean registered by {@link #registerMBean(String)}.
+     *
+     * @param name the name of the map
+     * @return if an MBean of the name was registered
+     * @throws AppError if the MBean could not be unregistered
+     */
+    public boolean unregisterMBean(String name) throws AppError {
+        return InternalDataCacheStatsMXBean.unregister("SafeLinkedMap", name);
+    }
+
     @Override
     public void clear() {
         // The alternative is to iterate through the keys and call #remove(), which
         // adds unnecessary contention on the eviction lock and buffers.
         evictionLock.lock();
         try {
-            Node node;
-            while ((node = evictionDeque.poll()) != null) {
-                data.remove(node.key, node);
-                node.makeDead();
-            }
-
-            // Drain the buffers and run only the write tasks
-            for (int i = 0; i < buffers.length; i++) {
-                Queue<Task> buffer = buffers[i];
-                int removed = 0;
-                Task task;
-                while ((task = buffer.poll()) != null) {
-                    if (task.isWrite()) {
-                        task.run();
-                    }
-                    removed++;
+            for (SafeLinkedDeque<Node> deque : policyDeques(true)) {
+                Node node;
+                while ((node = deque.poll()) != null) {
+                    node.queue = QUEUE_NONE;
+                    timerWheel.deschedule(node);
+                    data.remove(node.key, node);
+                    node.makeDead();
                 }
-                bufferLengths.addAndGet(i, -removed);
             }
+            windowWeightedSize = 0;
+            protectedWeightedSize = 0;
+
+            // Discard the pending reads and run the write tasks
+            for (int i = 0; i < readBuffers.length; i++) {
+                for (AtomicReference<Node> slot : readBuffers[i]) {
+                    slot.lazySet(null);
+                }
+                readBufferReadCount[i] = readBufferWriteCount[i].get();
+                readBufferDrainAtWriteCount[i].lazySet(readBufferReadCount[i]);
+            }
+
+            Runnable task;
+            int removed = 0;
+            while ((task = writeBuffer.poll()) != null) {
+                task.run();
+                removed++;
+            }
+            writeBufferLength.addAndGet(-removed);
         } finally {
             evictionLock.unlock();
         }
@@ -733,7 +1190,8 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
 
     @Override
     public boolean containsKey(Object key) {
-        return data.containsKey(key);
+        Node node = data.get(key);
+        return (node != null) && !hasExpired(node);
     }
 
     @Override
@@ -752,9 +1210,23 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
     public V get(Object key) {
         final Node node = data.get(key);
         if (node == null) {
+            stats.recordMisses(1);
             return null;
         }
-        afterCompletion(new ReadTask(node));
+        final long deadline = node.deadline;
+        if (deadline != NEVER) {
+            final long now = now();
+            if (deadline <= now) {
+                stats.recordMisses(1);
+                expireOnCaller(node);
+                return null;
+            }
+            if (expireAfterAccessNanos > 0) {
+                node.deadline = Math.min(node.writeDeadline, deadlineOf(now, expireAfterAccessNanos));
+            }
+        }
+        stats.recordHits(1);
+        afterRead(node);
         return node.getValue();
     }
 
@@ -767,6 +1239,44 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
         return put(key, value, true);
     }
 
+    /**
+     * Associates the value with the key for the given time-to-live, which takes
+     * precedence over the map's expire after write duration for this entry.
+     *
+     * @param key      key with which the specified value is to be associated
+     * @param value    value to be associated with the specified key
+     * @param duration the time-to-live of the entry
+     * @param unit     the time unit of the duration
+     * @return the prior value in the data store or null if no mapping was found
+     * @throws IllegalArgumentException if the duration is less than or equal to zero
+     */
+    public V put(K key, V value, long duration, TimeUnit unit) {
+        return put(key, value, false, ttlOf(duration, unit));
+    }
+
+    /**
+     * Associates the value with the key for the given time-to-live if the key is not
+     * already associated with a value.
+     *
+     * @param key      key with which the specified value is to be associated
+     * @param value    value to be associated with the specified key
+     * @param duration the time-to-live of the entry
+     * @param unit     the time unit of the duration
+     * @return the prior value in the data store or null if no mapping was found
+     * @throws IllegalArgumentException if the duration is less than or equal to zero
+     */
+    public V putIfAbsent(K key, V value, long duration, TimeUnit unit) {
+        return put(key, value, true, ttlOf(duration, unit));
+    }
+
+    static long ttlOf(long duration, TimeUnit unit) {
+        checkNotNull(unit);
+        if (duration <= 0) {
+            throw new IllegalArgumentException();
+        }
+        return unit.toNanos(duration);
+    }
+
     /**
      * Adds a node to the list and the data store. If an existing node is found, then its
      * value is updated if allowed.
@@ -777,21 +1287,40 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
      *                     with a value
      * @return the prior value in the data store or null if no mapping was found
      */
-    @SuppressWarnings("Duplicates")
     V put(K key, V value, boolean onlyIfAbsent) {
+        return put(key, value, onlyIfAbsent, 0L);
+    }
+
+    /**
+     * Adds a node to the list and the data store. If an existing node is found, then its
+     * value is updated if allowed. An expired node is treated as absent.
+     *
+     * @param key          key with which the specified value is to be associated
+     * @param value        value to be associated with the specified key
+     * @param onlyIfAbsent a write is performed only if the key is not already associated
+     *                     with a value
+     * @param ttl          the entry's time-to-live in nanoseconds, or zero if unspecified
+     * @return the prior value in the data store or null if no mapping was found
+     */
+    @SuppressWarnings("Duplicates")
+    V put(K key, V value, boolean onlyIfAbsent, long ttl) {
         checkNotNull(value);
 
         final int weight = weigher.weightOf(value);
-        final WeightedValue<V> weightedValue = new WeightedValue<>(value, weight);
+        final WeightedValue<V> weightedValue = new WeightedValue<>(value, weight, ttl);
         final Node node = new Node(key, weightedValue);
+        setDeadlines(node, ttl);
 
         for (; ; ) {
             final Node prior = data.putIfAbsent(node.key, node);
             if (prior == null) {
-                afterCompletion(new AddTask(node, weight));
+                afterWrite(new AddTask(node, weight));
                 return null;
+            } else if (hasExpired(prior)) {
+                expireOnCaller(prior);
+                continue;
             } else if (onlyIfAbsent) {
-                afterCompletion(new ReadTask(prior));
+                afterRead(prior);
                 return prior.getValue();
             }
             for (; ; ) {
@@ -801,17 +1330,26 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
                 }
 
                 if (prior.compareAndSet(oldWeightedValue, weightedValue)) {
-                    final int weightedDifference = weight - oldWeightedValue.weight;
-                    final Task task = (weightedDifference == 0)
-                            ? new ReadTask(prior)
-                            : new UpdateTask(prior, weightedDifference);
-                    afterCompletion(task);
+                    setDeadlines(prior, ttl);
+                    afterUpdate(prior, weight - oldWeightedValue.weight);
                     return oldWeightedValue.value;
                 }
             }
         }
     }
 
+    /**
+     * Performs the post-processing work required after a value was replaced. A node
+     * that expires is rescheduled by a write so that its new deadline is not lost.
+     */
+    void afterUpdate(Node node, int weightedDifference) {
+        if ((weightedDifference == 0) && (node.deadline == NEVER)) {
+            afterRead(node);
+        } else {
+            afterWrite(new UpdateTask(node, weightedDifference));
+        }
+    }
+
     @Override
     public V remove(Object key) {
         final Node node = data.remove(key);
@@ -819,9 +1357,14 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
             return null;
         }
 
+        final boolean expired = hasExpired(node);
         node.makeRetired();
-        afterCompletion(new RemovalTask(node));
-        return node.getValue();
+        if (expired) {
+            pendingNotifications.add(node);
+            stats.deferEviction();
+        }
+        afterWrite(new RemovalTask(node));
+        return expired ? null : node.getValue();
     }
 
     public boolean remove(Object key, Object value) {
@@ -835,7 +1378,7 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
             if (weightedValue.hasValue(value)) {
                 if (node.tryToRetire(weightedValue)) {
                     if (data.remove(key, node)) {
-                        afterCompletion(new RemovalTask(node));
+                        afterWrite(new RemovalTask(node));
                         return true;
                     }
                 } else {
@@ -852,55 +1395,73 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
         }
     }
 
+    /**
+     * Replaces the value of an existing entry. The entry's own time-to-live, if it was
+     * written with one, is kept and restarted; otherwise the map's expiration applies.
+     *
+     * @param key   key with which the specified value is associated
+     * @param value value to be associated with the specified key
+     * @return the prior value or null if no mapping was found
+     */
     @SuppressWarnings("Duplicates")
     public V replace(K key, V value) {
         checkNotNull(value);
 
         final int weight = weigher.weightOf(value);
-        final WeightedValue<V> weightedValue = new WeightedValue<>(value, weight);
 
         final Node node = data.get(key);
         if (node == null) {
             return null;
+        } else if (hasExpired(node)) {
+            expireOnCaller(node);
+            return null;
         }
         for (; ; ) {
             WeightedValue<V> oldWeightedValue = node.get();
             if (!oldWeightedValue.isAlive()) {
                 return null;
             }
+            final WeightedValue<V> weightedValue = new WeightedValue<>(value, weight, oldWeightedValue.ttl);
             if (node.compareAndSet(oldWeightedValue, weightedValue)) {
-                int weightedDifference = weight - oldWeightedValue.weight;
-                final Task task = (weightedDifference == 0)
-                        ? new ReadTask(node)
-                        : new UpdateTask(node, weightedDifference);
-                afterCompletion(task);
+                setDeadlines(node, weightedValue.ttl);
+                afterUpdate(node, weight - oldWeightedValue.weight);
                 return oldWeightedValue.value;
             }
         }
     }
 
+    /**
+     * Replaces the value of an existing entry if it is currently mapped to the old
+     * value. The entry's own time-to-live, if it was written with one, is kept and
+     * restarted; otherwise the map's expiration applies.
+     *
+     * @param key      key with which the specified value is associated
+     * @param oldValue value expected to be associated with the specified key
+     * @param newValue value to be associated with the specified key
+     * @return if the value was replaced
+     */
     public boolean replace(K key, V oldValue, V newValue) {
         checkNotNull(oldValue);
         checkNotNull(newValue);
 
         final int weight = weigher.weightOf(newValue);
-        final WeightedValue<V> newWeightedValue = new WeightedValue<>(newValue, weight);
 
         final Node node = data.get(key);
         if (node == null) {
             return false;
+        } else if (hasExpired(node)) {
+            expireOnCaller(node);
+            return false;
         }
         for (; ; ) {
             final WeightedValue<V> weightedValue = node.get();
             if (!weightedValue.isAlive() || !weightedValue.hasValue(oldValue)) {
                 return false;
             }
+            final WeightedValue<V> newWeightedValue = new WeightedValue<>(newValue, weight, weightedValue.ttl);
             if (node.compareAndSet(weightedValue, newWeightedValue)) {
-                int weightedDifference = weight - weightedValue.weight;
-                final Task task = (weightedDifference == 0)
-                        ? new ReadTask(node)
-                        : new UpdateTask(node, weightedDifference);
-                afterCompletion(task);
+                setDeadlines(node, newWeightedValue.ttl);
+                afterUpdate(node, weight - weightedValue.weight);
                 return true;
             }
         }
@@ -984,19 +1545,20 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
         if (limit < 0) {
             throw new IllegalArgumentException();
         }
+        catchUp(true);
         evictionLock.lock();
         try {
-            drainBuffers(AMORTIZED_DRAIN_THRESHOLD);
-
             int initialCapacity = (weigher == Weighers.singleton()) ? Math.min(
                     limit,
                     weightedSize()) : 16;
             Set<K> keys = new LinkedHashSet<>(initialCapacity);
-            Iterator<Node> iterator = ascending
-                    ? evictionDeque.iterator()
-                    : evictionDeque.descendingIterator();
-            while (iterator.hasNext() && (limit > keys.size())) {
-                keys.add(iterator.next().key);
+            for (SafeLinkedDeque<Node> deque : policyDeques(ascending)) {
+                Iterator<Node> iterator = ascending
+                        ? deque.iterator()
+                        : deque.descendingIterator();
+                while (iterator.hasNext() && (limit > keys.size())) {
+                    keys.add(iterator.next().key);
+                }
             }
             return Collections.unmodifiableSet(keys);
         } finally {
@@ -1088,20 +1650,21 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
         if (limit < 0) {
             throw new IllegalArgumentException();
         }
+        catchUp(true);
         evictionLock.lock();
         try {
-            drainBuffers(AMORTIZED_DRAIN_THRESHOLD);
-
             int initialCapacity = (weigher == Weighers.singleton()) ? Math.min(
                     limit,
                     weightedSize()) : 16;
             Map<K, V> map = new LinkedHashMap<>(initialCapacity);
-            Iterator<Node> iterator = ascending
-                    ? evictionDeque.iterator()
-                    : evictionDeque.descendingIterator();
-            while (iterator.hasNext() && (limit > map.size())) {
-                Node node = iterator.next();
-                map.put(node.key, node.getValue());
+            for (SafeLinkedDeque<Node> deque : policyDeques(ascending)) {
+                Iterator<Node> iterator = ascending
+                        ? deque.iterator()
+                        : deque.descendingIterator();
+                while (iterator.hasNext() && (limit > map.size())) {
+                    Node node = iterator.next();
+                    map.put(node.key, node.getValue());
+                }
             }
             return Collections.unmodifiableMap(map);
         } finally {
@@ -1110,16 +1673,22 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
     }
 
     /**
-     * A value, its weight, and the entry's status.
+     * A value, its weight, the entry's own time-to-live, and the entry's status.
      */
     static final class WeightedValue<V> {
 
         final int weight;
         final V value;
+        final long ttl;
 
         WeightedValue(V value, int weight) {
+            this(value, weight, 0L);
+        }
+
+        WeightedValue(V value, int weight, long ttl) {
             this.weight = weight;
             this.value = value;
+            this.ttl = ttl;
         }
 
         boolean hasValue(Object o) {
@@ -1161,6 +1730,17 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
         Node prev;
         Node next;
 
+        // The policy's view of the entry, guarded by the eviction lock
+        int policyWeight;
+        byte queue;
+
+        // The deadlines in the map's ticker time, and the timer wheel's links that are
+        // guarded by the eviction lock
+        volatile long writeDeadline = NEVER;
+        volatile long deadline = NEVER;
+        Node prevInTimer;
+        Node nextInTimer;
+
         /**
          * Creates a new, unlinked node.
          */
@@ -1460,6 +2040,248 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
         }
     }
 
+    /**
+     * A hierarchical timer wheel of buckets holding the nodes whose deadlines fall in
+     * their time span, with wheels of increasing spans for distant deadlines. Advancing
+     * the wheel visits only the buckets whose time has passed. Accessed only under the
+     * eviction lock.
+     */
+    final class TimerWheel {
+
+        final Node[][] wheel;
+        final int[] shift;
+        long nanos;
+        int scheduled;
+
+        TimerWheel() {
+            wheel = newWheel();
+            shift = new int[TIMER_BUCKETS.length];
+            for (int i = 0; i < wheel.length; i++) {
+                shift[i] = Long.numberOfTrailingZeros(TIMER_SPANS[i]);
+                for (int j = 0; j < wheel[i].length; j++) {
+                    Node sentinel = new Node(null, null);
+                    sentinel.prevInTimer = sentinel;
+                    sentinel.nextInTimer = sentinel;
+                    wheel[i][j] = sentinel;
+                }
+            }
+        }
+
+        /**
+         * Allocates the wheels' buckets, as an array of the inner node type can only be
+         * created from its raw type.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Node[][] newWheel() {
+            Node[][] buckets = new SafeLinkedMap.Node[TIMER_BUCKETS.length][];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new SafeLinkedMap.Node[TIMER_BUCKETS[i]];
+            }
+            return buckets;
+        }
+
+        /**
+         * Adds the node to the bucket of its deadline, if it expires.
+         */
+        void schedule(Node node) {
+            if (node.deadline == NEVER) {
+                return;
+            }
+            Node sentinel = findBucket(Math.max(node.deadline, nanos));
+            Node last = sentinel.prevInTimer;
+            node.prevInTimer = last;
+            node.nextInTimer = sentinel;
+            last.nextInTimer = node;
+            sentinel.prevInTimer = node;
+            scheduled++;
+        }
+
+        /**
+         * Moves the node to the bucket of its current deadline.
+         */
+        void reschedule(Node node) {
+            deschedule(node);
+            schedule(node);
+        }
+
+        /**
+         * Removes the node from its bucket, if scheduled.
+         */
+        void deschedule(Node node) {
+            if (node.nextInTimer == null) {
+                return;
+            }
+            node.nextInTimer.prevInTimer = node.prevInTimer;
+            node.prevInTimer.nextInTimer = node.nextInTimer;
+            node.nextInTimer = null;
+            node.prevInTimer = null;
+            scheduled--;
+        }
+
+        Node findBucket(long time) {
+            long duration = time - nanos;
+            int length = wheel.length - 1;
+            for (int i = 0; i < length; i++) {
+                if (duration < TIMER_SPANS[i + 1]) {
+                    int index = (int) ((time >>> shift[i]) & (wheel[i].length - 1));
+                    return wheel[i][index];
+                }
+            }
+            return wheel[length][0];
+        }
+
+        /**
+         * Advances the wheel to the current time, evicting the expired nodes of the
+         * buckets that were passed and rescheduling the others.
+         */
+        void advance(long currentTime) {
+            long previousTime = nanos;
+            nanos = currentTime;
+            for (int i = 0; i < shift.length; i++) {
+                long previousTicks = previousTime >>> shift[i];
+                long currentTicks = currentTime >>> shift[i];
+                if ((currentTicks - previousTicks) <= 0L) {
+                    break;
+                }
+                expire(i, previousTicks, currentTicks);
+            }
+        }
+
+        void expire(int index, long previousTicks, long currentTicks) {
+            Node[] timerWheel = wheel[index];
+            int mask = timerWheel.length - 1;
+            long delta = currentTicks - previousTicks;
+            int count = (delta >= timerWheel.length) ? timerWheel.length : (int) delta + 1;
+            int start = (int) (previousTicks & mask);
+
+            for (int j = 0; j < count; j++) {
+                Node sentinel = timerWheel[(start + j) & mask];
+                Node node = sentinel.nextInTimer;
+                sentinel.prevInTimer = sentinel;
+                sentinel.nextInTimer = sentinel;
+
+                while (node != sentinel) {
+                    Node next = node.nextInTimer;
+                    node.prevInTimer = null;
+                    node.nextInTimer = null;
+                    scheduled--;
+
+                    // A retired node is pending removal by its removal task
+                    if (node.deadline <= nanos) {
+                        if (node.get().isAlive()) {
+                            evictNode(node);
+                        }
+                    } else {
+                        schedule(node);
+                    }
+                    node = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * A probabilistic multiset estimating the popularity of keys within a time window,
+     * used by the TinyLFU policy. A count-min sketch of four 4-bit counters per key packed
+     * into longs, so an estimate saturates at 15. When the number of increments reaches
+     * ten times the capacity, all counters are halved so that old popularity fades.
+     * The table only grows, keeping its counters when the capacity shrinks. Accessed only
+     * under the eviction lock.
+     */
+    static final class FrequencySketch {
+
+        static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+        static final long RESET_MASK = 0x7777777777777777L;
+        static final long ONE_MASK = 0x1111111111111111L;
+
+        long[] table;
+        int tableMask;
+        int sampleSize;
+        int size;
+
+        FrequencySketch(int capacity) {
+            ensureCapacity(capacity);
+        }
+
+        /**
+         * Grows the table to fit the capacity, discarding the counters only if it grows.
+         */
+        void ensureCapacity(int capacity) {
+            int maximum = Math.min(Math.max(1, capacity), 1 << 28);
+            sampleSize = 10 * maximum;
+            if ((table != null) && (table.length >= maximum)) {
+                return;
+            }
+            table = new long[ceilingNextPowerOfTwo(maximum)];
+            tableMask = table.length - 1;
+            size = 0;
+        }
+
+        /**
+         * Returns the estimated number of occurrences of the key, up to 15.
+         */
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        /**
+         * Increments the popularity of the key if it does not exceed the maximum, and
+         * periodically ages all counters.
+         */
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && (++size >= sampleSize)) {
+                reset();
+            }
+        }
+
+        boolean incrementAt(int i, int j) {
+            int offset = j << 2;
+            long mask = (0xfL << offset);
+            if ((table[i] & mask) != mask) {
+                table[i] += (1L << offset);
+                return true;
+            }
+            return false;
+        }
+
+        void reset() {
+            int count = 0;
+            for (int i = 0; i < table.length; i++) {
+                count += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            size = (size >>> 1) - (count >>> 2);
+        }
+
+        int indexOf(int item, int i) {
+            long hash = (item + SEEDS[i]) * SEEDS[i];
+            hash += (hash >>> 32);
+            return ((int) hash) & tableMask;
+        }
+
+        static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+
     /**
      * A weigher that enforces that the weight falls within a valid range.
      */
@@ -1502,13 +2324,7 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
             if (map == null) {
                 throw new CancellationException();
             }
-            int pendingTasks = 0;
-            for (int i = 0; i < map.buffers.length; i++) {
-                pendingTasks += map.bufferLengths.get(i);
-            }
-            if (pendingTasks != 0) {
-                map.tryToDrainBuffers(pendingTasks + BUFFER_THRESHOLD);
-            }
+            map.catchUp(false);
         }
     }
 
@@ -1584,57 +2400,6 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
         }
     }
 
-    /**
-     * An operation that can be lazily applied to the page replacement policy.
-     */
-    interface Task extends Runnable {
-
-        /**
-         * The priority order.
-         */
-        int getOrder();
-
-        /**
-         * If the task represents an add, modify, or remove operation.
-         */
-        boolean isWrite();
-
-        /**
-         * Returns the next task on the link chain.
-         */
-        Task getNext();
-
-        /**
-         * Sets the next task on the link chain.
-         */
-        void setNext(Task task);
-    }
-
-    /**
-     * A skeletal implementation of the <tt>Task</tt> interface.
-     */
-    abstract class AbstractTask implements Task {
-
-        final int order;
-        Task task;
-
-        AbstractTask() {
-            order = nextOrdering();
-        }
-
-        public int getOrder() {
-            return order;
-        }
-
-        public Task getNext() {
-            return task;
-        }
-
-        public void setNext(Task task) {
-            this.task = task;
-        }
-    }
-
     /* ---------------- Serialization Support -------------- */
 
     static final long serialVersionUID = 1;
@@ -1660,9 +2425,15 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
         final int concurrencyLevel;
         final Map<K, V> data;
         final int capacity;
+        final Policy policy;
+        final long expireAfterAccessNanos;
+        final long expireAfterWriteNanos;
 
         SerializationProxy(SafeLinkedMap<K, V> map) {
             concurrencyLevel = map.concurrencyLevel;
+            policy = map.policy;
+            expireAfterAccessNanos = map.expireAfterAccessNanos;
+            expireAfterWriteNanos = map.expireAfterWriteNanos;
             data = new HashMap<>(map);
             capacity = map.capacity;
             listener = map.listener;
@@ -1670,12 +2441,19 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
         }
 
         Object readResolve() {
-            SafeLinkedMap<K, V> map = new Builder<K, V>()
+            Builder<K, V> builder = new Builder<K, V>()
                     .concurrencyLevel(concurrencyLevel)
                     .maximumWeightedCapacity(capacity)
                     .listener(listener)
                     .weigher(weigher)
-                    .build();
+                    .policy((policy != null) ? policy : Policy.LRU);
+            if (expireAfterAccessNanos > 0) {
+                builder.expireAfterAccess(expireAfterAccessNanos, TimeUnit.NANOSECONDS);
+            }
+            if (expireAfterWriteNanos > 0) {
+                builder.expireAfterWrite(expireAfterWriteNanos, TimeUnit.NANOSECONDS);
+            }
+            SafeLinkedMap<K, V> map = builder.build();
             map.putAll(data);
             return map;
         }
@@ -1709,6 +2487,12 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
 
         EvictionListener<K, V> listener;
         Weigher<? super V> weigher;
+        Policy policy;
+        DataCacheStatsListener statsListener;
+
+        Ticker ticker;
+        long expireAfterAccessNanos;
+        long expireAfterWriteNanos;
 
         ExecutorService executor;
         TimeUnit unit;
@@ -1723,6 +2507,8 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
             capacity = -1;
             executor = DEFAULT_EXECUTOR;
             weigher = Weighers.singleton();
+            policy = Policy.LRU;
+            ticker = System::nanoTime;
             initialCapacity = DEFAULT_INITIAL_CAPACITY;
             concurrencyLevel = DEFAULT_CONCURRENCY_LEVEL;
             listener = (EvictionListener<K, V>) DiscardingListener.INSTANCE;
@@ -1805,15 +2591,82 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
             return this;
         }
 
+        /**
+         * Specifies the page replacement policy (default {@link Policy#LRU}). The
+         * {@link Policy#TINY_LFU} policy keeps frequently used entries when the map is
+         * swept by keys that are used only once, at the cost of a small frequency sketch.
+         *
+         * @param policy the page replacement policy
+         * @throws NullPointerException if the policy is null
+         */
+        public Builder<K, V> policy(Policy policy) {
+            checkNotNull(policy);
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * Specifies that an entry expires once the duration has elapsed after its last
+         * read or write.
+         *
+         * @param duration the length of time after an access that an entry expires
+         * @param unit     the time unit of the duration
+         * @throws NullPointerException     if the time unit is null
+         * @throws IllegalArgumentException if the duration is less than or equal to zero
+         */
+        public Builder<K, V> expireAfterAccess(long duration, TimeUnit unit) {
+            this.expireAfterAccessNanos = ttlOf(duration, unit);
+            return this;
+        }
+
+        /**
+         * Specifies that an entry expires once the duration has elapsed after its last
+         * write. An entry written with its own time-to-live uses that instead.
+         *
+         * @param duration the length of time after a write that an entry expires
+         * @param unit     the time unit of the duration
+         * @throws NullPointerException     if the time unit is null
+         * @throws IllegalArgumentException if the duration is less than or equal to zero
+         */
+        public Builder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+            this.expireAfterWriteNanos = ttlOf(duration, unit);
+            return this;
+        }
+
+        /**
+         * Specifies a listener that is notified synchronously of each lookup and eviction,
+         * for use by a metrics agent.
+         *
+         * @param statsListener the listener of the statistics
+         */
+        public Builder<K, V> statsListener(DataCacheStatsListener statsListener) {
+            this.statsListener = statsListener;
+            return this;
+        }
+
+        /**
+         * Specifies the time source used to expire entries (default
+         * {@link System#nanoTime()}).
+         *
+         * @param ticker the time source
+         * @throws NullPointerException if the ticker is null
+         */
+        public Builder<K, V> ticker(Ticker ticker) {
+            checkNotNull(ticker);
+            this.ticker = ticker;
+            return this;
+        }
+
         /**
          * Specifies an executor for use in catching up the page replacement policy. The
          * catch-up phase processes both updates to the retention ordering and writes that
-         * may trigger an eviction. The delay should be chosen carefully as the map will
-         * not automatically evict between executions.
+         * may trigger an eviction, until the write buffer is empty or a bounded number of
+         * amortized drains were performed.
          * <p>
-         * If unspecified or the executor is shutdown, the catching up will be amortized
-         * on user threads during write operations (or during read operations, in the
-         * absence of writes).
+         * The catching up is always amortized on user threads during write operations (or
+         * during read operations, in the absence of writes) when the eviction lock is
+         * free. The executor additionally catches up maps that are idle or whose users
+         * were not able to keep up, so that the policy does not lag behind the data.
          * <p>
          * A single-threaded {@link ScheduledExecutorService} should be sufficient for
          * catching up the page replacement policy in many maps.
@@ -1899,6 +2752,20 @@ public class SafeLinkedMap<K, V> extends AbstractMap<K, V> {
     }
 
 
+    /**
+     * A source of nanosecond precision time, used to expire entries. The default reads
+     * {@link System#nanoTime()}.
+     */
+    public static interface Ticker {
+
+        /**
+         * Returns the number of nanoseconds elapsed since a fixed but arbitrary origin.
+         *
+         * @return the time in nanoseconds
+         */
+        long read();
+    }
+
     /**
      * A common set of {@link Weigher} implementations.
      *
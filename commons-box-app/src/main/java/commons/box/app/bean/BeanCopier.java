@@ -0,0 +1,54 @@
+package commons.box.app.bean;
+
+import commons.box.app.AppError;
+
+/**
+ * 预先规划属性映射的对象复制器 源与目标中同名且类型可赋值(或定义了类型转换器)的属性会被复制
+ * <p>
+ * 同为 int/long/double/boolean 的属性直接按基本类型复制 不装箱 基本类型不同但可以拓宽时(如 int 到 long)按拓宽转换复制 不能拓宽(如 long 到 int)且未定义转换器时创建复制器出错
+ * <p>
+ * 实例是线程安全的 可重复使用
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public interface BeanCopier<S, T> {
+    /**
+     * 源类型
+     *
+     * @return
+     */
+    public Class<S> sourceType();
+
+    /**
+     * 目标类型
+     *
+     * @return
+     */
+    public Class<T> targetType();
+
+    /**
+     * 参与复制的属性名
+     *
+     * @return
+     */
+    public String[] props();
+
+    /**
+     * 复制属性到已有的目标对象
+     *
+     * @param source
+     * @param target
+     * @return 目标对象
+     * @throws AppError
+     */
+    public T copy(S source, T target) throws AppError;
+
+    /**
+     * 创建目标对象并复制属性 源对象为空时返回null
+     *
+     * @param source
+     * @return
+     * @throws AppError
+     */
+    public T copy(S source) throws AppError;
+}
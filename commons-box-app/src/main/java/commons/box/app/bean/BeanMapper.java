@@ -0,0 +1,56 @@
+package commons.box.app.bean;
+
+import commons.box.app.AppError;
+
+import java.util.Map;
+
+/**
+ * 对象与 Map&lt;String, Object&gt; 之间的转换器 属性列表只解析一次
+ * <p>
+ * 实例是线程安全的 可重复使用
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public interface BeanMapper<T> {
+    /**
+     * 对象类型
+     *
+     * @return
+     */
+    public Class<T> type();
+
+    /**
+     * 参与转换的属性名
+     *
+     * @return
+     */
+    public String[] props();
+
+    /**
+     * 对象转换为Map 包含全部可读属性 对象为空时返回空Map
+     *
+     * @param bean
+     * @return
+     * @throws AppError
+     */
+    public Map<String, Object> toMap(T bean) throws AppError;
+
+    /**
+     * 根据Map创建对象 Map中不存在的属性保持默认值
+     *
+     * @param map
+     * @return
+     * @throws AppError
+     */
+    public T fromMap(Map<String, ?> map) throws AppError;
+
+    /**
+     * 将Map中的值设置到已有对象 数值按属性类型转换
+     *
+     * @param map
+     * @param bean
+     * @return 对象
+     * @throws AppError
+     */
+    public T fromMap(Map<String, ?> map, T bean) throws AppError;
+}
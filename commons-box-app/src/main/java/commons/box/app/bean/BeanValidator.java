@@ -0,0 +1,66 @@
+package commons.box.app.bean;
+
+import commons.box.app.AppError;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预先编译验证计划的对象验证器 构造时确定需验证的属性及其验证规则 验证时不再查找属性
+ * <p>
+ * 验证失败的属性以 AppError 表示 消息中包含属性名 原始异常作为 cause 对象为空时视为验证不通过
+ * <p>
+ * 实例是线程安全的 可重复使用
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public interface BeanValidator<T> {
+    /**
+     * 对象类型
+     *
+     * @return
+     */
+    public Class<T> type();
+
+    /**
+     * 定义了验证规则的属性名
+     *
+     * @return
+     */
+    public String[] props();
+
+    /**
+     * 验证对象 遇到第一个验证失败即抛出
+     *
+     * @param bean
+     * @throws AppError
+     */
+    public void validate(T bean) throws AppError;
+
+    /**
+     * 验证对象并返回全部验证错误 验证通过时返回空列表
+     *
+     * @param bean
+     * @return
+     */
+    public List<AppError> check(T bean);
+
+    /**
+     * 验证对象 failFast 为 true 时每个对象最多返回一个错误
+     *
+     * @param bean
+     * @param failFast
+     * @return
+     */
+    public List<AppError> check(T bean, boolean failFast);
+
+    /**
+     * 批量验证 返回未通过验证的对象在列表中的位置及其错误 按位置排序 全部通过时返回空Map
+     *
+     * @param beans
+     * @param failFast 每个对象遇到第一个错误即停止
+     * @param parallel 是否并行验证
+     * @return
+     */
+    public Map<Integer, List<AppError>> checkAll(List<? extends T> beans, boolean failFast, boolean parallel);
+}
@@ -2,7 +2,9 @@ package commons.box.app.bean;
 
 import commons.box.app.AppError;
 import commons.box.app.DataName;
+import commons.box.app.internal.InternalClassAccessProjection;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -152,6 +154,147 @@ public interface ClassAccess<T> extends DataName {
      */
     public Set<String> propNames();
 
+    /**
+     * 属性索引 用于基于索引的快速访问 未找到时返回-1
+     * <p>
+     * 以下基于索引的方法默认按名称遍历实现 索引与对应map的遍历顺序一致 实现类可以覆盖以使用数组访问
+     *
+     * @param property
+     * @return
+     */
+    public default int propIndex(String property) {
+        if (property == null) return -1;
+        int i = 0;
+        for (String n : this.propNames()) {
+            if (property.equals(n)) return i;
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * 字段索引 用于基于索引的快速访问 未找到时返回-1
+     *
+     * @param field
+     * @return
+     */
+    public default int fieldIndex(String field) {
+        Map<String, ClassAccessField<T, ?>> fields = this.accessFields();
+        if (field == null || fields == null) return -1;
+        int i = 0;
+        for (String n : fields.keySet()) {
+            if (field.equals(n)) return i;
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * 方法索引 用于基于索引的快速访问 未找到时返回-1
+     *
+     * @param methodName
+     * @param parameterTypes
+     * @return
+     */
+    public default int methodIndex(String methodName, Class<?>... parameterTypes) {
+        ClassAccessMethod<T, ?> method = this.method(methodName, parameterTypes);
+        Map<String, ClassAccessMethod<T, ?>[]> methods = this.accessMethods();
+        if (method == null || methods == null) return -1;
+        int i = 0;
+        for (ClassAccessMethod<T, ?>[] ms : methods.values()) {
+            if (ms != null) for (ClassAccessMethod<T, ?> m : ms) {
+                if (m == method) return i;
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 根据索引获取属性值 索引由 propIndex 获得
+     *
+     * @param object
+     * @param index
+     * @return
+     * @throws AppError
+     */
+    public default <P> P get(T object, int index) throws AppError {
+        int i = 0;
+        for (String n : this.propNames()) if (i++ == index) return this.get(object, n);
+        throw AppError.error("类 " + this.name() + " 属性索引 " + index + " 越界");
+    }
+
+    /**
+     * 根据索引设置属性值 索引由 propIndex 获得
+     *
+     * @param object
+     * @param index
+     * @param value
+     * @throws AppError
+     */
+    public default <P> void set(T object, int index, P value) throws AppError {
+        int i = 0;
+        for (String n : this.propNames())
+            if (i++ == index) {
+                this.set(object, n, value);
+                return;
+            }
+        throw AppError.error("类 " + this.name() + " 属性索引 " + index + " 越界");
+    }
+
+    /**
+     * 根据索引获取字段值 索引由 fieldIndex 获得
+     *
+     * @param object
+     * @param index
+     * @return
+     * @throws AppError
+     */
+    public default <F> F field(T object, int index) throws AppError {
+        Map<String, ClassAccessField<T, ?>> fields = this.accessFields();
+        int i = 0;
+        if (fields != null) for (String n : fields.keySet()) if (i++ == index) return this.field(object, n);
+        throw AppError.error("类 " + this.name() + " 字段索引 " + index + " 越界");
+    }
+
+    /**
+     * 根据索引设置字段值 索引由 fieldIndex 获得
+     *
+     * @param object
+     * @param index
+     * @param value
+     * @throws AppError
+     */
+    public default <F> void field(T object, int index, F value) throws AppError {
+        Map<String, ClassAccessField<T, ?>> fields = this.accessFields();
+        int i = 0;
+        if (fields != null) for (String n : fields.keySet())
+            if (i++ == index) {
+                this.field(object, n, value);
+                return;
+            }
+        throw AppError.error("类 " + this.name() + " 字段索引 " + index + " 越界");
+    }
+
+    /**
+     * 根据索引调用方法 索引由 methodIndex 获得
+     *
+     * @param object
+     * @param index
+     * @param parameters
+     * @return
+     * @throws Throwable
+     */
+    @SuppressWarnings("unchecked")
+    public default <M> M invoke(T object, int index, Object... parameters) throws Throwable {
+        Map<String, ClassAccessMethod<T, ?>[]> methods = this.accessMethods();
+        int i = 0;
+        if (methods != null) for (ClassAccessMethod<T, ?>[] ms : methods.values()) {
+            if (ms != null) for (ClassAccessMethod<T, ?> m : ms) if (i++ == index) return (M) m.invoke(object, parameters);
+        }
+        throw AppError.error("类 " + this.name() + " 方法索引 " + index + " 越界");
+    }
+
     /**
      * 获取属性值
      *
@@ -171,4 +314,16 @@ public interface ClassAccess<T> extends DataName {
      * @throws AppError
      */
     public <P> void set(T object, String property, P value) throws AppError;
+
+    /**
+     * 批量提取属性值 按列保存 基本类型属性使用原始数组 不为每行创建Map
+     *
+     * @param beans
+     * @param props
+     * @return
+     * @throws AppError 属性不存在或不可读
+     */
+    public default ClassAccessProjection<T> project(List<? extends T> beans, String... props) throws AppError {
+        return new InternalClassAccessProjection<>(this, beans, props);
+    }
 }
@@ -0,0 +1,108 @@
+package commons.box.app.bean;
+
+import commons.box.app.AppError;
+
+/**
+ * 按列存储的批量属性值 由 ClassAccess.project 生成
+ * <p>
+ * 基本类型属性按 int/long/double 原始数组保存 不对每个值装箱 其他类型以 Object[] 保存
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public interface ClassAccessProjection<T> {
+    /**
+     * 投影来源的可访问类
+     *
+     * @return
+     */
+    public ClassAccess<T> parent();
+
+    /**
+     * 行数 与传入的对象列表长度一致
+     *
+     * @return
+     */
+    public int size();
+
+    /**
+     * 列名 即传入的属性名
+     *
+     * @return
+     */
+    public String[] names();
+
+    /**
+     * 列索引 未找到时返回-1
+     *
+     * @param name
+     * @return
+     */
+    public int index(String name);
+
+    /**
+     * 列对应的属性类型
+     *
+     * @param column
+     * @return
+     */
+    public Class<?> type(int column);
+
+    /**
+     * 列是否以原始数组保存
+     *
+     * @param column
+     * @return
+     */
+    public boolean isPrimitive(int column);
+
+    /**
+     * 对象列 原始类型列会装箱生成新数组
+     *
+     * @param column
+     * @return
+     */
+    public Object[] column(int column);
+
+    /**
+     * 全部列 原始类型列会装箱生成新数组
+     *
+     * @return
+     */
+    public Object[][] columns();
+
+    /**
+     * int/short/byte 类型的列
+     *
+     * @param column
+     * @return
+     * @throws AppError 列不是对应的原始类型
+     */
+    public int[] ints(int column) throws AppError;
+
+    /**
+     * long 类型的列
+     *
+     * @param column
+     * @return
+     * @throws AppError 列不是对应的原始类型
+     */
+    public long[] longs(int column) throws AppError;
+
+    /**
+     * double/float 类型的列
+     *
+     * @param column
+     * @return
+     * @throws AppError 列不是对应的原始类型
+     */
+    public double[] doubles(int column) throws AppError;
+
+    /**
+     * 单个值 原始类型列的值会装箱
+     *
+     * @param row
+     * @param column
+     * @return
+     */
+    public Object value(int row, int column);
+}
@@ -3,6 +3,8 @@ package commons.box.app.bean;
 import commons.box.app.AppError;
 import commons.box.app.DataName;
 import commons.box.app.DataValidator;
+import commons.box.app.internal.InternalClassAccessProperty;
+import commons.box.util.Types;
 
 import java.util.List;
 
@@ -71,6 +73,98 @@ public interface ClassAccessProperty<C, P> extends DataName {
      */
     public void set(C object, P value) throws AppError;
 
+    /**
+     * 获取int值 属性为 int/short/byte/char 时不装箱 其他数值类型按 Number 转换 空值返回0
+     * <p>
+     * 以下基本类型访问方法默认通过 get/set 装箱实现 实现类可以覆盖以避免装箱
+     *
+     * @param object
+     * @return
+     * @throws AppError
+     */
+    public default int getInt(C object) throws AppError {
+        return InternalClassAccessProperty.number(this, this.get(object)).intValue();
+    }
+
+    /**
+     * 获取long值 属性为 long 及可拓宽为 long 的基本类型时不装箱 其他数值类型按 Number 转换 空值返回0
+     *
+     * @param object
+     * @return
+     * @throws AppError
+     */
+    public default long getLong(C object) throws AppError {
+        return InternalClassAccessProperty.number(this, this.get(object)).longValue();
+    }
+
+    /**
+     * 获取double值 属性为 boolean 以外的基本类型时不装箱 其他数值类型按 Number 转换 空值返回0
+     *
+     * @param object
+     * @return
+     * @throws AppError
+     */
+    public default double getDouble(C object) throws AppError {
+        return InternalClassAccessProperty.number(this, this.get(object)).doubleValue();
+    }
+
+    /**
+     * 获取boolean值 属性为 boolean 时不装箱 空值返回false
+     *
+     * @param object
+     * @return
+     * @throws AppError
+     */
+    public default boolean getBoolean(C object) throws AppError {
+        P value = this.get(object);
+        return (value instanceof Boolean) ? (Boolean) value : Types.isTrue(value);
+    }
+
+    /**
+     * 设置int值 属性为 int 及可由 int 拓宽的基本类型时不装箱 其他类型转换为属性类型后设置
+     *
+     * @param object
+     * @param value
+     * @throws AppError
+     */
+    public default void setInt(C object, int value) throws AppError {
+        this.set(object, InternalClassAccessProperty.convert(this.type(), value));
+    }
+
+    /**
+     * 设置long值 属性为 long/float/double 时不装箱 其他类型转换为属性类型后设置
+     *
+     * @param object
+     * @param value
+     * @throws AppError
+     */
+    public default void setLong(C object, long value) throws AppError {
+        this.set(object, InternalClassAccessProperty.convert(this.type(), value));
+    }
+
+    /**
+     * 设置double值 属性为 double 时不装箱 其他类型转换为属性类型后设置
+     *
+     * @param object
+     * @param value
+     * @throws AppError
+     */
+    public default void setDouble(C object, double value) throws AppError {
+        this.set(object, InternalClassAccessProperty.convert(this.type(), value));
+    }
+
+    /**
+     * 设置boolean值 属性为 boolean 时不装箱
+     *
+     * @param object
+     * @param value
+     * @throws AppError
+     */
+    @SuppressWarnings("unchecked")
+    public default void setBoolean(C object, boolean value) throws AppError {
+        this.set(object, (P) Boolean.valueOf(value));
+    }
+
 
     /**
      * 验证规则
@@ -0,0 +1,65 @@
+package commons.box.app.bean;
+
+import commons.box.app.AppError;
+import commons.box.app.DataName;
+
+/**
+ * 预编译的(多级)属性路径 如 "a.b.c"
+ * <p>
+ * 路径分段只解析一次 每一级按运行时类型缓存已解析的属性访问器 可重复用于大量对象的取值与赋值
+ * <p>
+ * 实例是线程安全的
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public interface PropertyPath extends DataName {
+    /**
+     * 原始路径
+     *
+     * @return
+     */
+    public String name();
+
+    /**
+     * 根类型 编译时未指定时为null
+     *
+     * @return
+     */
+    public Class<?> root();
+
+    /**
+     * 分段后的属性名
+     *
+     * @return
+     */
+    public String[] segments();
+
+    /**
+     * 获取值 中间对象为空时返回null
+     *
+     * @param bean
+     * @param <O>
+     * @return
+     * @throws AppError
+     */
+    public <O> O get(Object bean) throws AppError;
+
+    /**
+     * 设置值 中间对象为空时自动创建
+     *
+     * @param bean
+     * @param value
+     * @throws AppError
+     */
+    public void set(Object bean, Object value) throws AppError;
+
+    /**
+     * 设置值
+     *
+     * @param bean
+     * @param value
+     * @param autocreate 中间对象为空时是否自动创建
+     * @throws AppError
+     */
+    public void set(Object bean, Object value, boolean autocreate) throws AppError;
+}
@@ -0,0 +1,181 @@
+package commons.box.app.internal;
+
+import com.google.common.primitives.Primitives;
+import commons.box.app.AppClass;
+import commons.box.app.AppError;
+import commons.box.app.bean.ClassAccessField;
+import commons.box.app.bean.ClassAccessMethod;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.*;
+
+/**
+ * 基于运行时生成字节码的类访问
+ * <p>
+ * 属性的 getter/setter 通过 LambdaMetafactory 生成对应的 Function/BiConsumer 实现类 调用时不再经过 Method.invoke 字段及方法使用 MethodHandle
+ * <p>
+ * 无法生成时(非公共类型、不同类加载器不可见的类型等)自动退回到基于反射的访问
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public class InternalASMClassAccess<T> extends InternalClassAccess<T> {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType TYPE_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType TYPE_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    public InternalASMClassAccess(String name, Class<T> type) throws AppError {
+        super(name, type, AppClass.AccessStrategy.ASM);
+    }
+
+    public InternalASMClassAccess(Class<T> type) throws AppError {
+        this((type != null) ? type.getName() : null, type);
+    }
+
+    @Override
+    protected <P> InternalClassAccessProperty<T, P> newAccessProperty(String pname, Class<P> ptype, PropertyDescriptor pd, Field field, Method getter, Method setter) {
+        if (pname == null || ptype == null) return null;
+
+        final ClassAccessField<T, P> afield = this.newAccessField(field);
+        final ClassAccessMethod<T, P> agetter = this.newAccessMethod(getter);
+        final ClassAccessMethod<T, ?> asetter = this.newAccessMethod(setter);
+
+        return new InternalASMClassAccessProperty<>(this, pname, ptype, pd, afield, agetter, asetter, createGetter(getter), createSetter(setter), createPrimitiveGetter(getter));
+    }
+
+    /**
+     * 无参构造方法生成对应的 Supplier 其余构造方法使用上级的 MethodHandle 机制
+     *
+     * @param constructor
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Creator newCreator(Constructor<T> constructor) {
+        if (constructor.getParameterCount() == 0 && Modifier.isPublic(constructor.getModifiers()) && isVisible(constructor.getDeclaringClass())
+                && !Modifier.isAbstract(constructor.getDeclaringClass().getModifiers())) {
+            try {
+                Class<?> owner = constructor.getDeclaringClass();
+                MethodHandle mh = LOOKUP.unreflectConstructor(constructor);
+                CallSite cs = LambdaMetafactory.metafactory(LOOKUP, "get", MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class), mh, MethodType.methodType(owner));
+                Supplier<Object> factory = (Supplier<Object>) cs.getTarget().invoke();
+                return parameters -> factory.get();
+            } catch (Throwable e) {
+                LOG.debug("无法生成构造方法访问 " + constructor + " 使用 MethodHandle", e);
+            }
+        }
+        return super.newCreator(constructor);
+    }
+
+    /**
+     * 生成 getter 对应的 Function 无法生成时返回null
+     *
+     * @param getter
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected static Function<Object, Object> createGetter(Method getter) {
+        if (!canGenerate(getter) || getter.getParameterCount() != 0 || getter.getReturnType() == void.class) return null;
+        try {
+            Class<?> owner = getter.getDeclaringClass();
+            MethodHandle mh = LOOKUP.unreflect(getter);
+            CallSite cs = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+                    TYPE_GETTER, mh, MethodType.methodType(Primitives.wrap(getter.getReturnType()), owner));
+            return (Function<Object, Object>) cs.getTarget().invoke();
+        } catch (Throwable e) {
+            LOG.debug("无法生成属性访问 " + getter + " 使用反射机制", e);
+        }
+        return null;
+    }
+
+    /**
+     * 为返回 int/long/double/boolean 的 getter 生成对应的 ToIntFunction/ToLongFunction/ToDoubleFunction/Predicate 读取时不装箱 其他情况返回null
+     *
+     * @param getter
+     * @return
+     */
+    protected static Object createPrimitiveGetter(Method getter) {
+        if (!canGenerate(getter) || getter.getParameterCount() != 0) return null;
+        Class<?> rt = getter.getReturnType();
+        Class<?> fi;
+        String fn;
+        if (rt == int.class) {
+            fi = ToIntFunction.class;
+            fn = "applyAsInt";
+        } else if (rt == long.class) {
+            fi = ToLongFunction.class;
+            fn = "applyAsLong";
+        } else if (rt == double.class) {
+            fi = ToDoubleFunction.class;
+            fn = "applyAsDouble";
+        } else if (rt == boolean.class) {
+            fi = Predicate.class;
+            fn = "test";
+        } else return null;
+
+        try {
+            Class<?> owner = getter.getDeclaringClass();
+            MethodHandle mh = LOOKUP.unreflect(getter);
+            CallSite cs = LambdaMetafactory.metafactory(LOOKUP, fn, MethodType.methodType(fi),
+                    MethodType.methodType(rt, Object.class), mh, MethodType.methodType(rt, owner));
+            return cs.getTarget().invoke();
+        } catch (Throwable e) {
+            LOG.debug("无法生成属性访问 " + getter + " 使用 MethodHandle", e);
+        }
+        return null;
+    }
+
+    /**
+     * 生成 setter 对应的 BiConsumer 无法生成时返回null
+     *
+     * @param setter
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected static BiConsumer<Object, Object> createSetter(Method setter) {
+        if (!canGenerate(setter) || setter.getParameterCount() != 1) return null;
+        try {
+            Class<?> owner = setter.getDeclaringClass();
+            MethodHandle mh = LOOKUP.unreflect(setter);
+            CallSite cs = LambdaMetafactory.metafactory(LOOKUP, "accept", MethodType.methodType(BiConsumer.class),
+                    TYPE_SETTER, mh, MethodType.methodType(void.class, owner, Primitives.wrap(setter.getParameterTypes()[0])));
+            return (BiConsumer<Object, Object>) cs.getTarget().invoke();
+        } catch (Throwable e) {
+            LOG.debug("无法生成属性访问 " + setter + " 使用反射机制", e);
+        }
+        return null;
+    }
+
+    /**
+     * 生成的实现类位于本类的类加载器中 因此方法及其涉及的类型必须是公共的且对本类加载器可见
+     *
+     * @param method
+     * @return
+     */
+    protected static boolean canGenerate(Method method) {
+        if (method == null || !Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())) return false;
+        if (!isVisible(method.getDeclaringClass()) || !isVisible(method.getReturnType())) return false;
+        for (Class<?> pt : method.getParameterTypes()) if (!isVisible(pt)) return false;
+        return true;
+    }
+
+    protected static boolean isVisible(Class<?> type) {
+        while (type.isArray()) type = type.getComponentType();
+        if (type.isPrimitive()) return true;
+        if (!Modifier.isPublic(type.getModifiers())) return false;
+        try {
+            return Class.forName(type.getName(), false, InternalASMClassAccess.class.getClassLoader()) == type;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+}
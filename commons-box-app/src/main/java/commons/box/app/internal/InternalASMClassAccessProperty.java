@@ -0,0 +1,105 @@
+package commons.box.app.internal;
+
+import commons.box.app.AppError;
+import commons.box.app.bean.ClassAccessField;
+import commons.box.app.bean.ClassAccessMethod;
+
+import java.beans.PropertyDescriptor;
+import java.util.function.*;
+
+/**
+ * 基于生成访问器的属性实现 未能生成访问器时使用上级的反射机制
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public class InternalASMClassAccessProperty<T, P> extends InternalClassAccessProperty<T, P> {
+    protected final Function<Object, Object> getter;
+    protected final BiConsumer<Object, Object> setter;
+    // 基本类型 getter 的生成实现 与属性类型对应 最多只有一个不为空
+    protected final ToIntFunction<Object> intFunction;
+    protected final ToLongFunction<Object> longFunction;
+    protected final ToDoubleFunction<Object> doubleFunction;
+    protected final Predicate<Object> booleanFunction;
+
+    @SuppressWarnings("unchecked")
+    public InternalASMClassAccessProperty(InternalClassAccess<T> parent, String name, Class<P> type, PropertyDescriptor pd, ClassAccessField<T, P> accessField, ClassAccessMethod<T, P> accessGetter, ClassAccessMethod<T, ?> accessSetter,
+                                          Function<Object, Object> getter, BiConsumer<Object, Object> setter, Object primitiveGetter) {
+        super(parent, name, type, pd, accessField, accessGetter, accessSetter);
+        this.getter = getter;
+        this.setter = setter;
+        this.intFunction = (primitiveGetter instanceof ToIntFunction) ? (ToIntFunction<Object>) primitiveGetter : null;
+        this.longFunction = (primitiveGetter instanceof ToLongFunction) ? (ToLongFunction<Object>) primitiveGetter : null;
+        this.doubleFunction = (primitiveGetter instanceof ToDoubleFunction) ? (ToDoubleFunction<Object>) primitiveGetter : null;
+        this.booleanFunction = (primitiveGetter instanceof Predicate) ? (Predicate<Object>) primitiveGetter : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public P get(T object) throws AppError {
+        if (this.getter == null) return super.get(object);
+        if (object == null) throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 对象为空");
+        try {
+            return (P) this.getter.apply(object);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public void set(T object, P value) throws AppError {
+        if (this.setter == null) {
+            super.set(object, value);
+            return;
+        }
+        if (object == null) throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 设置值发生错误 对象为空");
+        try {
+            this.setter.accept(object, value);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 设置值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public int getInt(T object) throws AppError {
+        if (this.intFunction == null) return super.getInt(object);
+        if (object == null) throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 对象为空");
+        try {
+            return this.intFunction.applyAsInt(object);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public long getLong(T object) throws AppError {
+        if (this.longFunction == null) return super.getLong(object);
+        if (object == null) throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 对象为空");
+        try {
+            return this.longFunction.applyAsLong(object);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public double getDouble(T object) throws AppError {
+        if (this.doubleFunction == null) return super.getDouble(object);
+        if (object == null) throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 对象为空");
+        try {
+            return this.doubleFunction.applyAsDouble(object);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(T object) throws AppError {
+        if (this.booleanFunction == null) return super.getBoolean(object);
+        if (object == null) throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 对象为空");
+        try {
+            return this.booleanFunction.test(object);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 ", e);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package commons.box.app.internal;
+
+import com.google.common.primitives.Primitives;
+import commons.box.app.AppClass;
+import commons.box.app.AppError;
+import commons.box.app.TypeConverter;
+import commons.box.app.bean.BeanCopier;
+import commons.box.app.bean.ClassAccess;
+import commons.box.app.bean.ClassAccessProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对象复制器实现 构造时按属性名匹配源与目标属性并确定复制方式
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public class InternalBeanCopier<S, T> implements BeanCopier<S, T> {
+    protected static final int KIND_OBJECT = 0;
+    protected static final int KIND_INT = 1;
+    protected static final int KIND_LONG = 2;
+    protected static final int KIND_DOUBLE = 3;
+    protected static final int KIND_BOOLEAN = 4;
+    protected static final int KIND_CONVERT = 5;
+    protected static final int KIND_WIDEN = 6;
+
+    protected final Class<S> sourceType;
+    protected final Class<T> targetType;
+    protected final ClassAccess<T> targetAccess;
+    protected final Step[] steps;
+    protected final String[] props;
+
+    public InternalBeanCopier(Class<S> sourceType, Class<T> targetType, Map<String, TypeConverter<?, ?>> converters) throws AppError {
+        if (sourceType == null || targetType == null) throw AppError.error("无法创建复制器 缺少源类型或目标类型");
+        this.sourceType = sourceType;
+        this.targetType = targetType;
+        this.targetAccess = AppClass.from(targetType).access();
+        if (converters == null) converters = Collections.emptyMap();
+
+        ClassAccess<S> sa = AppClass.from(sourceType).access();
+        List<Step> ss = new ArrayList<>();
+        for (Map.Entry<String, ClassAccessProperty<T, ?>> e : this.targetAccess.accessProperties().entrySet()) {
+            ClassAccessProperty<Object, Object> tp = erase(e.getValue());
+            ClassAccessProperty<Object, Object> sp = erase(sa.prop(e.getKey()));
+            if (tp == null || sp == null || !tp.canWrite() || !sp.canRead()) continue;
+
+            TypeConverter<Object, Object> conv = erase(converters.get(e.getKey()));
+            int kind = (conv != null) ? KIND_CONVERT : kind(sp.type(), tp.type());
+            if (kind < 0 && numeric(sp.type()) && numeric(tp.type()))
+                throw AppError.error("无法复制类 " + sourceType.getName() + " 的属性 " + e.getKey() + " 类型 " + sp.type().getName() + " 不能拓宽为 " + tp.type().getName() + " 需指定转换器");
+            if (kind < 0) continue;
+            ss.add(new Step(sp, tp, kind, conv));
+        }
+
+        this.steps = ss.toArray(new Step[0]);
+        this.props = new String[this.steps.length];
+        for (int i = 0; i < this.steps.length; i++) this.props[i] = this.steps[i].target.name();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ClassAccessProperty<Object, Object> erase(ClassAccessProperty<?, ?> prop) {
+        return (ClassAccessProperty<Object, Object>) prop;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TypeConverter<Object, Object> erase(TypeConverter<?, ?> converter) {
+        return (TypeConverter<Object, Object>) converter;
+    }
+
+    /**
+     * 复制方式 类型不可赋值时返回-1
+     * <p>
+     * 基本类型(或其包装类型)不同但可以拓宽时(如 int 到 long)按拓宽转换复制 两端都是基本类型且目标为 int/long/double 时不装箱
+     */
+    protected static int kind(Class<?> st, Class<?> tt) {
+        if (st == null || tt == null) return -1;
+        if (st == tt) {
+            if (st == int.class) return KIND_INT;
+            if (st == long.class) return KIND_LONG;
+            if (st == double.class) return KIND_DOUBLE;
+            if (st == boolean.class) return KIND_BOOLEAN;
+        }
+        if (Primitives.wrap(tt).isAssignableFrom(Primitives.wrap(st))) return KIND_OBJECT;
+
+        Class<?> sp = Primitives.unwrap(st), tp = Primitives.unwrap(tt);
+        if (!sp.isPrimitive() || !tp.isPrimitive() || !InternalClassAccessProperty.widens(sp, tp)) return -1;
+        if (st.isPrimitive() && tt.isPrimitive()) {
+            if (tt == int.class) return KIND_INT;
+            if (tt == long.class) return KIND_LONG;
+            if (tt == double.class) return KIND_DOUBLE;
+        }
+        return KIND_WIDEN;
+    }
+
+    /**
+     * 基本类型或其包装类型
+     */
+    private static boolean numeric(Class<?> type) {
+        return type != null && Primitives.unwrap(type).isPrimitive();
+    }
+
+    @Override
+    public Class<S> sourceType() {
+        return this.sourceType;
+    }
+
+    @Override
+    public Class<T> targetType() {
+        return this.targetType;
+    }
+
+    @Override
+    public String[] props() {
+        return this.props.clone();
+    }
+
+    @Override
+    public T copy(S source) throws AppError {
+        if (source == null) return null;
+        return this.copy(source, this.targetAccess.instance());
+    }
+
+    @Override
+    public T copy(S source, T target) throws AppError {
+        if (source == null || target == null) return target;
+        for (Step s : this.steps) {
+            switch (s.kind) {
+                case KIND_INT:
+                    s.target.setInt(target, s.source.getInt(source));
+                    break;
+                case KIND_LONG:
+                    s.target.setLong(target, s.source.getLong(source));
+                    break;
+                case KIND_DOUBLE:
+                    s.target.setDouble(target, s.source.getDouble(source));
+                    break;
+                case KIND_BOOLEAN:
+                    s.target.setBoolean(target, s.source.getBoolean(source));
+                    break;
+                case KIND_CONVERT:
+                    s.target.set(target, s.converter.convert(s.source.get(source)));
+                    break;
+                case KIND_WIDEN:
+                    Object n = s.source.get(source);
+                    if (n != null) s.target.set(target, InternalClassAccessProperty.convert(s.target.type(), InternalClassAccessProperty.number(s.source, n)));
+                    else if (!s.primitive) s.target.set(target, null);
+                    break;
+                default:
+                    Object v = s.source.get(source);
+                    if (v != null || !s.primitive) s.target.set(target, v); // 空值不设置到基本类型属性
+            }
+        }
+        return target;
+    }
+
+    protected static final class Step {
+        private final ClassAccessProperty<Object, Object> source;
+        private final ClassAccessProperty<Object, Object> target;
+        private final int kind;
+        private final TypeConverter<Object, Object> converter;
+        private final boolean primitive;
+
+        private Step(ClassAccessProperty<Object, Object> source, ClassAccessProperty<Object, Object> target, int kind, TypeConverter<Object, Object> converter) {
+            this.source = source;
+            this.target = target;
+            this.kind = kind;
+            this.converter = converter;
+            this.primitive = target.type().isPrimitive();
+        }
+    }
+}
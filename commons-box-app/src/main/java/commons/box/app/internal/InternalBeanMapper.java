@@ -0,0 +1,102 @@
+package commons.box.app.internal;
+
+import com.google.common.primitives.Primitives;
+import commons.box.app.AppClass;
+import commons.box.app.AppError;
+import commons.box.app.bean.BeanMapper;
+import commons.box.app.bean.ClassAccess;
+import commons.box.app.bean.ClassAccessProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对象与Map转换器实现 构造时确定可读及可写属性
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public class InternalBeanMapper<T> implements BeanMapper<T> {
+    private static final String PROP_CLASS = "class";
+
+    protected final Class<T> type;
+    protected final ClassAccess<T> access;
+    protected final ClassAccessProperty<T, Object>[] readers;
+    protected final ClassAccessProperty<T, Object>[] writers;
+    protected final String[] props;
+    protected final int capacity;
+
+    public InternalBeanMapper(Class<T> type) throws AppError {
+        if (type == null) throw AppError.error("无法创建转换器 缺少类型");
+        this.type = type;
+        this.access = AppClass.from(type).access();
+
+        List<ClassAccessProperty<T, Object>> rs = new ArrayList<>();
+        List<ClassAccessProperty<T, Object>> ws = new ArrayList<>();
+        for (ClassAccessProperty<T, ?> p : this.access.accessProperties().values()) {
+            if (p == null || PROP_CLASS.equals(p.name())) continue;
+            if (p.canRead()) rs.add(erase(p));
+            if (p.canWrite()) ws.add(erase(p));
+        }
+        this.readers = array(rs);
+        this.writers = array(ws);
+        this.props = new String[this.readers.length];
+        for (int i = 0; i < this.readers.length; i++) this.props[i] = this.readers[i].name();
+        this.capacity = (int) (this.readers.length / 0.75f) + 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ClassAccessProperty<T, Object> erase(ClassAccessProperty<T, ?> prop) {
+        return (ClassAccessProperty<T, Object>) prop;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ClassAccessProperty<T, Object>[] array(List<ClassAccessProperty<T, Object>> props) {
+        return props.toArray((ClassAccessProperty<T, Object>[]) new ClassAccessProperty<?, ?>[props.size()]);
+    }
+
+    @Override
+    public Class<T> type() {
+        return this.type;
+    }
+
+    @Override
+    public String[] props() {
+        return this.props.clone();
+    }
+
+    @Override
+    public Map<String, Object> toMap(T bean) throws AppError {
+        Map<String, Object> map = new LinkedHashMap<>(this.capacity);
+        if (bean == null) return map;
+        for (ClassAccessProperty<T, Object> p : this.readers) map.put(p.name(), p.get(bean));
+        return map;
+    }
+
+    @Override
+    public T fromMap(Map<String, ?> map) throws AppError {
+        return this.fromMap(map, this.access.instance());
+    }
+
+    @Override
+    public T fromMap(Map<String, ?> map, T bean) throws AppError {
+        if (map == null || map.isEmpty() || bean == null) return bean;
+        for (ClassAccessProperty<T, Object> p : this.writers) {
+            Object v = map.get(p.name());
+            if (v == null) {
+                if (!p.type().isPrimitive() && map.containsKey(p.name())) p.set(bean, null);
+                continue;
+            }
+
+            Class<?> pt = Primitives.wrap(p.type());
+            if (pt.isInstance(v)) p.set(bean, v);
+            else if (v instanceof Number && Primitives.isWrapperType(pt) && Number.class.isAssignableFrom(pt)) {
+                // 数值类型不一致时(如 JSON 解析得到的 Integer 对应 long 属性)按属性类型转换
+                if (pt == Double.class || pt == Float.class) p.setDouble(bean, ((Number) v).doubleValue());
+                else p.setLong(bean, ((Number) v).longValue());
+            } else p.set(bean, v);
+        }
+        return bean;
+    }
+}
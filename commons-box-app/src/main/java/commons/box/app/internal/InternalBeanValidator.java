@@ -0,0 +1,163 @@
+package commons.box.app.internal;
+
+import commons.box.app.AppClass;
+import commons.box.app.AppError;
+import commons.box.app.DataValidator;
+import commons.box.app.bean.BeanValidator;
+import commons.box.app.bean.ClassAccess;
+import commons.box.app.bean.ClassAccessProperty;
+import commons.box.util.Collects;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * 对象验证器实现 构造时将指定的验证规则按属性编译为验证步骤
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public class InternalBeanValidator<T> implements BeanValidator<T> {
+    protected final Class<T> type;
+    protected final Step[] steps;
+    protected final String[] props;
+
+    /**
+     * validators 以属性名为键 每个属性的规则按列表顺序执行
+     *
+     * @param type
+     * @param validators
+     * @throws AppError
+     */
+    public InternalBeanValidator(Class<T> type, Map<String, List<DataValidator<?>>> validators) throws AppError {
+        if (type == null) throw AppError.error("无法创建验证器 缺少类型");
+        this.type = type;
+        if (validators == null || validators.isEmpty()) throw AppError.error("无法创建验证器 类 " + type.getName() + " 缺少验证规则");
+
+        ClassAccess<T> access = AppClass.from(type).access();
+        for (String pn : validators.keySet()) {
+            ClassAccessProperty<T, ?> p = access.prop(pn);
+            if (p == null || !p.canRead()) throw AppError.error("类 " + type.getName() + " 属性 " + pn + " 不存在或不允许访问");
+        }
+
+        List<Step> ss = new ArrayList<>();
+        for (ClassAccessProperty<T, ?> p : access.accessProperties().values()) {
+            if (p == null || !p.canRead()) continue;
+            List<DataValidator<Object>> vs = new ArrayList<>();
+            List<DataValidator<?>> evs = validators.get(p.name());
+            if (evs != null) for (DataValidator<?> v : evs) if (v != null) vs.add(erase(v));
+            if (!vs.isEmpty()) ss.add(new Step(erase(p), array(vs)));
+        }
+
+        this.steps = ss.toArray(new Step[0]);
+        this.props = new String[this.steps.length];
+        for (int i = 0; i < this.steps.length; i++) this.props[i] = this.steps[i].prop.name();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ClassAccessProperty<Object, Object> erase(ClassAccessProperty<?, ?> prop) {
+        return (ClassAccessProperty<Object, Object>) prop;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DataValidator<Object> erase(DataValidator<?> validator) {
+        return (DataValidator<Object>) validator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DataValidator<Object>[] array(List<DataValidator<Object>> validators) {
+        return validators.toArray((DataValidator<Object>[]) new DataValidator<?>[validators.size()]);
+    }
+
+    @Override
+    public Class<T> type() {
+        return this.type;
+    }
+
+    @Override
+    public String[] props() {
+        return this.props.clone();
+    }
+
+    @Override
+    public void validate(T bean) throws AppError {
+        List<AppError> errors = this.check(bean, true);
+        if (!errors.isEmpty()) throw errors.get(0);
+    }
+
+    @Override
+    public List<AppError> check(T bean) {
+        return this.check(bean, false);
+    }
+
+    @Override
+    public List<AppError> check(T bean, boolean failFast) {
+        if (bean == null) return Collects.immlist(AppError.error("无法验证 类 " + this.type.getName() + " 的对象为空"));
+        List<AppError> errors = null;
+        for (Step s : this.steps) {
+            errors = s.run(bean, failFast, errors);
+            if (failFast && errors != null) break;
+        }
+        return (errors == null) ? Collects.immlist() : errors;
+    }
+
+    @Override
+    public Map<Integer, List<AppError>> checkAll(List<? extends T> beans, boolean failFast, boolean parallel) {
+        if (beans == null || beans.isEmpty() || this.steps.length < 1) return new TreeMap<>();
+
+        // 每个对象的结果写入独立位置 并行时无需同步
+        final List<? extends T> bs = (beans instanceof RandomAccess) ? beans : new ArrayList<>(beans);
+        final AtomicReferenceArray<List<AppError>> results = new AtomicReferenceArray<>(bs.size());
+        IntStream is = IntStream.range(0, bs.size());
+        if (parallel) is = is.parallel();
+        is.forEach(i -> {
+            List<AppError> es = this.check(bs.get(i), failFast);
+            if (!es.isEmpty()) results.set(i, es);
+        });
+
+        Map<Integer, List<AppError>> map = new TreeMap<>();
+        for (int i = 0; i < results.length(); i++) if (results.get(i) != null) map.put(i, results.get(i));
+        return map;
+    }
+
+    /**
+     * 单个属性的验证步骤
+     */
+    protected static final class Step {
+        private final ClassAccessProperty<Object, Object> prop;
+        private final DataValidator<Object>[] validators;
+
+        private Step(ClassAccessProperty<Object, Object> prop, DataValidator<Object>[] validators) {
+            this.prop = prop;
+            this.validators = validators;
+        }
+
+        /**
+         * 执行验证 错误加入 errors 并返回 errors 为空时按需创建
+         */
+        private List<AppError> run(Object bean, boolean failFast, List<AppError> errors) {
+            Object value;
+            try {
+                value = this.prop.get(bean);
+            } catch (Throwable e) {
+                return error(errors, AppError.error("属性 " + this.prop.name() + " 无法读取: " + e.getMessage(), e));
+            }
+
+            for (DataValidator<Object> v : this.validators) {
+                try {
+                    v.validate(value);
+                } catch (Throwable e) {
+                    errors = error(errors, AppError.error("属性 " + this.prop.name() + " 验证失败: " + e.getMessage(), e));
+                    if (failFast) break;
+                }
+            }
+            return errors;
+        }
+
+        private static List<AppError> error(List<AppError> errors, AppError error) {
+            if (errors == null) errors = new ArrayList<>();
+            errors.add(error);
+            return errors;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package commons.box.app.internal;
 
 
+import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheBuilder;
+import commons.box.app.AppClass;
 import commons.box.app.AppError;
 import commons.box.app.AppLog;
 import commons.box.app.bean.*;
@@ -9,11 +12,16 @@ import commons.box.util.*;
 import java.beans.BeanInfo;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * <p>创建作者：xingxiuyi </p>
@@ -22,40 +30,132 @@ import java.util.*;
 public class InternalClassAccess<T> implements ClassAccess<T> {
     protected static final AppLog LOG = Logs.get(ClassAccess.class);
     protected static final Class<?>[] EMPTY_CLASSES = new Class<?>[]{};
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType TYPE_CREATOR = MethodType.methodType(Object.class, Object[].class);
+    private static final int MAX_RESOLVED = 256;
 
     protected final String accname;
     protected final Class<T> type;
+    protected final AppClass.AccessStrategy strategy;
     protected final Constructor<T>[] constructors;
     protected final boolean readable;
-    protected final ClassAccessAnnotation accessAnnotation;
-    protected final Map<String, ClassAccessField<T, ?>> accessFields;
-    protected final Map<String, ClassAccessMethod<T, ?>[]> accessMethods;
-    protected final Map<String, ClassAccessProperty<T, ?>> accessProperties;
-    protected final Set<String> propertyNames;
+    // 类信息在首次使用时生成 非延迟模式下构造时即全部生成
+    protected final Supplier<ClassAccessAnnotation> accessAnnotation;
+    protected final Supplier<Map<String, ClassAccessField<T, ?>>> accessFields;
+    protected final Supplier<Map<String, ClassAccessMethod<T, ?>[]>> accessMethods;
+    protected final Supplier<Map<String, ClassAccessProperty<T, ?>>> accessProperties;
+    protected final Supplier<Set<String>> propertyNames;
+
+    // 基于索引的访问表 索引与对应map的遍历顺序一致
+    protected final Supplier<ClassAccessProperty<T, ?>[]> propertyArray;
+    protected final Supplier<ClassAccessField<T, ?>[]> fieldArray;
+    protected final Supplier<ClassAccessMethod<T, ?>[]> methodArray;
+    protected final Supplier<Map<String, Integer>> propertyIndexes;
+    protected final Supplier<Map<String, Integer>> fieldIndexes;
+
+    // 方法重载解析缓存 键与值均为 MethodKey 值中包含解析结果 未找到时结果为空 同样缓存
+    // 缓存有容量上限 参数类型不能由本类的类加载器访问时不缓存 避免共享类的缓存持有插件类使其无法卸载
+    protected final Map<MethodKey, MethodKey> resolvedMethods = newResolved();
+    private volatile MethodKey lastMethod;
+
+    // 构造方法解析缓存 与方法相同 结果为对应的 Creator
+    protected final Map<MethodKey, MethodKey> resolvedCreators = newResolved();
+    private volatile MethodKey lastCreator;
 
     // 其余所用变量
     private final Constructor<T> _constructorDefault;
+    private final Creator _creatorDefault;
 
+    public InternalClassAccess(String name, Class<T> type, AppClass.AccessStrategy strategy) throws AppError {
+        this(name, type, strategy, AppClass.lazy());
+    }
+
+    /**
+     * @param name
+     * @param type
+     * @param strategy
+     * @param lazy     为true时类信息在首次使用时才生成 默认取 AppClass.lazy()
+     * @throws AppError
+     */
     @SuppressWarnings("unchecked")
-    public InternalClassAccess(String name, Class<T> type) throws AppError {
+    public InternalClassAccess(String name, Class<T> type, AppClass.AccessStrategy strategy, boolean lazy) throws AppError {
         if (type == null) throw AppError.error("ClassInfo构造发现空值[type], 必须定义type");
         this.accname = (Strs.isBlank(name)) ? type.getName() : name;
         this.type = type;
+        this.strategy = (strategy != null) ? strategy : AppClass.AccessStrategy.REFLECT;
         this.constructors = (Constructor<T>[]) this.type.getConstructors();
         this.readable = this.detectAccessClassPublic();
-        this.accessAnnotation = this.createAccessAnnotation();
-        this.accessFields = Maps.immmap(this.searchAccessFields());
-        this.accessMethods = Maps.immmap(this.searchAccessMethods());
-        this.accessProperties = Maps.immmap(this.searchAccessProperties());
-        this.propertyNames = Collects.immset(this.accessProperties.keySet());
+        this.accessAnnotation = Suppliers.memoize(this::createAccessAnnotation);
+        this.accessFields = Suppliers.memoize(() -> Maps.immmap(this.searchAccessFields()));
+        this.accessMethods = Suppliers.memoize(() -> Maps.immmap(this.searchAccessMethods()));
+        this.accessProperties = Suppliers.memoize(() -> Maps.immmap(this.searchAccessProperties()));
+        this.propertyNames = Suppliers.memoize(() -> Collects.immset(this.accessProperties.get().keySet()));
+
+        this.propertyArray = Suppliers.memoize(() -> properties(this.accessProperties.get().values()));
+        this.fieldArray = Suppliers.memoize(() -> fields(this.accessFields.get().values()));
+        this.methodArray = Suppliers.memoize(() -> flatMethods(this.accessMethods.get()));
+        this.propertyIndexes = Suppliers.memoize(() -> Maps.immmap(indexes(this.accessProperties.get().keySet())));
+        this.fieldIndexes = Suppliers.memoize(() -> Maps.immmap(indexes(this.accessFields.get().keySet())));
+
+        if (!lazy) this.prepare();
 
         this._constructorDefault = this.detectAccessConstructDefault();
+        this._creatorDefault = (this._constructorDefault != null) ? this.newCreator(this._constructorDefault) : null;
+    }
+
+    public InternalClassAccess(String name, Class<T> type) throws AppError {
+        this(name, type, AppClass.AccessStrategy.REFLECT);
     }
 
     public InternalClassAccess(Class<T> type) throws AppError {
         this((type != null) ? type.getName() : null, type);
     }
 
+    /**
+     * 生成全部类信息 非延迟模式下由构造方法调用
+     */
+    protected void prepare() {
+        this.accessAnnotation.get();
+        this.propertyNames.get();
+        this.propertyArray.get();
+        this.fieldArray.get();
+        this.methodArray.get();
+        this.propertyIndexes.get();
+        this.fieldIndexes.get();
+    }
+
+    private static Map<MethodKey, MethodKey> newResolved() {
+        return CacheBuilder.newBuilder().concurrencyLevel(1).maximumSize(MAX_RESOLVED).<MethodKey, MethodKey>build().asMap();
+    }
+
+    protected static Map<String, Integer> indexes(Collection<String> names) {
+        Map<String, Integer> map = new HashMap<>();
+        int i = 0;
+        for (String n : names) map.put(n, i++);
+        return map;
+    }
+
+    protected static <T> ClassAccessMethod<T, ?>[] flatMethods(Map<String, ClassAccessMethod<T, ?>[]> methods) {
+        List<ClassAccessMethod<T, ?>> list = new ArrayList<>();
+        for (ClassAccessMethod<T, ?>[] ms : methods.values()) if (ms != null) Collections.addAll(list, ms);
+        return methods(list);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static <T> ClassAccessProperty<T, ?>[] properties(Collection<ClassAccessProperty<T, ?>> values) {
+        return values.toArray((ClassAccessProperty<T, ?>[]) new ClassAccessProperty<?, ?>[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static <T> ClassAccessField<T, ?>[] fields(Collection<ClassAccessField<T, ?>> values) {
+        return values.toArray((ClassAccessField<T, ?>[]) new ClassAccessField<?, ?>[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static <T> ClassAccessMethod<T, ?>[] methods(Collection<ClassAccessMethod<T, ?>> values) {
+        return values.toArray((ClassAccessMethod<T, ?>[]) new ClassAccessMethod<?, ?>[0]);
+    }
+
     protected boolean detectAccessClassPublic() {
         if (!Modifier.isPublic(this.type.getModifiers())) return false;
         if (this.constructors == null || this.constructors.length < 1) return false;
@@ -81,7 +181,12 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
 
         Map<String, ClassAccessField<T, ?>> fieldMap = new LinkedHashMap<>();
         try {
-            Field[] fields = Types.findFields(this.type);
+            InternalClassAccessIndex index = InternalClassAccessIndex.get();
+            Field[] fields = (index != null) ? index.fields(this.type) : null;
+            if (fields == null) {
+                fields = Types.findFields(this.type);
+                if (index != null) index.fields(this.type, fields);
+            }
             if (fields != null) for (Field f : fields) {
                 if (f == null || !Modifier.isPublic(f.getModifiers())) continue;
                 ClassAccessField<T, ?> af = this.newAccessField(f);
@@ -101,7 +206,12 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
         Map<String, Set<ClassAccessMethod<T, ?>>> mmap = new LinkedHashMap<>();
 
         try {
-            Method[] ms = Types.findMethods(this.type, true, true);
+            InternalClassAccessIndex index = InternalClassAccessIndex.get();
+            Method[] ms = (index != null) ? index.methods(this.type) : null;
+            if (ms == null) {
+                ms = Types.findMethods(this.type, true, true);
+                if (index != null) index.methods(this.type, ms);
+            }
             if (ms != null) for (Method m : ms) {
                 if (m == null || !Modifier.isPublic(m.getModifiers())) continue;
                 String mn = m.getName();
@@ -118,7 +228,7 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
                 Set<ClassAccessMethod<T, ?>> mas = me.getValue();
 
                 if (mn != null && mas != null) {
-                    ClassAccessMethod<T, ?>[] mmv = mas.toArray(new ClassAccessMethod[]{});
+                    ClassAccessMethod<T, ?>[] mmv = methods(mas);
                     mvs.put(mn, mmv);
                 }
             }
@@ -136,6 +246,14 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
         Map<String, ClassAccessProperty<T, ?>> aps = new LinkedHashMap<>();
 
         try {
+            InternalClassAccessIndex index = InternalClassAccessIndex.get();
+            List<InternalClassAccessIndex.Property> ips = (index != null) ? index.properties(this.type) : null;
+            if (ips != null) {
+                for (InternalClassAccessIndex.Property ip : ips) this.putAccessProperty(aps, ip.name(), ip.type(), ip.descriptor(), ip.field(), ip.getter(), ip.setter());
+                return aps;
+            }
+
+            List<InternalClassAccessIndex.Property> found = (index != null) ? new ArrayList<>() : null;
             BeanInfo bi = Introspector.getBeanInfo(this.type);
             if (bi == null) return aps;
             PropertyDescriptor[] pds = bi.getPropertyDescriptors(); // 此处使用spring的beanutils以兼容spring bean的特殊机制
@@ -148,20 +266,30 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
                 Field field = Types.findField(this.type, pn);
                 if (field == null || !Types.isType(pt, field.getType())) field = null;
 
-                Types.makeAccessible(getter);
-                Types.makeAccessible(setter);
-                Types.makeAccessible(field);
-
-                ClassAccessProperty<T, ?> ap = this.newAccessProperty(pn, pt, pd, field, getter, setter);
-                if (ap != null) aps.put(pn, ap);
+                ClassAccessProperty<T, ?> ap = this.putAccessProperty(aps, pn, pt, pd, field, getter, setter);
+                if (ap != null && found != null) found.add(new InternalClassAccessIndex.Property(pn, pt, getter, setter, field));
             }
+            if (index != null) index.properties(this.type, found);
         } catch (Throwable e) {
             LOG.warn("类型 " + this.type.getName() + " 无法列出属性", e);
+        } finally {
+            // 结果已由 AppClass 缓存 Introspector 的缓存强引用类型 会阻止其类加载器被回收
+            for (Class<?> c = this.type; c != null && c != Object.class; c = c.getSuperclass()) Introspector.flushFromCaches(c);
         }
 
         return aps;
     }
 
+    private ClassAccessProperty<T, ?> putAccessProperty(Map<String, ClassAccessProperty<T, ?>> aps, String pn, Class<?> pt, PropertyDescriptor pd, Field field, Method getter, Method setter) {
+        Types.makeAccessible(getter);
+        Types.makeAccessible(setter);
+        Types.makeAccessible(field);
+
+        ClassAccessProperty<T, ?> ap = this.newAccessProperty(pn, pt, pd, field, getter, setter);
+        if (ap != null) aps.put(pn, ap);
+        return ap;
+    }
+
     protected <F> InternalClassAccessField<T, F> newAccessField(Field field) {
         if (field == null) return null;
         return new InternalClassAccessField<>(this, field);
@@ -188,24 +316,33 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
         return this.accname;
     }
 
+    /**
+     * 访问策略
+     *
+     * @return
+     */
+    public final AppClass.AccessStrategy strategy() {
+        return this.strategy;
+    }
+
     @Override
     public final ClassAccessAnnotation accessAnnotation() {
-        return this.accessAnnotation;
+        return this.accessAnnotation.get();
     }
 
     @Override
     public final Map<String, ClassAccessField<T, ?>> accessFields() {
-        return this.accessFields;
+        return this.accessFields.get();
     }
 
     @Override
     public final Map<String, ClassAccessMethod<T, ?>[]> accessMethods() {
-        return this.accessMethods;
+        return this.accessMethods.get();
     }
 
     @Override
     public Map<String, ClassAccessProperty<T, ?>> accessProperties() {
-        return this.accessProperties;
+        return this.accessProperties.get();
     }
 
     @Override
@@ -218,36 +355,124 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
         return this.type;
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public T instance(Object... parameters) throws AppError {
         if (!this.readable) throw AppError.error("类无法生成实例 " + this.name() + " 没有找到对应构造方法适配参数:" + Strs.toString(parameters));
+        if (parameters == null) parameters = Types.EMPTY_OBJS;
+
+        Creator creator = (parameters.length < 1 && this._creatorDefault != null) ? this._creatorDefault : this.searchCreator(parameters);
+        if (creator == null) throw AppError.error("类无法生成实例 " + this.name() + " 没有找到对应构造方法适配参数:" + Strs.toString(parameters));
+
         try {
-            if ((parameters == null || parameters.length < 1) && this._constructorDefault != null) return this._constructorDefault.newInstance();
-            if (this.constructors != null) for (Constructor<T> con : this.constructors) {
-                if (con == null) continue;
-                Class<?>[] parameterTypes = con.getParameterTypes();
-                if (Types.isTypesMatch(parameterTypes, parameters)) return con.newInstance(parameters);
-            }
+            return (T) creator.create(parameters);
         } catch (Throwable e) {
             throw AppError.error("类创建实例发生错误 " + this.name() + " 参数:" + Strs.toString(parameters), e);
         }
+    }
 
-        throw AppError.error("类无法生成实例 " + this.name() + " 没有找到对应构造方法适配参数:" + Strs.toString(parameters));
+    /**
+     * 按参数类型查找构造方法 结果按参数类型缓存 最近一次结果作为快速路径 多个构造方法匹配时选择参数类型最具体的
+     *
+     * @param parameters
+     * @return
+     */
+    protected final Creator searchCreator(Object[] parameters) {
+        MethodKey last = this.lastCreator;
+        if (last != null && last.matchParameters(MethodKey.CONSTRUCTOR, parameters)) return (Creator) last.target;
+
+        MethodKey resolved = this.resolve(this.resolvedCreators, new MethodKey(MethodKey.CONSTRUCTOR, types(parameters), null), key -> {
+            Constructor<T> found = this.findConstructor(key.types);
+            return (found != null) ? this.newCreator(found) : null;
+        });
+        if (last != resolved && resolved.cached) this.lastCreator = resolved;
+        return (Creator) resolved.target;
+    }
+
+    private Constructor<T> findConstructor(Class<?>[] types) {
+        Constructor<T> found = null;
+        if (this.constructors != null) for (Constructor<T> con : this.constructors) {
+            if (con == null || !Modifier.isPublic(con.getModifiers())) continue;
+            Class<?>[] pts = con.getParameterTypes();
+            if (!Types.isTypesMatch(pts, types) || !nullable(pts, types)) continue;
+            if (found == null || Types.isTypesMatch(found.getParameterTypes(), pts)) found = con;
+        }
+        return found;
+    }
+
+    private static Class<?>[] types(Object[] parameters) {
+        Class<?>[] types = new Class<?>[parameters.length];
+        for (int i = 0; i < types.length; i++) types[i] = (parameters[i] != null) ? parameters[i].getClass() : null;
+        return types;
+    }
+
+    /**
+     * 从解析缓存中获取结果 未缓存时解析并缓存 解析结果为空时同样缓存 避免重复查找 参数类型不能由本类的类加载器访问时只解析不缓存
+     *
+     * @param cache
+     * @param key
+     * @param finder
+     * @return
+     */
+    private MethodKey resolve(Map<MethodKey, MethodKey> cache, MethodKey key, Function<MethodKey, Object> finder) {
+        MethodKey resolved = cache.get(key);
+        if (resolved == null) {
+            boolean visible = this.visible(key.types);
+            resolved = new MethodKey(key.name, key.types, finder.apply(key), visible);
+            if (visible) {
+                MethodKey prev = cache.putIfAbsent(resolved, resolved);
+                if (prev != null) resolved = prev;
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * 类型是否都能由本类的类加载器(或其上级)访问 这些类型不会早于本类卸载
+     */
+    private boolean visible(Class<?>[] types) {
+        ClassLoader loader = this.type.getClassLoader();
+        for (Class<?> t : types) {
+            ClassLoader tl = (t != null) ? t.getClassLoader() : null;
+            if (tl == null || tl == loader) continue;
+            ClassLoader cl = loader;
+            while (cl != null && cl != tl) cl = cl.getParent();
+            if (cl == null) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 生成构造方法对应的创建方式 访问策略不为 REFLECT 时使用 MethodHandle
+     *
+     * @param constructor
+     * @return
+     */
+    protected Creator newCreator(Constructor<T> constructor) {
+        if (this.strategy != AppClass.AccessStrategy.REFLECT) try {
+            MethodHandle mh = LOOKUP.unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, constructor.getParameterCount())
+                    .asType(TYPE_CREATOR);
+            return parameters -> (Object) mh.invokeExact(parameters);
+        } catch (Throwable e) {
+            LOG.debug("无法绑定构造方法 " + constructor + " 使用反射机制", e);
+        }
+        return constructor::newInstance;
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public final <F> ClassAccessField<T, F> field(String name) {
-        if (name == null || this.accessFields == null) return null;
-        return (ClassAccessField<T, F>) this.accessFields.get(name);
+        if (name == null || this.accessFields() == null) return null;
+        return (ClassAccessField<T, F>) this.accessFields().get(name);
     }
 
 
     @SuppressWarnings("unchecked")
     @Override
     public final <P> ClassAccessProperty<T, P> prop(String name) {
-        if (name == null || this.accessProperties == null) return null;
-        return (ClassAccessProperty<T, P>) this.accessProperties.get(name);
+        if (name == null || this.accessProperties() == null) return null;
+        return (ClassAccessProperty<T, P>) this.accessProperties().get(name);
     }
 
     @SuppressWarnings("unchecked")
@@ -258,37 +483,73 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
 
     @SuppressWarnings("unchecked")
     protected final <M> ClassAccessMethod<T, M> searchMethodByTypes(String name, Class<?>... parameterTypes) {
-        if (name == null || this.accessMethods == null) return null;
-        ClassAccessMethod<T, ?>[] methods = this.accessMethods.get(name);
-        if (methods == null) return null;
-
+        if (name == null) return null;
         if (parameterTypes == null) parameterTypes = Types.EMPTY_CLASSES;
-        for (ClassAccessMethod<T, ?> method : methods) {
-            if (method == null) continue;
-            if (Types.isTypesMatch(method.parameterTypes(), parameterTypes)) return (ClassAccessMethod<T, M>) method;
-        }
 
-        return null;
+        MethodKey last = this.lastMethod;
+        if (last != null && last.matchTypes(name, parameterTypes)) return (ClassAccessMethod<T, M>) last.target;
+
+        MethodKey key = new MethodKey(name, parameterTypes.clone(), null);
+        return (ClassAccessMethod<T, M>) this.resolveMethod(last, key);
     }
 
     @SuppressWarnings("unchecked")
     protected final <M> ClassAccessMethod<T, M> searchMethodByParameters(String name, Object... parameters) {
-        if (name == null || this.accessMethods == null) return null;
-        ClassAccessMethod<T, ?>[] methods = this.accessMethods.get(name);
+        if (name == null) return null;
+        if (parameters == null) parameters = Types.EMPTY_OBJS;
+
+        MethodKey last = this.lastMethod;
+        if (last != null && last.matchParameters(name, parameters)) return (ClassAccessMethod<T, M>) last.target;
+
+        return (ClassAccessMethod<T, M>) this.resolveMethod(last, new MethodKey(name, types(parameters), null));
+    }
+
+    /**
+     * 按方法名及参数类型解析重载方法 结果按 (方法名, 参数类型) 缓存 最近一次解析结果作为单态调用的快速路径
+     * <p>
+     * 参数类型为空(对应参数值为null)时匹配任意非基本类型 多个重载都匹配时选择参数类型最具体的方法
+     *
+     * @param last
+     * @param key
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private ClassAccessMethod<T, ?> resolveMethod(MethodKey last, MethodKey key) {
+        MethodKey resolved = this.resolve(this.resolvedMethods, key, k -> this.findMethod(k.name, k.types));
+        // 结果不变时不写入 避免多态调用时反复写同一缓存行 未缓存的结果同样不作为快速路径
+        if (last != resolved && resolved.cached) this.lastMethod = resolved;
+        return (ClassAccessMethod<T, ?>) resolved.target;
+    }
+
+    private ClassAccessMethod<T, ?> findMethod(String name, Class<?>[] types) {
+        Map<String, ClassAccessMethod<T, ?>[]> ams = this.accessMethods();
+        ClassAccessMethod<T, ?>[] methods = (ams != null) ? ams.get(name) : null;
         if (methods == null) return null;
 
+        ClassAccessMethod<T, ?> found = null;
         for (ClassAccessMethod<T, ?> method : methods) {
             if (method == null) continue;
-            if (Types.isTypesMatch(method.parameterTypes(), parameters)) return (ClassAccessMethod<T, M>) method;
+            Class<?>[] pts = method.parameterTypes();
+            if (!Types.isTypesMatch(pts, types) || !nullable(pts, types)) continue;
+            if (found == null || Types.isTypesMatch(found.parameterTypes(), pts)) found = method;
         }
 
-        return null;
+        return found;
+    }
+
+    /**
+     * 基本类型参数不接受null值
+     */
+    private static boolean nullable(Class<?>[] pts, Class<?>[] types) {
+        if (pts == null) return true;
+        for (int i = 0; i < pts.length; i++) if (types[i] == null && pts[i] != null && pts[i].isPrimitive()) return false;
+        return true;
     }
 
     @Override
     public final boolean hasField(String name) {
-        if (name == null || this.accessFields == null) return false;
-        return this.accessFields.containsKey(name);
+        if (name == null || this.accessFields() == null) return false;
+        return this.accessFields().containsKey(name);
     }
 
     @Override
@@ -298,13 +559,13 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
 
     @Override
     public final boolean has(String name) {
-        if (name == null || this.accessProperties == null) return false;
-        return this.accessProperties.containsKey(name);
+        if (name == null || this.accessProperties() == null) return false;
+        return this.accessProperties().containsKey(name);
     }
 
     @Override
     public final <F> F field(T object, String name) throws AppError {
-        if (object == null || name == null || this.accessFields == null) return null;
+        if (object == null || name == null || this.accessFields() == null) return null;
         ClassAccessField<T, F> field = this.field(name);
 
         if (field != null && field.canRead()) return field.get(object);
@@ -315,7 +576,7 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
 
     @Override
     public final <F> void field(T object, String name, F value) throws AppError {
-        if (object == null || name == null || this.accessFields == null) return;
+        if (object == null || name == null || this.accessFields() == null) return;
         ClassAccessField<T, F> field = this.field(name);
 
         if (field != null && field.canWrite()) field.set(object, value);
@@ -329,22 +590,109 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
 
     @Override
     public final <M> M invokeByTypes(T object, String name, Class<?>[] parameterTypes, Object... parameters) throws Throwable {
-        if (object == null || name == null || this.accessMethods == null) return null;
+        if (object == null || name == null) return null;
 
         ClassAccessMethod<T, M> method = (parameterTypes == null) ? this.searchMethodByParameters(name, parameters) : this.searchMethodByTypes(name, parameterTypes);
 
-        if (method != null && method.canInvoke()) return method.invoke(parameters);
+        if (method != null && method.canInvoke()) return method.invoke(object, parameters);
         else throw AppError.error("类 " + this.name() + " 方法名 " + name + " 参数 " + Strs.toString(parameterTypes) + " 未找到匹配的方法");
     }
 
     @Override
     public final Set<String> propNames() {
-        return this.propertyNames;
+        return this.propertyNames.get();
+    }
+
+    @Override
+    public final int propIndex(String name) {
+        if (name == null) return -1;
+        Integer idx = this.propertyIndexes.get().get(name);
+        return (idx != null) ? idx : -1;
+    }
+
+    @Override
+    public final int fieldIndex(String name) {
+        if (name == null) return -1;
+        Integer idx = this.fieldIndexes.get().get(name);
+        return (idx != null) ? idx : -1;
+    }
+
+    @Override
+    public final int methodIndex(String name, Class<?>... parameterTypes) {
+        ClassAccessMethod<T, ?> method = this.searchMethodByTypes(name, parameterTypes);
+        if (method == null) return -1;
+        ClassAccessMethod<T, ?>[] methods = this.methodArray.get();
+        for (int i = 0; i < methods.length; i++) if (methods[i] == method) return i;
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final <P> P get(T object, int index) throws AppError {
+        if (object == null) return null;
+        ClassAccessProperty<T, ?>[] properties = this.propertyArray.get();
+        if (index < 0 || index >= properties.length) throw AppError.error("类 " + this.name() + " 属性索引 " + index + " 越界");
+        ClassAccessProperty<T, P> property = (ClassAccessProperty<T, P>) properties[index];
+
+        if (property.canRead()) return property.get(object);
+
+        LOG.debug("类 " + this.name() + " 属性 " + property.name() + " 不允许访问");
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final <P> void set(T object, int index, P value) throws AppError {
+        if (object == null) return;
+        ClassAccessProperty<T, ?>[] properties = this.propertyArray.get();
+        if (index < 0 || index >= properties.length) throw AppError.error("类 " + this.name() + " 属性索引 " + index + " 越界");
+        ClassAccessProperty<T, P> property = (ClassAccessProperty<T, P>) properties[index];
+
+        if (property.canWrite()) property.set(object, value);
+        else LOG.debug("类 " + this.name() + " 属性 " + property.name() + " 不允许访问");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final <F> F field(T object, int index) throws AppError {
+        if (object == null) return null;
+        ClassAccessField<T, ?>[] fields = this.fieldArray.get();
+        if (index < 0 || index >= fields.length) throw AppError.error("类 " + this.name() + " 字段索引 " + index + " 越界");
+        ClassAccessField<T, F> field = (ClassAccessField<T, F>) fields[index];
+
+        if (field.canRead()) return field.get(object);
+
+        LOG.debug("类 " + this.name() + " 字段 " + field.name() + " 不允许访问");
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final <F> void field(T object, int index, F value) throws AppError {
+        if (object == null) return;
+        ClassAccessField<T, ?>[] fields = this.fieldArray.get();
+        if (index < 0 || index >= fields.length) throw AppError.error("类 " + this.name() + " 字段索引 " + index + " 越界");
+        ClassAccessField<T, F> field = (ClassAccessField<T, F>) fields[index];
+
+        if (field.canWrite()) field.set(object, value);
+        else LOG.debug("类 " + this.name() + " 字段 " + field.name() + " 不允许访问");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final <M> M invoke(T object, int index, Object... parameters) throws Throwable {
+        if (object == null) return null;
+        ClassAccessMethod<T, ?>[] methods = this.methodArray.get();
+        if (index < 0 || index >= methods.length) throw AppError.error("类 " + this.name() + " 方法索引 " + index + " 越界");
+        ClassAccessMethod<T, M> method = (ClassAccessMethod<T, M>) methods[index];
+
+        if (method.canInvoke()) return method.invoke(object, parameters);
+        else throw AppError.error("类 " + this.name() + " 方法 " + method.name() + " 不允许访问");
     }
 
     @Override
     public final <P> P get(T object, String name) throws AppError {
-        if (object == null || name == null || this.accessProperties == null) return null;
+        if (object == null || name == null || this.accessProperties() == null) return null;
         ClassAccessProperty<T, P> property = this.prop(name);
 
         if (property != null && property.canRead()) return property.get(object);
@@ -355,13 +703,18 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
 
     @Override
     public final <P> void set(T object, String name, P value) throws AppError {
-        if (object == null || name == null || this.accessProperties == null) return;
+        if (object == null || name == null || this.accessProperties() == null) return;
         ClassAccessProperty<T, P> property = this.prop(name);
 
         if (property != null && property.canWrite()) property.set(object, value);
         else LOG.debug("类 " + this.name() + " 属性 " + name + " 未找到或不允许访问");
     }
 
+    @Override
+    public final ClassAccessProjection<T> project(List<? extends T> beans, String... props) throws AppError {
+        return new InternalClassAccessProjection<>(this, beans, props);
+    }
+
 
     public static List<Method> findMethods(final Class<?> cls) {
         final List<Method> allMethods = new ArrayList<>();
@@ -378,4 +731,65 @@ public class InternalClassAccess<T> implements ClassAccess<T> {
         }
         return allMethods;
     }
+
+    /**
+     * 方法及构造方法的解析键 方法名及参数类型 null 表示参数值为空 作为缓存值时包含解析结果(方法或 Creator)
+     */
+    protected static final class MethodKey {
+        private static final String CONSTRUCTOR = "<init>";
+
+        private final String name;
+        private final Class<?>[] types;
+        private final int hash;
+        private final Object target;
+        private final boolean cached;
+
+        private MethodKey(String name, Class<?>[] types, Object target) {
+            this(name, types, target, false);
+        }
+
+        private MethodKey(String name, Class<?>[] types, Object target, boolean cached) {
+            this.name = name;
+            this.types = types;
+            this.hash = 31 * name.hashCode() + Arrays.hashCode(types);
+            this.target = target;
+            this.cached = cached;
+        }
+
+        private boolean matchTypes(String name, Class<?>[] types) {
+            if (!this.name.equals(name) || this.types.length != types.length) return false;
+            for (int i = 0; i < types.length; i++) if (this.types[i] != types[i]) return false;
+            return true;
+        }
+
+        private boolean matchParameters(String name, Object[] parameters) {
+            if (!this.name.equals(name) || this.types.length != parameters.length) return false;
+            for (int i = 0; i < parameters.length; i++) {
+                Object p = parameters[i];
+                if (this.types[i] != ((p != null) ? p.getClass() : null)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MethodKey)) return false;
+            MethodKey k = (MethodKey) o;
+            return this.hash == k.hash && this.matchTypes(k.name, k.types);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /**
+     * 实例的创建方式
+     */
+    @FunctionalInterface
+    protected interface Creator {
+        Object create(Object[] parameters) throws Throwable;
+    }
 }
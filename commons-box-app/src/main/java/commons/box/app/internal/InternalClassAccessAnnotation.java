@@ -3,28 +3,46 @@ package commons.box.app.internal;
 import commons.box.app.bean.ClassAccessAnnotation;
 import commons.box.util.Collects;
 import commons.box.util.Maps;
+import commons.box.util.Types;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AccessibleObject;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.*;
 
 /**
+ * 注解索引 构造时按注解类型建立 类型→实例 的映射 并区分直接声明与全部注解 按类型查找时无需遍历
+ * <p>
+ * 容器注解(如 @Labels 只有返回注解数组的 value 及带默认值的其他成员)会同时按其包含的注解类型建立索引 包含的注解类型无需声明 @Repeatable
+ * <p>
+ * 字段与方法在上级类中的同名成员通过按类缓存的成员索引查找 避免逐级调用 getMethod/getField
  * <p>创建作者：xingxiuyi </p>
  * <p>版权所属：xingxiuyi </p>
  */
 public class InternalClassAccessAnnotation implements ClassAccessAnnotation {
     private static final Annotation[] EMPTY_ANNO = new Annotation[]{};
     private static final InternalClassAccessAnnotation EMPTY = new InternalClassAccessAnnotation(EMPTY_ANNO, EMPTY_ANNO);
+    private static final ClassValue<Members> MEMBERS = new ClassValue<Members>() {
+        @Override
+        protected Members computeValue(Class<?> type) {
+            return new Members(type);
+        }
+    };
+    private static final ClassValue<Method> CONTAINERS = new ClassValue<Method>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            return detectContainer(type);
+        }
+    };
+
     private final List<Class<?>> annotationTypes;
     private final List<Annotation> annotations;
     private final List<Class<?>> declaredAnnotationTypes;
     private final List<Annotation> declaredAnnotations;
 
-    private final Map<String, List<Annotation>> annotationMap;
-    private final Map<String, List<Annotation>> declaredAnnotationMap;
+    private final Map<Class<?>, List<Annotation>> annotationMap;
+    private final Map<Class<?>, List<Annotation>> declaredAnnotationMap;
 
     public static InternalClassAccessAnnotation create(Class<?> type) {
         if (type == null) return EMPTY;
@@ -42,6 +60,72 @@ public class InternalClassAccessAnnotation implements ClassAccessAnnotation {
         return new InternalClassAccessAnnotation((annoDeclareds == null) ? EMPTY_ANNO : annoDeclareds, (annoAll == null) ? EMPTY_ANNO : annoAll);
     }
 
+    /**
+     * 方法注解 全部注解中包含上级类中同名同参数且返回类型匹配的公共方法上声明的注解
+     *
+     * @param targetType
+     * @param targetMethod
+     * @return
+     */
+    public static InternalClassAccessAnnotation create(Class<?> targetType, Method targetMethod) {
+        if (targetType == null || targetMethod == null) return EMPTY;
+        final Annotation[] annoDeclareds = targetMethod.getDeclaredAnnotations();
+        final Set<Annotation> annoAll = new LinkedHashSet<>();
+        if (annoDeclareds != null) Collections.addAll(annoAll, annoDeclareds);
+
+        final MemberKey key = new MemberKey(targetMethod.getName(), targetMethod.getParameterTypes());
+        final Class<?> mt = targetMethod.getReturnType();
+        for (Class<?> cls = targetType.getSuperclass(); cls != null && !Object.class.equals(cls); cls = cls.getSuperclass()) {
+            Method m = MEMBERS.get(cls).methods.get(key);
+            if (m != null && Types.isType(m.getReturnType(), mt)) Collections.addAll(annoAll, m.getDeclaredAnnotations());
+        }
+
+        return new InternalClassAccessAnnotation((annoDeclareds == null) ? EMPTY_ANNO : annoDeclareds, annoAll.toArray(EMPTY_ANNO));
+    }
+
+    /**
+     * 字段注解 全部注解中包含上级类中同名且类型匹配的公共字段上声明的注解
+     *
+     * @param targetType
+     * @param targetField
+     * @return
+     */
+    public static InternalClassAccessAnnotation create(Class<?> targetType, Field targetField) {
+        if (targetType == null || targetField == null) return EMPTY;
+        final Annotation[] annoDeclareds = targetField.getDeclaredAnnotations();
+        final Set<Annotation> annoAll = new LinkedHashSet<>();
+        if (annoDeclareds != null) Collections.addAll(annoAll, annoDeclareds);
+
+        final String fn = targetField.getName();
+        final Class<?> ft = targetField.getType();
+        for (Class<?> cls = targetType.getSuperclass(); cls != null && !Object.class.equals(cls); cls = cls.getSuperclass()) {
+            Field f = MEMBERS.get(cls).fields.get(fn);
+            if (f != null && Types.isType(f.getType(), ft)) Collections.addAll(annoAll, f.getDeclaredAnnotations());
+        }
+
+        return new InternalClassAccessAnnotation((annoDeclareds == null) ? EMPTY_ANNO : annoDeclareds, annoAll.toArray(EMPTY_ANNO));
+    }
+
+    /**
+     * 合并多个注解 按顺序去除重复项
+     *
+     * @param aas
+     * @return
+     */
+    public static InternalClassAccessAnnotation merge(List<ClassAccessAnnotation> aas) {
+        if (aas == null || aas.isEmpty()) return EMPTY;
+        final Set<Annotation> annoDeclareds = new LinkedHashSet<>();
+        final Set<Annotation> annoAll = new LinkedHashSet<>();
+
+        for (ClassAccessAnnotation aa : aas) if (aa != null) annoDeclareds.addAll(aa.declaredAnnotations());
+        annoAll.addAll(annoDeclareds);
+        for (ClassAccessAnnotation aa : aas) if (aa != null) annoAll.addAll(aa.annotations());
+        annoDeclareds.remove(null);
+        annoAll.remove(null);
+
+        return new InternalClassAccessAnnotation(annoDeclareds.toArray(EMPTY_ANNO), annoAll.toArray(EMPTY_ANNO));
+    }
+
     public static InternalClassAccessAnnotation create(final List<Annotation> annoDeclareds, final List<Annotation> annoAll) {
         return new InternalClassAccessAnnotation((
                 annoDeclareds == null) ? EMPTY_ANNO : annoDeclareds.toArray(new Annotation[annoDeclareds.size()]),
@@ -59,59 +143,22 @@ public class InternalClassAccessAnnotation implements ClassAccessAnnotation {
         final List<Class<?>> tmpDeclaredAnnotationTypes = new ArrayList<>();
         final List<Annotation> tmpDeclaredAnnotations = new ArrayList<>();
 
-        final Map<String, List<Annotation>> tmpAnnotationMap = new HashMap<>();
-        final Map<String, List<Annotation>> tmpDeclaredAnnotationMap = new HashMap<>();
-
-        final Map<String, List<Annotation>> immAnnotationMap = new HashMap<>();
-        final Map<String, List<Annotation>> immDeclaredAnnotationMap = new HashMap<>();
+        final Map<Class<?>, List<Annotation>> tmpAnnotationMap = new HashMap<>();
+        final Map<Class<?>, List<Annotation>> tmpDeclaredAnnotationMap = new HashMap<>();
 
         // 初始化变量
         if (annoAll != null) for (Annotation a : annoAll) {
-            if (a == null) continue;
-
-            Class<?> cls = a.annotationType();
-            if (cls == null) continue;
-
-            String cname = cls.getName();
-            if (cname == null) continue;
-
-            tmpAnnotationTypes.add(cls);
+            if (a == null || a.annotationType() == null) continue;
+            tmpAnnotationTypes.add(a.annotationType());
             tmpAnnotations.add(a);
-            List<Annotation> las = tmpAnnotationMap.get(cname);
-            if (las == null) {
-                las = new ArrayList<>();
-                tmpAnnotationMap.put(cname, las);
-            }
-            las.add(a);
-
+            index(tmpAnnotationMap, a);
         }
 
         if (annoDeclareds != null) for (Annotation a : annoDeclareds) {
-            if (a == null) continue;
-            Class<?> cls = a.annotationType();
-            if (cls == null) continue;
-
-            String cname = cls.getName();
-            if (cname == null) continue;
-
-            tmpDeclaredAnnotationTypes.add(cls);
+            if (a == null || a.annotationType() == null) continue;
+            tmpDeclaredAnnotationTypes.add(a.annotationType());
             tmpDeclaredAnnotations.add(a);
-            List<Annotation> las = tmpDeclaredAnnotationMap.get(cname);
-            if (las == null) {
-                las = new ArrayList<>();
-                tmpDeclaredAnnotationMap.put(cname, las);
-            }
-            las.add(a);
-        }
-
-        for (Map.Entry<String, List<Annotation>> me : tmpAnnotationMap.entrySet()) {
-            if (me.getKey() == null || me.getValue() == null) continue;
-            immAnnotationMap.put(me.getKey(), Collects.immlist(me.getValue()));
-        }
-
-        for (Map.Entry<String, List<Annotation>> me : tmpDeclaredAnnotationMap.entrySet()) {
-            if (me.getKey() == null || me.getValue() == null) continue;
-            immDeclaredAnnotationMap.put(me.getKey(), Collects.immlist(me.getValue()));
+            index(tmpDeclaredAnnotationMap, a);
         }
 
         this.annotationTypes = Collects.immlist(tmpAnnotationTypes);
@@ -119,10 +166,50 @@ public class InternalClassAccessAnnotation implements ClassAccessAnnotation {
         this.declaredAnnotationTypes = Collects.immlist(tmpDeclaredAnnotationTypes);
         this.declaredAnnotations = Collects.immlist(tmpDeclaredAnnotations);
 
-        this.annotationMap = Maps.immmap(immAnnotationMap);
-        this.declaredAnnotationMap = Maps.immmap(immDeclaredAnnotationMap);
+        this.annotationMap = immindex(tmpAnnotationMap);
+        this.declaredAnnotationMap = immindex(tmpDeclaredAnnotationMap);
     }
 
+    /**
+     * 按注解类型加入索引 可重复注解的容器同时展开其包含的注解
+     */
+    private static void index(Map<Class<?>, List<Annotation>> map, Annotation a) {
+        map.computeIfAbsent(a.annotationType(), k -> new ArrayList<>()).add(a);
+
+        Method cm = CONTAINERS.get(a.annotationType());
+        if (cm == null) return;
+        try {
+            Annotation[] contained = (Annotation[]) cm.invoke(a);
+            if (contained != null) for (Annotation ca : contained) {
+                if (ca != null) map.computeIfAbsent(ca.annotationType(), k -> new ArrayList<>()).add(ca);
+            }
+        } catch (Throwable ignored) {
+        }
+    }
+
+    private static Map<Class<?>, List<Annotation>> immindex(Map<Class<?>, List<Annotation>> map) {
+        final Map<Class<?>, List<Annotation>> imm = new HashMap<>();
+        for (Map.Entry<Class<?>, List<Annotation>> me : map.entrySet()) imm.put(me.getKey(), Collects.immlist(me.getValue()));
+        return Maps.immmap(imm);
+    }
+
+    /**
+     * 容器注解 返回容器的 value 方法 非容器返回null
+     * <p>
+     * value 返回注解数组且其他成员都有默认值时作为容器 与 @Repeatable 对容器的要求相同
+     */
+    private static Method detectContainer(Class<?> annoType) {
+        try {
+            Method m = annoType.getMethod("value");
+            Class<?> ct = m.getReturnType().getComponentType();
+            if (ct == null || !ct.isAnnotation()) return null;
+            for (Method om : annoType.getDeclaredMethods()) if (!om.equals(m) && !om.isSynthetic() && om.getDefaultValue() == null) return null;
+            m.setAccessible(true);
+            return m;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
 
     @Override
     public final List<Class<?>> annotationTypes() {
@@ -138,10 +225,7 @@ public class InternalClassAccessAnnotation implements ClassAccessAnnotation {
     @Override
     public final <T extends Annotation> List<T> annotations(Class<T> annoType) {
         if (annoType == null) return Collects.immlist();
-        String cname = annoType.getName();
-        if (cname == null) return Collects.immlist();
-
-        List<Annotation> list = this.annotationMap.get(cname);
+        List<Annotation> list = this.annotationMap.get(annoType);
 
         return (list == null) ? Collects.immlist() : (List<T>) list;
     }
@@ -150,10 +234,7 @@ public class InternalClassAccessAnnotation implements ClassAccessAnnotation {
     @Override
     public final <T extends Annotation> T annotation(Class<T> annoType) {
         if (annoType == null) return null;
-        String cname = annoType.getName();
-        if (cname == null) return null;
-
-        List<Annotation> list = this.annotationMap.get(cname);
+        List<Annotation> list = this.annotationMap.get(annoType);
 
         return (list == null || list.isEmpty()) ? null : (T) Collects.first(list);
 
@@ -173,10 +254,7 @@ public class InternalClassAccessAnnotation implements ClassAccessAnnotation {
     @Override
     public final <T extends Annotation> List<T> declaredAnnotations(Class<T> annoType) {
         if (annoType == null) return Collects.immlist();
-        String cname = annoType.getName();
-        if (cname == null) return Collects.immlist();
-
-        List<Annotation> list = this.declaredAnnotationMap.get(cname);
+        List<Annotation> list = this.declaredAnnotationMap.get(annoType);
 
         return (list == null) ? Collects.immlist() : (List<T>) list;
     }
@@ -185,10 +263,7 @@ public class InternalClassAccessAnnotation implements ClassAccessAnnotation {
     @Override
     public final <T extends Annotation> T declaredAnnotation(Class<T> annoType) {
         if (annoType == null) return null;
-        String cname = annoType.getName();
-        if (cname == null) return null;
-
-        List<Annotation> list = this.declaredAnnotationMap.get(cname);
+        List<Annotation> list = this.declaredAnnotationMap.get(annoType);
 
         return (list == null || list.isEmpty()) ? null : (T) Collects.first(list);
     }
@@ -209,4 +284,55 @@ public class InternalClassAccessAnnotation implements ClassAccessAnnotation {
                 "\tdeclaredAnnotationMap=" + declaredAnnotationMap + "\n" +
                 '}';
     }
+
+    /**
+     * 方法签名 名称及参数类型
+     */
+    private static final class MemberKey {
+        private final String name;
+        private final Class<?>[] params;
+        private final int hash;
+
+        private MemberKey(String name, Class<?>[] params) {
+            this.name = name;
+            this.params = (params != null) ? params : Types.EMPTY_CLASSES;
+            this.hash = 31 * name.hashCode() + Arrays.hashCode(this.params);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MemberKey)) return false;
+            MemberKey k = (MemberKey) o;
+            return this.hash == k.hash && this.name.equals(k.name) && Arrays.equals(this.params, k.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /**
+     * 单个类的公共成员索引 与 getMethod/getField 的查找结果一致
+     */
+    private static final class Members {
+        private final Map<MemberKey, Method> methods = new HashMap<>();
+        private final Map<String, Field> fields = new HashMap<>();
+
+        private Members(Class<?> type) {
+            try {
+                for (Method m : type.getMethods()) { // 同签名时 getMethod 优先返回返回类型更具体的方法
+                    MemberKey key = new MemberKey(m.getName(), m.getParameterTypes());
+                    Method om = this.methods.get(key);
+                    if (om == null || om.getReturnType().isAssignableFrom(m.getReturnType())) this.methods.put(key, m);
+                }
+            } catch (Throwable ignored) {
+            }
+            try {
+                for (Field f : type.getFields()) this.fields.putIfAbsent(f.getName(), f);
+            } catch (Throwable ignored) {
+            }
+        }
+    }
 }
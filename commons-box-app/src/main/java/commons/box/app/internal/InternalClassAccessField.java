@@ -1,23 +1,27 @@
 package commons.box.app.internal;
 
+import commons.box.app.AppClass;
 import commons.box.app.AppError;
 import commons.box.app.bean.ClassAccess;
 import commons.box.app.bean.ClassAccessAnnotation;
 import commons.box.app.bean.ClassAccessField;
-import commons.box.util.Types;
 
-import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
- * 基于反射的字段访问
+ * 基于反射的字段访问 访问策略不为 REFLECT 时在构造时绑定 MethodHandle 并通过其读写
  * <p>创建作者：xingxiuyi </p>
  * <p>版权所属：xingxiuyi </p>
  */
 public class InternalClassAccessField<T, F> implements ClassAccessField<T, F> {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType TYPE_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType TYPE_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
     protected final InternalClassAccess<T> parent;
     protected final Class<T> parentType;
     protected final Field field;
@@ -26,6 +30,8 @@ public class InternalClassAccessField<T, F> implements ClassAccessField<T, F> {
     protected final boolean read;
     protected final boolean write;
     protected final ClassAccessAnnotation annotations;
+    protected final MethodHandle getter;
+    protected final MethodHandle setter;
 
     @SuppressWarnings("unchecked")
     public InternalClassAccessField(InternalClassAccess<T> parent, Field field) {
@@ -38,42 +44,46 @@ public class InternalClassAccessField<T, F> implements ClassAccessField<T, F> {
         this.write = (this.field != null) && Modifier.isPublic(this.field.getModifiers()) && !Modifier.isFinal(this.field.getModifiers());
 
         this.annotations = newAccessAnnotation(this.parentType, this.field);
+
+        boolean handles = (this.parent != null && this.parent.strategy != AppClass.AccessStrategy.REFLECT);
+        this.getter = (handles && this.read) ? newGetter(this.field) : null;
+        this.setter = (handles && this.write) ? newSetter(this.field) : null;
     }
 
-    @SuppressWarnings("Duplicates")
-    protected static ClassAccessAnnotation newAccessAnnotation(Class<?> targetType, Field targetField) {
-        List<Annotation> annosDeclared = new ArrayList<>();
-        List<Annotation> annosAll = new ArrayList<>();
-
-        if (targetType != null && targetField != null) {
-            Annotation[] das = targetField.getDeclaredAnnotations();
-            if (das != null) for (Annotation a : das) { // 直接声明的注解
-                if (a == null) continue;
-                annosDeclared.add(a);
-                annosAll.add(a);
-            }
-
-            // 查找同名且类型匹配的字段 也作为注解可识别字段加入列表
-            String fn = targetField.getName();
-            Class<?> ft = targetField.getType();
-            Class<?> cls = targetType.getSuperclass();
-            while (cls != null && !Object.class.equals(cls) && fn != null && ft != null) {
-                try {
-                    Field f = cls.getField(fn);
-                    if (f != null && Types.isType(f.getType(), ft)) {
-                        Annotation[] sas = f.getDeclaredAnnotations();
-                        if (sas != null) for (Annotation aa : sas) {
-                            if (aa != null && !annosAll.contains(aa)) annosAll.add(aa);
-                        }
-                    }
-                } catch (Throwable ignored) {
-                }
-                cls = cls.getSuperclass();
-            }
+    /**
+     * 绑定字段读取的 MethodHandle 类型统一为 (Object)Object 无法绑定时返回null
+     *
+     * @param field
+     * @return
+     */
+    protected static MethodHandle newGetter(Field field) {
+        try {
+            MethodHandle mh = LOOKUP.unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            return mh.asType(TYPE_GETTER);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
 
+    /**
+     * 绑定字段写入的 MethodHandle 类型统一为 (Object, Object)void 无法绑定时返回null
+     *
+     * @param field
+     * @return
+     */
+    protected static MethodHandle newSetter(Field field) {
+        try {
+            MethodHandle mh = LOOKUP.unreflectSetter(field);
+            if (Modifier.isStatic(field.getModifiers())) mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            return mh.asType(TYPE_SETTER);
+        } catch (Throwable e) {
+            return null;
         }
+    }
 
-        return InternalClassAccessAnnotation.create(annosDeclared, annosAll);
+    protected static ClassAccessAnnotation newAccessAnnotation(Class<?> targetType, Field targetField) {
+        return InternalClassAccessAnnotation.create(targetType, targetField);
     }
 
     @Override
@@ -112,6 +122,7 @@ public class InternalClassAccessField<T, F> implements ClassAccessField<T, F> {
         if (object == null || this.field == null || !this.canRead())
             throw AppError.error(this.parentType + " 无法获取字段 " + this.name + " 值");
         try {
+            if (this.getter != null) return (F) (Object) this.getter.invokeExact(object);
             return (F) this.field.get(object);
         } catch (Throwable e) {
             throw AppError.error(this.parentType + " 无法获取字段 " + this.name + " 值");
@@ -123,7 +134,8 @@ public class InternalClassAccessField<T, F> implements ClassAccessField<T, F> {
         if (object == null || this.field == null || !this.canWrite())
             throw AppError.error(this.parentType + " 无法设置字段 " + this.name + " 值");
         try {
-            this.field.set(object, value);
+            if (this.setter != null) this.setter.invokeExact(object, (Object) value);
+            else this.field.set(object, value);
         } catch (Throwable e) {
             throw AppError.error(this.parentType + " 无法设置字段 " + this.name + " 值");
         }
@@ -0,0 +1,466 @@
+package commons.box.app.internal;
+
+import commons.box.app.AppClass;
+import commons.box.app.AppLog;
+import commons.box.util.Logs;
+import commons.box.util.Strs;
+import org.apache.commons.lang3.ClassUtils;
+
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * 类信息索引 保存类的属性、字段、方法列表 用于避免每次启动重复执行 Introspector 及方法扫描
+ * <p>
+ * 通过 app.index 指定索引文件 启动时读取 运行中扫描的类在JVM退出时写回文件
+ * <p>
+ * 索引仅保存成员名称及类型名称 恢复时通过 getDeclaredMethod/getDeclaredField 直接定位 任何一项无法恢复时该类退回到扫描机制
+ * <p>
+ * 每个类的索引同时保存类指纹(该类及其上级类、接口所在类文件或jar的大小及修改时间) 指纹不一致时说明类结构可能已变更 该类重新扫描并更新索引
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public final class InternalClassAccessIndex {
+    private static final AppLog LOG = Logs.get(InternalClassAccessIndex.class);
+    private static final int MAGIC = 0x43424958;
+    private static final int VERSION = 3;
+    private static final InternalClassAccessIndex INSTANCE = create();
+    private static final ClassValue<String> FINGERPRINTS = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return fingerprint(type);
+        }
+    };
+
+    private final File file;
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+    private volatile boolean dirty = false;
+
+    private InternalClassAccessIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 当前索引 未启用时返回null
+     *
+     * @return
+     */
+    public static InternalClassAccessIndex get() {
+        return INSTANCE;
+    }
+
+    /**
+     * 打开索引文件 不注册退出时的写入 需调用 save 保存
+     *
+     * @param file
+     * @return
+     */
+    public static InternalClassAccessIndex open(File file) {
+        InternalClassAccessIndex index = new InternalClassAccessIndex(file);
+        index.read();
+        return index;
+    }
+
+    private static InternalClassAccessIndex create() {
+        String fn = AppClass.index();
+        if (Strs.isBlank(fn)) return null;
+
+        InternalClassAccessIndex index = open(new File(fn.trim()));
+        try {
+            Runtime.getRuntime().addShutdownHook(new Thread(index::save, "app-index-writer"));
+        } catch (Throwable e) {
+            LOG.warn("无法注册类信息索引写入 " + fn, e);
+        }
+        return index;
+    }
+
+    /**
+     * 索引中的属性列表 未索引或无法恢复时返回null
+     *
+     * @param type
+     * @return
+     */
+    public List<Property> properties(Class<?> type) {
+        Record r = this.current(type);
+        if (r == null || r.properties == null) return null;
+        try {
+            ClassLoader cl = loader(type);
+            List<Property> ps = new ArrayList<>(r.properties.size());
+            for (String[] p : r.properties) {
+                Method getter = method(cl, p[2], p[3], p[4]);
+                Method setter = method(cl, p[5], p[6], p[7]);
+                Field field = field(cl, p[8], p[9]);
+                ps.add(new Property(p[0], type(cl, p[1]), getter, setter, field));
+            }
+            return ps;
+        } catch (Throwable e) {
+            this.discard(type, e);
+        }
+        return null;
+    }
+
+    /**
+     * 记录属性列表
+     *
+     * @param type
+     * @param properties
+     */
+    public void properties(Class<?> type, List<Property> properties) {
+        if (properties == null) return;
+        List<String[]> ps = new ArrayList<>(properties.size());
+        for (Property p : properties) {
+            String[] gs = method(p.getter);
+            String[] ss = method(p.setter);
+            ps.add(new String[]{p.name, p.type.getName(), gs[0], gs[1], gs[2], ss[0], ss[1], ss[2],
+                    (p.field != null) ? p.field.getDeclaringClass().getName() : "", (p.field != null) ? p.field.getName() : ""});
+        }
+        this.record(type).properties = ps;
+        this.dirty = true;
+    }
+
+    /**
+     * 索引中的公共字段 未索引或无法恢复时返回null
+     *
+     * @param type
+     * @return
+     */
+    public Field[] fields(Class<?> type) {
+        Record r = this.current(type);
+        if (r == null || r.fields == null) return null;
+        try {
+            ClassLoader cl = loader(type);
+            Field[] fs = new Field[r.fields.size()];
+            for (int i = 0; i < fs.length; i++) fs[i] = field(cl, r.fields.get(i)[0], r.fields.get(i)[1]);
+            return fs;
+        } catch (Throwable e) {
+            this.discard(type, e);
+        }
+        return null;
+    }
+
+    /**
+     * 记录公共字段 非公共字段不记录
+     *
+     * @param type
+     * @param fields
+     */
+    public void fields(Class<?> type, Field[] fields) {
+        if (fields == null) return;
+        List<String[]> fs = new ArrayList<>();
+        for (Field f : fields) {
+            if (f == null || !Modifier.isPublic(f.getModifiers())) continue;
+            fs.add(new String[]{f.getDeclaringClass().getName(), f.getName()});
+        }
+        this.record(type).fields = fs;
+        this.dirty = true;
+    }
+
+    /**
+     * 索引中的公共方法 未索引或无法恢复时返回null
+     *
+     * @param type
+     * @return
+     */
+    public Method[] methods(Class<?> type) {
+        Record r = this.current(type);
+        if (r == null || r.methods == null) return null;
+        try {
+            ClassLoader cl = loader(type);
+            Method[] ms = new Method[r.methods.size()];
+            for (int i = 0; i < ms.length; i++) {
+                String[] m = r.methods.get(i);
+                Class<?>[] pts = new Class<?>[m.length - 2];
+                for (int j = 0; j < pts.length; j++) pts[j] = type(cl, m[j + 2]);
+                ms[i] = type(cl, m[0]).getDeclaredMethod(m[1], pts);
+            }
+            return ms;
+        } catch (Throwable e) {
+            this.discard(type, e);
+        }
+        return null;
+    }
+
+    /**
+     * 记录公共方法 非公共方法不记录
+     *
+     * @param type
+     * @param methods
+     */
+    public void methods(Class<?> type, Method[] methods) {
+        if (methods == null) return;
+        List<String[]> ms = new ArrayList<>();
+        for (Method m : methods) {
+            if (m == null || !Modifier.isPublic(m.getModifiers())) continue;
+            Class<?>[] pts = m.getParameterTypes();
+            String[] ss = new String[pts.length + 2];
+            ss[0] = m.getDeclaringClass().getName();
+            ss[1] = m.getName();
+            for (int j = 0; j < pts.length; j++) ss[j + 2] = pts[j].getName();
+            ms.add(ss);
+        }
+        this.record(type).methods = ms;
+        this.dirty = true;
+    }
+
+    private Record record(Class<?> type) {
+        String fp = FINGERPRINTS.get(type);
+        Record r = this.records.compute(type.getName(), (k, v) -> (v != null && fp.equals(v.fingerprint)) ? v : new Record());
+        r.fingerprint = fp;
+        return r;
+    }
+
+    /**
+     * 指纹与当前类一致的索引 不一致时丢弃
+     */
+    private Record current(Class<?> type) {
+        Record r = this.records.get(type.getName());
+        if (r == null) return null;
+        if (!FINGERPRINTS.get(type).equals(r.fingerprint)) {
+            LOG.debug("类信息索引中的类型 " + type.getName() + " 已变更 重新扫描");
+            this.records.remove(type.getName(), r);
+            this.dirty = true;
+            return null;
+        }
+        return r;
+    }
+
+    /**
+     * 类指纹 由类及其全部上级类、接口的类名及其类文件的时间戳组成 只读取文件属性 不读取类文件内容
+     *
+     * @param type
+     * @return
+     */
+    static String fingerprint(Class<?> type) {
+        CRC32 crc = new CRC32();
+        List<Class<?>> types = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) types.add(c);
+        types.addAll(ClassUtils.getAllInterfaces(type));
+
+        for (Class<?> c : types) {
+            crc.update(c.getName().getBytes(StandardCharsets.UTF_8));
+            if (c.getClassLoader() == null) continue; // JDK中的类随JDK版本变化 不影响索引中的成员名称
+            crc.update(stamp(c).getBytes(StandardCharsets.UTF_8));
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * 类文件的时间戳 类位于目录中时为类文件的大小及修改时间 位于jar中时为jar文件的大小及修改时间 都无法获得时使用类加载器标识(每次启动都会重新扫描)
+     *
+     * @param type
+     * @return
+     */
+    private static String stamp(Class<?> type) {
+        try {
+            String cn = type.getName();
+            URL url = type.getResource(cn.substring(cn.lastIndexOf('.') + 1) + ".class");
+            if (url == null || !"file".equals(url.getProtocol())) {
+                CodeSource cs = type.getProtectionDomain().getCodeSource();
+                url = (cs != null) ? cs.getLocation() : null;
+            }
+            if (url != null && "file".equals(url.getProtocol())) {
+                File f = new File(url.toURI());
+                if (f.isFile()) return f.length() + ":" + f.lastModified();
+            }
+        } catch (Throwable e) {
+            LOG.debug("无法获取类型 " + type.getName() + " 的类文件", e);
+        }
+        return String.valueOf(System.identityHashCode(type.getClassLoader()));
+    }
+
+    private void discard(Class<?> type, Throwable e) {
+        LOG.debug("类信息索引与类型 " + type.getName() + " 不一致 重新扫描", e);
+        this.records.remove(type.getName());
+        this.dirty = true;
+    }
+
+    private static ClassLoader loader(Class<?> type) {
+        ClassLoader cl = type.getClassLoader();
+        return (cl != null) ? cl : ClassLoader.getSystemClassLoader();
+    }
+
+    private static Class<?> type(ClassLoader cl, String name) throws ClassNotFoundException {
+        return ClassUtils.getClass(cl, name, false);
+    }
+
+    private static Method method(ClassLoader cl, String owner, String name, String param) throws ReflectiveOperationException {
+        if (owner.isEmpty()) return null;
+        if (param.isEmpty()) return type(cl, owner).getDeclaredMethod(name);
+        return type(cl, owner).getDeclaredMethod(name, type(cl, param));
+    }
+
+    private static String[] method(Method m) {
+        if (m == null) return new String[]{"", "", ""};
+        return new String[]{m.getDeclaringClass().getName(), m.getName(), (m.getParameterCount() > 0) ? m.getParameterTypes()[0].getName() : ""};
+    }
+
+    private static Field field(ClassLoader cl, String owner, String name) throws ReflectiveOperationException {
+        if (owner.isEmpty()) return null;
+        return type(cl, owner).getDeclaredField(name);
+    }
+
+    private void read() {
+        if (!this.file.isFile()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOG.warn("类信息索引 " + this.file + " 格式不符 将重新生成");
+                this.dirty = true;
+                return;
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String name = in.readUTF();
+                Record r = new Record();
+                r.fingerprint = in.readUTF();
+                r.properties = readTable(in);
+                r.fields = readTable(in);
+                r.methods = readTable(in);
+                this.records.put(name, r);
+            }
+        } catch (Throwable e) {
+            LOG.warn("无法读取类信息索引 " + this.file + " 将重新生成", e);
+            this.records.clear();
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * 有变更时写回索引文件
+     */
+    public void save() {
+        if (!this.dirty) return;
+        File tmp = new File(this.file.getPath() + ".tmp");
+        try {
+            File dir = this.file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) throw new IOException("无法创建目录 " + dir);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                List<Map.Entry<String, Record>> es = new ArrayList<>(this.records.entrySet());
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(es.size());
+                for (Map.Entry<String, Record> e : es) {
+                    out.writeUTF(e.getKey());
+                    out.writeUTF((e.getValue().fingerprint != null) ? e.getValue().fingerprint : "");
+                    writeTable(out, e.getValue().properties);
+                    writeTable(out, e.getValue().fields);
+                    writeTable(out, e.getValue().methods);
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            this.dirty = false;
+        } catch (Throwable e) {
+            LOG.warn("无法写入类信息索引 " + this.file, e);
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+
+    /**
+     * 表格式: 行数(-1 表示未记录) 每行: 列数 各列字符串
+     */
+    private static List<String[]> readTable(DataInputStream in) throws IOException {
+        int rows = in.readInt();
+        if (rows < 0) return null;
+        List<String[]> table = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            String[] row = new String[in.readUnsignedShort()];
+            for (int j = 0; j < row.length; j++) row[j] = in.readUTF();
+            table.add(row);
+        }
+        return table;
+    }
+
+    private static void writeTable(DataOutputStream out, List<String[]> table) throws IOException {
+        if (table == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(table.size());
+        for (String[] row : table) {
+            out.writeShort(row.length);
+            for (String s : row) out.writeUTF(s);
+        }
+    }
+
+    /**
+     * 单个类的索引 各表为空表示尚未记录
+     */
+    private static final class Record {
+        private volatile String fingerprint;
+        private volatile List<String[]> properties;
+        private volatile List<String[]> fields;
+        private volatile List<String[]> methods;
+    }
+
+    /**
+     * 属性信息
+     */
+    public static final class Property {
+        private final String name;
+        private final Class<?> type;
+        private final Method getter;
+        private final Method setter;
+        private final Field field;
+
+        public Property(String name, Class<?> type, Method getter, Method setter, Field field) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+            this.field = field;
+        }
+
+        public String name() {
+            return this.name;
+        }
+
+        public Class<?> type() {
+            return this.type;
+        }
+
+        public Method getter() {
+            return this.getter;
+        }
+
+        public Method setter() {
+            return this.setter;
+        }
+
+        public Field field() {
+            return this.field;
+        }
+
+        /**
+         * 根据getter/setter生成属性描述 无法生成时返回null
+         *
+         * @return
+         */
+        public PropertyDescriptor descriptor() {
+            try {
+                return new PropertyDescriptor(this.name, this.getter, this.setter);
+            } catch (IntrospectionException e) {
+                return null;
+            }
+        }
+    }
+}
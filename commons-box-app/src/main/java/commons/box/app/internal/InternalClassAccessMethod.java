@@ -1,23 +1,28 @@
 package commons.box.app.internal;
 
+import commons.box.app.AppClass;
 import commons.box.app.AppError;
 import commons.box.app.bean.ClassAccess;
 import commons.box.app.bean.ClassAccessAnnotation;
 import commons.box.app.bean.ClassAccessMethod;
 import commons.box.util.Types;
 
-import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 /**
+ * 方法访问 访问策略不为 REFLECT 时在构造时绑定 MethodHandle 并通过其调用
  * <p>创建作者：xingxiuyi </p>
  * <p>版权所属：xingxiuyi </p>
  */
 public class InternalClassAccessMethod<T, M> implements ClassAccessMethod<T, M> {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType TYPE_INVOKER = MethodType.methodType(Object.class, Object.class, Object[].class);
+
     protected final InternalClassAccess<T> parent;
     protected final Class<T> parentType;
     protected final Method method;
@@ -27,6 +32,7 @@ public class InternalClassAccessMethod<T, M> implements ClassAccessMethod<T, M>
     protected final Class<M> returnType;
     protected final boolean invokable;
     protected final ClassAccessAnnotation annotations;
+    protected final MethodHandle handle;
 
     @SuppressWarnings("unchecked")
     protected InternalClassAccessMethod(InternalClassAccess<T> parent, Method method) {
@@ -39,45 +45,27 @@ public class InternalClassAccessMethod<T, M> implements ClassAccessMethod<T, M>
         this.returnType = (this.method != null) ? (Class<M>) this.method.getReturnType() : null;
         this.invokable = (this.method != null) && Modifier.isPublic(this.method.getModifiers());
         this.annotations = newAccessAnnotation(this.parentType, this.method);
+        this.handle = (this.invokable && this.parent != null && this.parent.strategy != AppClass.AccessStrategy.REFLECT) ? newHandle(this.method) : null;
     }
 
-    @SuppressWarnings("Duplicates")
-    protected static ClassAccessAnnotation newAccessAnnotation(Class<?> targetType, Method targetMethod) {
-        List<Annotation> annosDeclared = new ArrayList<>();
-        List<Annotation> annosAll = new ArrayList<>();
-
-        if (targetType != null && targetMethod != null) {
-            Annotation[] das = targetMethod.getDeclaredAnnotations();
-            if (das != null) for (Annotation a : das) { // 直接声明的注解
-                if (a == null) continue;
-                annosDeclared.add(a);
-                annosAll.add(a);
-            }
-
-            // 查找同名且类型匹配的字段 也作为注解可识别字段加入列表
-            String mn = targetMethod.getName();
-            Class<?> mt = targetMethod.getReturnType();
-            Class<?>[] mps = targetMethod.getParameterTypes();
-            if (mps == null) mps = Types.EMPTY_CLASSES;
-
-            Class<?> cls = targetType.getSuperclass();
-            while (cls != null && !Object.class.equals(cls) && mn != null) {
-                try {
-                    Method m = cls.getMethod(mn, mps);
-                    if (m != null && Types.isType(m.getReturnType(), mt)) {
-                        Annotation[] sas = m.getDeclaredAnnotations();
-                        if (sas != null) for (Annotation aa : sas) {
-                            if (aa != null && !annosAll.contains(aa)) annosAll.add(aa);
-                        }
-                    }
-                } catch (Throwable ignored) {
-                }
-                cls = cls.getSuperclass();
-            }
-
+    /**
+     * 绑定方法对应的 MethodHandle 类型统一为 (Object, Object[])Object 无法绑定时返回null
+     *
+     * @param method
+     * @return
+     */
+    protected static MethodHandle newHandle(Method method) {
+        try {
+            MethodHandle mh = LOOKUP.unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            return mh.asSpreader(Object[].class, method.getParameterCount()).asType(TYPE_INVOKER);
+        } catch (Throwable e) {
+            return null;
         }
+    }
 
-        return InternalClassAccessAnnotation.create(annosDeclared, annosAll);
+    protected static ClassAccessAnnotation newAccessAnnotation(Class<?> targetType, Method targetMethod) {
+        return InternalClassAccessAnnotation.create(targetType, targetMethod);
     }
 
     @Override
@@ -121,9 +109,10 @@ public class InternalClassAccessMethod<T, M> implements ClassAccessMethod<T, M>
         if (object == null || this.method == null || !this.canInvoke())
             throw AppError.error(this.parentType + " 无法调用方法 " + this.name + " 参数 " + Arrays.toString(this.parameterTypes));
         try {
+            if (this.handle != null) return (M) (Object) this.handle.invokeExact(object, parameters);
             return (M) this.method.invoke(object, parameters);
         } catch (Throwable e) {
-            throw AppError.error(this.parentType + " 无法调用方法 " + this.name + " 参数 " + Arrays.toString(this.parameterTypes));
+            throw AppError.error(this.parentType + " 无法调用方法 " + this.name + " 参数 " + Arrays.toString(this.parameterTypes), e);
         }
     }
 }
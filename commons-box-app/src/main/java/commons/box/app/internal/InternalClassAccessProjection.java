@@ -0,0 +1,180 @@
+package commons.box.app.internal;
+
+import commons.box.app.AppError;
+import commons.box.app.bean.ClassAccess;
+import commons.box.app.bean.ClassAccessProjection;
+import commons.box.app.bean.ClassAccessProperty;
+
+import java.util.List;
+
+/**
+ * 列式投影实现 每列只保存一个数组 原始类型列不装箱
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public class InternalClassAccessProjection<T> implements ClassAccessProjection<T> {
+    protected static final int KIND_OBJECT = 0;
+    protected static final int KIND_INT = 1;
+    protected static final int KIND_LONG = 2;
+    protected static final int KIND_DOUBLE = 3;
+
+    protected final ClassAccess<T> parent;
+    protected final int size;
+    protected final String[] names;
+    protected final Class<?>[] types;
+    protected final int[] kinds;
+    protected final Object[] data;
+
+    public InternalClassAccessProjection(ClassAccess<T> parent, List<? extends T> beans, String... props) throws AppError {
+        if (parent == null) throw AppError.error("无法生成投影 缺少可访问类");
+        this.parent = parent;
+        this.size = (beans != null) ? beans.size() : 0;
+        this.names = (props != null) ? props.clone() : new String[0];
+        this.types = new Class<?>[this.names.length];
+        this.kinds = new int[this.names.length];
+        this.data = new Object[this.names.length];
+
+        ClassAccessProperty<T, Object>[] aps = newProperties(this.names.length);
+        for (int c = 0; c < this.names.length; c++) {
+            ClassAccessProperty<T, Object> ap = parent.prop(this.names[c]);
+            if (ap == null) throw AppError.error("未找到类 [" + parent.type() + "] 的属性 " + this.names[c]);
+            if (!ap.canRead()) throw AppError.error("类 " + parent.name() + " 属性 " + this.names[c] + " 不允许访问");
+            aps[c] = ap;
+            this.types[c] = ap.type();
+            this.kinds[c] = kind(ap.type());
+            this.data[c] = newColumn(this.kinds[c], this.size);
+        }
+
+        if (this.size < 1 || aps.length < 1) return;
+
+        // 按行遍历 每个对象只访问一次 空对象对应的行保持默认值 基本类型列使用专用访问不装箱
+        int r = 0;
+        for (T bean : beans) {
+            if (bean != null) for (int c = 0; c < aps.length; c++) {
+                switch (this.kinds[c]) {
+                    case KIND_INT:
+                        ((int[]) this.data[c])[r] = aps[c].getInt(bean);
+                        break;
+                    case KIND_LONG:
+                        ((long[]) this.data[c])[r] = aps[c].getLong(bean);
+                        break;
+                    case KIND_DOUBLE:
+                        ((double[]) this.data[c])[r] = aps[c].getDouble(bean);
+                        break;
+                    default:
+                        ((Object[]) this.data[c])[r] = aps[c].get(bean);
+                }
+            }
+            r++;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ClassAccessProperty<T, Object>[] newProperties(int length) {
+        return (ClassAccessProperty<T, Object>[]) new ClassAccessProperty<?, ?>[length];
+    }
+
+    protected static int kind(Class<?> type) {
+        if (type == int.class || type == short.class || type == byte.class) return KIND_INT;
+        if (type == long.class) return KIND_LONG;
+        if (type == double.class || type == float.class) return KIND_DOUBLE;
+        return KIND_OBJECT;
+    }
+
+    protected static Object newColumn(int kind, int size) {
+        switch (kind) {
+            case KIND_INT:
+                return new int[size];
+            case KIND_LONG:
+                return new long[size];
+            case KIND_DOUBLE:
+                return new double[size];
+            default:
+                return new Object[size];
+        }
+    }
+
+    @Override
+    public ClassAccess<T> parent() {
+        return this.parent;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public String[] names() {
+        return this.names.clone();
+    }
+
+    @Override
+    public int index(String name) {
+        if (name == null) return -1;
+        for (int i = 0; i < this.names.length; i++) if (name.equals(this.names[i])) return i;
+        return -1;
+    }
+
+    @Override
+    public Class<?> type(int column) {
+        return this.types[column];
+    }
+
+    @Override
+    public boolean isPrimitive(int column) {
+        return this.kinds[column] != KIND_OBJECT;
+    }
+
+    @Override
+    public Object[] column(int column) {
+        if (this.kinds[column] == KIND_OBJECT) return (Object[]) this.data[column];
+        Object[] os = new Object[this.size];
+        for (int r = 0; r < this.size; r++) os[r] = this.value(r, column);
+        return os;
+    }
+
+    @Override
+    public Object[][] columns() {
+        Object[][] cs = new Object[this.names.length][];
+        for (int c = 0; c < cs.length; c++) cs[c] = this.column(c);
+        return cs;
+    }
+
+    @Override
+    public int[] ints(int column) throws AppError {
+        if (this.kinds[column] != KIND_INT) throw AppError.error("投影列 " + this.names[column] + " 类型为 " + this.types[column] + " 不是int列");
+        return (int[]) this.data[column];
+    }
+
+    @Override
+    public long[] longs(int column) throws AppError {
+        if (this.kinds[column] != KIND_LONG) throw AppError.error("投影列 " + this.names[column] + " 类型为 " + this.types[column] + " 不是long列");
+        return (long[]) this.data[column];
+    }
+
+    @Override
+    public double[] doubles(int column) throws AppError {
+        if (this.kinds[column] != KIND_DOUBLE) throw AppError.error("投影列 " + this.names[column] + " 类型为 " + this.types[column] + " 不是double列");
+        return (double[]) this.data[column];
+    }
+
+    @Override
+    public Object value(int row, int column) {
+        switch (this.kinds[column]) {
+            case KIND_INT:
+                int iv = ((int[]) this.data[column])[row];
+                if (this.types[column] == short.class) return (short) iv;
+                if (this.types[column] == byte.class) return (byte) iv;
+                return iv;
+            case KIND_LONG:
+                return ((long[]) this.data[column])[row];
+            case KIND_DOUBLE:
+                double dv = ((double[]) this.data[column])[row];
+                if (this.types[column] == float.class) return (float) dv;
+                return dv;
+            default:
+                return ((Object[]) this.data[column])[row];
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package commons.box.app.internal;
 
+import commons.box.app.AppClass;
 import commons.box.app.AppError;
 import commons.box.app.DataValidator;
 import commons.box.app.bean.*;
 import commons.box.util.Collects;
 
 import java.beans.PropertyDescriptor;
-import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,6 +25,20 @@ import java.util.List;
  */
 public class InternalClassAccessProperty<T, P> implements ClassAccessProperty<T, P> {
     public final static List<DataValidator<?>> EMPTY_VALIDATORS = Collects.immlist();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodHandle NONE = MethodHandles.constant(Object.class, null);
+    private static final int INT_GETTER = 0, LONG_GETTER = 1, DOUBLE_GETTER = 2, BOOLEAN_GETTER = 3;
+    private static final int INT_SETTER = 4, LONG_SETTER = 5, DOUBLE_SETTER = 6, BOOLEAN_SETTER = 7;
+    private static final MethodType[] HANDLES = {
+            MethodType.methodType(int.class, Object.class),
+            MethodType.methodType(long.class, Object.class),
+            MethodType.methodType(double.class, Object.class),
+            MethodType.methodType(boolean.class, Object.class),
+            MethodType.methodType(void.class, Object.class, int.class),
+            MethodType.methodType(void.class, Object.class, long.class),
+            MethodType.methodType(void.class, Object.class, double.class),
+            MethodType.methodType(void.class, Object.class, boolean.class)
+    };
     protected final InternalClassAccess<T> parent;
     protected final Class<T> parentType;
     protected final PropertyDescriptor pd;
@@ -35,6 +53,9 @@ public class InternalClassAccessProperty<T, P> implements ClassAccessProperty<T,
     protected final ClassAccessAnnotation annotations;
     protected final List<DataValidator<?>> validators;
 
+    // 基本类型属性的专用访问 按 HANDLES 中的类型在首次使用时生成 不适用的位置为 NONE 仅访问策略不为 REFLECT 且属性为基本类型时使用
+    private final MethodHandle[] handles;
+
     public InternalClassAccessProperty(InternalClassAccess<T> parent, String name, Class<P> type, PropertyDescriptor pd, ClassAccessField<T, P> accessField, ClassAccessMethod<T, P> accessGetter, ClassAccessMethod<T, ?> accessSetter) {
         this.parent = parent;
         this.parentType = (this.parent != null) ? this.parent.type() : null;
@@ -50,44 +71,107 @@ public class InternalClassAccessProperty<T, P> implements ClassAccessProperty<T,
 
         this.annotations = newAccessAnnotation(this.accessField, this.accessGetter, this.accessSetter);
         this.validators = newDataValidators(this.annotations);
-    }
 
-    protected static ClassAccessAnnotation newAccessAnnotation(ClassAccessField<?, ?> accessField, ClassAccessMethod<?, ?> accessGetter, ClassAccessMethod<?, ?> accessSetter) {
-        List<Annotation> annoDeclareds = new ArrayList<>();
-        List<Annotation> annoAll = new ArrayList<>();
+        boolean handle = this.parent != null && this.parent.strategy() != AppClass.AccessStrategy.REFLECT;
+        this.handles = (handle && this.type != null && this.type.isPrimitive()) ? new MethodHandle[HANDLES.length] : null;
+    }
 
-        List<ClassAccessAnnotation> aas = new ArrayList<>();
-        if (accessSetter != null && accessSetter.accessAnno() != null) aas.add(accessSetter.accessAnno());
-        if (accessGetter != null && accessGetter.accessAnno() != null) aas.add(accessGetter.accessAnno());
-        if (accessField != null && accessField.accessAnno() != null) aas.add(accessField.accessAnno());
+    /**
+     * 基本类型的专用访问 首次使用时绑定并适配 不适用时返回null 并发生成时结果相同 MethodHandle 不可变 无需同步
+     */
+    private MethodHandle handle(int kind) {
+        if (this.handles == null) return null;
+        MethodHandle mh = this.handles[kind];
+        if (mh == null) {
+            MethodHandle base = (kind < INT_SETTER) ? newPrimitiveGetter(this.accessField, this.accessGetter) : newPrimitiveSetter(this.accessField, this.accessSetter);
+            mh = adapt(base, HANDLES[kind]);
+            if (mh == null) mh = NONE;
+            this.handles[kind] = mh;
+        }
+        return (mh != NONE) ? mh : null;
+    }
 
-        for (ClassAccessAnnotation aa : aas) {
-            List<Annotation> das = aa.declaredAnnotations();
-            if (das != null) for (Annotation a : das) {
-                if (a == null) continue;
-                if (!annoDeclareds.contains(a)) annoDeclareds.add(a);
-                if (!annoAll.contains(a)) annoAll.add(a);
+    /**
+     * 按 get 的顺序(getter 优先 其次字段)绑定基本类型属性的读取 返回值保持基本类型 getter无法绑定时使用字段
+     */
+    protected static MethodHandle newPrimitiveGetter(ClassAccessField<?, ?> accessField, ClassAccessMethod<?, ?> accessGetter) {
+        if (accessGetter instanceof InternalClassAccessMethod && accessGetter.canInvoke()) {
+            InternalClassAccessMethod<?, ?> m = (InternalClassAccessMethod<?, ?>) accessGetter;
+            if (!Modifier.isStatic(m.method.getModifiers()) && m.method.getReturnType().isPrimitive()) try {
+                return LOOKUP.unreflect(m.method);
+            } catch (IllegalAccessException ignored) {
+            }
+        }
+        if (accessField instanceof InternalClassAccessField && accessField.canRead()) {
+            InternalClassAccessField<?, ?> f = (InternalClassAccessField<?, ?>) accessField;
+            if (!Modifier.isStatic(f.field.getModifiers()) && f.field.getType().isPrimitive()) try {
+                return LOOKUP.unreflectGetter(f.field);
+            } catch (IllegalAccessException ignored) {
             }
         }
+        return null;
+    }
 
-        for (ClassAccessAnnotation aa : aas) {
-            List<Annotation> as = aa.annotations();
-            if (as != null) for (Annotation a : as) {
-                if (a == null) continue;
-                if (!annoAll.contains(a)) annoAll.add(a);
+    /**
+     * 按 set 的顺序(setter 优先 其次字段)绑定基本类型属性的写入 参数保持基本类型 setter无法绑定时使用字段
+     */
+    protected static MethodHandle newPrimitiveSetter(ClassAccessField<?, ?> accessField, ClassAccessMethod<?, ?> accessSetter) {
+        if (accessSetter instanceof InternalClassAccessMethod && accessSetter.canInvoke()) {
+            InternalClassAccessMethod<?, ?> m = (InternalClassAccessMethod<?, ?>) accessSetter;
+            if (!Modifier.isStatic(m.method.getModifiers()) && m.parameterCount == 1 && m.method.getParameterTypes()[0].isPrimitive()) try {
+                return LOOKUP.unreflect(m.method);
+            } catch (IllegalAccessException ignored) {
+            }
+        }
+        if (accessField instanceof InternalClassAccessField && accessField.canWrite()) {
+            InternalClassAccessField<?, ?> f = (InternalClassAccessField<?, ?>) accessField;
+            if (!Modifier.isStatic(f.field.getModifiers()) && f.field.getType().isPrimitive()) try {
+                return LOOKUP.unreflectSetter(f.field);
+            } catch (IllegalAccessException ignored) {
             }
         }
+        return null;
+    }
 
-        return InternalClassAccessAnnotation.create(annoDeclareds, annoAll);
+    /**
+     * 适配为指定的访问类型 仅允许基本类型的拓宽转换 读取时属性类型需能拓宽为目标类型 写入时目标类型需能拓宽为属性类型 其余情况返回null
+     */
+    protected static MethodHandle adapt(MethodHandle mh, MethodType type) {
+        if (mh == null) return null;
+        MethodType mt = mh.type();
+        boolean fits = (type.parameterCount() == 1)
+                ? widens(mt.returnType(), type.returnType())
+                : (mt.parameterCount() == 2 && widens(type.parameterType(1), mt.parameterType(1)));
+        return fits ? mh.asType(type) : null;
     }
 
-    protected static List<DataValidator<?>> newDataValidators(ClassAccessAnnotation annotations) {
-        if (annotations == null) return EMPTY_VALIDATORS;
+    /**
+     * 基本类型的拓宽转换(含相同类型) boolean 只能转换为自身
+     */
+    protected static boolean widens(Class<?> from, Class<?> to) {
+        if (from == to) return true;
+        if (from == byte.class) return to == short.class || to == int.class || to == long.class || to == float.class || to == double.class;
+        if (from == short.class || from == char.class) return to == int.class || to == long.class || to == float.class || to == double.class;
+        if (from == int.class) return to == long.class || to == float.class || to == double.class;
+        if (from == long.class) return to == float.class || to == double.class;
+        if (from == float.class) return to == double.class;
+        return false;
+    }
 
-        List<DataValidator<?>> validators = new ArrayList<>();
-        // TODO 需实现验证器解析逻辑
+    protected static ClassAccessAnnotation newAccessAnnotation(ClassAccessField<?, ?> accessField, ClassAccessMethod<?, ?> accessGetter, ClassAccessMethod<?, ?> accessSetter) {
+        List<ClassAccessAnnotation> aas = new ArrayList<>();
+        if (accessSetter != null && accessSetter.accessAnno() != null) aas.add(accessSetter.accessAnno());
+        if (accessGetter != null && accessGetter.accessAnno() != null) aas.add(accessGetter.accessAnno());
+        if (accessField != null && accessField.accessAnno() != null) aas.add(accessField.accessAnno());
 
-        return Collects.immlist(validators);
+        return InternalClassAccessAnnotation.merge(aas);
+    }
+
+    /**
+     * 当前未定义用于声明验证规则的注解 属性不带验证器 验证规则通过 BeanValidator 显式指定
+     */
+    protected static List<DataValidator<?>> newDataValidators(ClassAccessAnnotation annotations) {
+        return EMPTY_VALIDATORS;
     }
 
     @Override
@@ -166,4 +250,139 @@ public class InternalClassAccessProperty<T, P> implements ClassAccessProperty<T,
             throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 设置值发生错误 ", e);
         }
     }
+
+    @Override
+    public int getInt(T object) throws AppError {
+        MethodHandle mh = this.handle(INT_GETTER);
+        if (mh == null) return ClassAccessProperty.super.getInt(object);
+        try {
+            return (int) mh.invokeExact((Object) object);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public long getLong(T object) throws AppError {
+        MethodHandle mh = this.handle(LONG_GETTER);
+        if (mh == null) return ClassAccessProperty.super.getLong(object);
+        try {
+            return (long) mh.invokeExact((Object) object);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public double getDouble(T object) throws AppError {
+        MethodHandle mh = this.handle(DOUBLE_GETTER);
+        if (mh == null) return ClassAccessProperty.super.getDouble(object);
+        try {
+            return (double) mh.invokeExact((Object) object);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(T object) throws AppError {
+        MethodHandle mh = this.handle(BOOLEAN_GETTER);
+        if (mh == null) return ClassAccessProperty.super.getBoolean(object);
+        try {
+            return (boolean) mh.invokeExact((Object) object);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 获取值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public void setInt(T object, int value) throws AppError {
+        MethodHandle mh = this.handle(INT_SETTER);
+        if (mh == null) {
+            ClassAccessProperty.super.setInt(object, value);
+            return;
+        }
+        try {
+            mh.invokeExact((Object) object, value);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 设置值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public void setLong(T object, long value) throws AppError {
+        MethodHandle mh = this.handle(LONG_SETTER);
+        if (mh == null) {
+            ClassAccessProperty.super.setLong(object, value);
+            return;
+        }
+        try {
+            mh.invokeExact((Object) object, value);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 设置值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public void setDouble(T object, double value) throws AppError {
+        MethodHandle mh = this.handle(DOUBLE_SETTER);
+        if (mh == null) {
+            ClassAccessProperty.super.setDouble(object, value);
+            return;
+        }
+        try {
+            mh.invokeExact((Object) object, value);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 设置值发生错误 ", e);
+        }
+    }
+
+    @Override
+    public void setBoolean(T object, boolean value) throws AppError {
+        MethodHandle mh = this.handle(BOOLEAN_SETTER);
+        if (mh == null) {
+            ClassAccessProperty.super.setBoolean(object, value);
+            return;
+        }
+        try {
+            mh.invokeExact((Object) object, value);
+        } catch (Throwable e) {
+            throw AppError.error("调用类 " + this.parentType + " 的属性 " + this.name + " 设置值发生错误 ", e);
+        }
+    }
+
+    /**
+     * 属性值转换为数值 空值为0 供按装箱方式访问基本类型值时使用
+     *
+     * @param property
+     * @param value
+     * @return
+     * @throws AppError 值不是数值
+     */
+    public static Number number(ClassAccessProperty<?, ?> property, Object value) throws AppError {
+        if (value == null) return 0;
+        if (value instanceof Number) return (Number) value;
+        if (value instanceof Character) return (int) (Character) value;
+        Class<?> owner = (property.parent() != null) ? property.parent().type() : null;
+        throw AppError.error("调用类 " + owner + " 的属性 " + property.name() + " 类型 " + value.getClass().getName() + " 不是数值");
+    }
+
+    /**
+     * 数值转换为属性类型 属性不是数值类型时按原值设置
+     *
+     * @param type
+     * @param value
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <P> P convert(Class<P> type, Number value) {
+        if (type == int.class || type == Integer.class) return (P) Integer.valueOf(value.intValue());
+        if (type == long.class || type == Long.class) return (P) Long.valueOf(value.longValue());
+        if (type == double.class || type == Double.class) return (P) Double.valueOf(value.doubleValue());
+        if (type == float.class || type == Float.class) return (P) Float.valueOf(value.floatValue());
+        if (type == short.class || type == Short.class) return (P) Short.valueOf(value.shortValue());
+        if (type == byte.class || type == Byte.class) return (P) Byte.valueOf(value.byteValue());
+        if (type == char.class || type == Character.class) return (P) Character.valueOf((char) value.intValue());
+        return (P) value;
+    }
 }
@@ -0,0 +1,127 @@
+package commons.box.app.internal;
+
+import commons.box.app.AppLog;
+import commons.box.app.DataCacheStats;
+import commons.box.app.DataCacheStatsListener;
+import commons.box.util.Logs;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存统计计数器 使用分段的 LongAdder 计数 高并发下不争用同一变量
+ * <p>
+ * 监听器抛出的异常被忽略 不影响读取及载入 持有锁时发生的清除通过 deferEviction 计数 释放锁后由 flushEvictions 通知监听器
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public final class InternalDataCacheCounter {
+    private static final AppLog LOG = Logs.get(InternalDataCacheCounter.class);
+    private static final int LATENCY_BUCKETS = 48;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder[] loadLatencies = new LongAdder[LATENCY_BUCKETS];
+    private final DataCacheStatsListener listener;
+    private final AtomicInteger pendingEvictions = new AtomicInteger();
+    private volatile boolean failed;
+
+    public InternalDataCacheCounter(DataCacheStatsListener listener) {
+        for (int i = 0; i < LATENCY_BUCKETS; i++) this.loadLatencies[i] = new LongAdder();
+        this.listener = listener;
+    }
+
+    public void recordHits(int count) {
+        if (count < 1) return;
+        this.hitCount.add(count);
+        if (this.listener != null) try {
+            this.listener.hits(count);
+        } catch (Throwable e) {
+            this.failed(e);
+        }
+    }
+
+    public void recordMisses(int count) {
+        if (count < 1) return;
+        this.missCount.add(count);
+        if (this.listener != null) try {
+            this.listener.misses(count);
+        } catch (Throwable e) {
+            this.failed(e);
+        }
+    }
+
+    public void recordLoad(long nanos, boolean success) {
+        if (success) this.loadSuccessCount.increment();
+        else this.loadFailureCount.increment();
+        this.totalLoadTime.add(nanos);
+        this.loadLatencies[bucket(nanos)].increment();
+        if (this.listener != null) try {
+            this.listener.load(nanos, success);
+        } catch (Throwable e) {
+            this.failed(e);
+        }
+    }
+
+    public void recordEviction() {
+        this.evictionCount.increment();
+        if (this.listener != null) this.notifyEvictions(1);
+    }
+
+    /**
+     * 计数清除 监听器在 flushEvictions 时通知 用于持有锁时
+     */
+    public void deferEviction() {
+        this.evictionCount.increment();
+        if (this.listener != null) this.pendingEvictions.incrementAndGet();
+    }
+
+    /**
+     * 通知延迟的清除 应在释放锁后调用
+     */
+    public void flushEvictions() {
+        if (this.listener == null || this.pendingEvictions.get() == 0) return;
+        this.notifyEvictions(this.pendingEvictions.getAndSet(0));
+    }
+
+    private void notifyEvictions(int count) {
+        try {
+            for (int i = 0; i < count; i++) this.listener.eviction();
+        } catch (Throwable e) {
+            this.failed(e);
+        }
+    }
+
+    /**
+     * 只记录第一次出错 避免监听器持续出错时刷屏
+     */
+    private void failed(Throwable e) {
+        if (this.failed) return;
+        this.failed = true;
+        LOG.warn("缓存统计监听器出错 之后的错误将被忽略", e);
+    }
+
+    public long hitCount() {
+        return this.hitCount.sum();
+    }
+
+    public long missCount() {
+        return this.missCount.sum();
+    }
+
+    public DataCacheStats snapshot() {
+        long[] latencies = new long[LATENCY_BUCKETS];
+        for (int i = 0; i < LATENCY_BUCKETS; i++) latencies[i] = this.loadLatencies[i].sum();
+        return new DataCacheStats(this.hitCount.sum(), this.missCount.sum(), this.loadSuccessCount.sum(), this.loadFailureCount.sum(),
+                this.totalLoadTime.sum(), this.evictionCount.sum(), latencies);
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < 2) return 0;
+        return Math.min(LATENCY_BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos));
+    }
+}
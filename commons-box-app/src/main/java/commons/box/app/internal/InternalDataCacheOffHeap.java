@@ -0,0 +1,305 @@
+package commons.box.app.internal;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * DataCache 的堆外存储 值以字节形式顺序写入固定大小的直接内存块(slab)
+ * <p>
+ * 存储按键的哈希分为多个段 每段有独立的索引、块及锁 不同段的读写互不阻塞
+ * <p>
+ * 段内当前块写满后写入下一块 所有块都已使用时回收最早写入的块 块内未过期的记录在锁外交给回收监听 删除记录只移除索引 空间在块回收时释放
+ * <p>
+ * 索引保存在堆内 每条记录只占用块号、偏移、长度及过期时间 反序列化由调用方在锁外执行
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public final class InternalDataCacheOffHeap<K> {
+    private static final int MAX_SLAB_SIZE = 64 * 1024 * 1024;
+    private static final int MIN_SLAB_SIZE = 1024;
+    private static final int MAX_SEGMENTS = 16;
+    private static final long MIN_SEGMENT_CAPACITY = 4L * 1024 * 1024;
+
+    private final Segment<K>[] segments;
+    private final int mask;
+    private final BiConsumer<? super K, byte[]> evicted;
+
+    /**
+     * 按系统时间(毫秒)判断过期 回收的记录直接丢弃
+     *
+     * @param capacity 堆外总容量(字节)
+     */
+    public InternalDataCacheOffHeap(long capacity) {
+        this(capacity, System::currentTimeMillis, null);
+    }
+
+    /**
+     * 容量较小时只使用一个段 每段容量不少于 4MB 块的大小按段容量均分 不超过 64MB
+     *
+     * @param capacity 堆外总容量(字节)
+     * @param clock    当前时间 过期时间与其单位相同
+     * @param evicted  回收块时未过期记录的键及值 可为null
+     */
+    public InternalDataCacheOffHeap(long capacity, LongSupplier clock, BiConsumer<? super K, byte[]> evicted) {
+        capacity = Math.max(capacity, MIN_SLAB_SIZE);
+        int count = 1;
+        while (count < MAX_SEGMENTS && capacity / (count << 1) >= MIN_SEGMENT_CAPACITY) count <<= 1;
+        long segmentCapacity = (capacity + count - 1) / count;
+        int slabs = (int) Math.max(1, (segmentCapacity + MAX_SLAB_SIZE - 1) / MAX_SLAB_SIZE);
+        int slabSize = (int) Math.max(MIN_SLAB_SIZE, (segmentCapacity + slabs - 1) / slabs);
+
+        this.segments = newSegments(count);
+        for (int i = 0; i < count; i++) this.segments[i] = new Segment<>(slabs, slabSize, clock, evicted != null);
+        this.mask = count - 1;
+        this.evicted = evicted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> Segment<K>[] newSegments(int count) {
+        return (Segment<K>[]) new Segment<?>[count];
+    }
+
+    private Segment<K> segment(Object key) {
+        int h = key.hashCode();
+        return this.segments[(h ^ (h >>> 16)) & this.mask];
+    }
+
+    /**
+     * 写入 超过单个块大小的值不保存 写入时回收了块则在写入完成后通知其中未过期的记录
+     *
+     * @param key
+     * @param value
+     * @param expireAt 过期时间 Long.MAX_VALUE 表示不过期
+     * @return 是否已保存
+     */
+    public boolean put(K key, byte[] value, long expireAt) {
+        if (key == null || value == null) return false;
+        Segment<K> segment = this.segment(key);
+        boolean saved;
+        List<Map.Entry<K, byte[]>> recycled;
+        synchronized (segment) {
+            saved = segment.put(key, value, expireAt);
+            recycled = segment.recycled;
+            segment.recycled = null;
+        }
+        if (recycled != null) for (Map.Entry<K, byte[]> e : recycled) this.evicted.accept(e.getKey(), e.getValue());
+        return saved;
+    }
+
+    /**
+     * 取出并移除 用于将记录提升回堆内 不存在或已过期时返回null
+     *
+     * @param key
+     * @return
+     */
+    public Record take(K key) {
+        if (key == null) return null;
+        return this.segment(key).take(key);
+    }
+
+    /**
+     * 移除
+     *
+     * @param key
+     */
+    public void remove(K key) {
+        if (key == null) return;
+        this.segment(key).remove(key);
+    }
+
+    /**
+     * 移除键满足条件的记录
+     *
+     * @param predicate
+     */
+    public void removeIf(Predicate<? super K> predicate) {
+        if (predicate == null) return;
+        for (Segment<K> s : this.segments) s.removeIf(predicate);
+    }
+
+    /**
+     * 清空全部记录 已分配的直接内存保留复用
+     */
+    public void clear() {
+        for (Segment<K> s : this.segments) s.clear();
+    }
+
+    /**
+     * 记录数
+     *
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K> s : this.segments) size += s.size();
+        return size;
+    }
+
+    /**
+     * 有效记录占用的字节数
+     *
+     * @return
+     */
+    public long bytes() {
+        long bytes = 0;
+        for (Segment<K> s : this.segments) bytes += s.bytes();
+        return bytes;
+    }
+
+    /**
+     * 取出的记录 包括写入时指定的过期时间
+     */
+    public static final class Record {
+        private final byte[] value;
+        private final long expireAt;
+
+        private Record(byte[] value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        public byte[] value() {
+            return this.value;
+        }
+
+        public long expireAt() {
+            return this.expireAt;
+        }
+    }
+
+    /**
+     * 存储段 读写均在段的对象锁内进行
+     */
+    private static final class Segment<K> {
+        private final ByteBuffer[] slabs;
+        private final List<List<K>> slabKeys;
+        private final Map<K, Location> index = new HashMap<>();
+        private final int slabSize;
+        private final LongSupplier clock;
+        private final boolean collect;
+        private List<Map.Entry<K, byte[]>> recycled;
+        private int current = -1;
+        private long bytes = 0;
+
+        private Segment(int count, int slabSize, LongSupplier clock, boolean collect) {
+            this.slabSize = slabSize;
+            this.clock = clock;
+            this.collect = collect;
+            this.slabs = new ByteBuffer[count];
+            this.slabKeys = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) this.slabKeys.add(new ArrayList<>());
+        }
+
+        private synchronized boolean put(K key, byte[] value, long expireAt) {
+            this.remove(key);
+            if (value.length > this.slabSize) return false;
+
+            ByteBuffer slab = (this.current < 0) ? null : this.slabs[this.current];
+            if (slab == null || slab.remaining() < value.length) slab = this.next();
+
+            int offset = slab.position();
+            slab.put(value);
+            this.index.put(key, new Location(this.current, offset, value.length, expireAt));
+            this.slabKeys.get(this.current).add(key);
+            this.bytes += value.length;
+            return true;
+        }
+
+        private synchronized Record take(K key) {
+            Location l = this.index.remove(key);
+            if (l == null) return null;
+            this.bytes -= l.length;
+            if (l.expireAt <= this.clock.getAsLong()) return null;
+            return new Record(this.read(l), l.expireAt);
+        }
+
+        private byte[] read(Location l) {
+            byte[] value = new byte[l.length];
+            ByteBuffer view = this.slabs[l.slab].duplicate();
+            view.position(l.offset);
+            view.get(value);
+            return value;
+        }
+
+        private synchronized void remove(K key) {
+            Location l = this.index.remove(key);
+            if (l != null) this.bytes -= l.length;
+        }
+
+        private synchronized void removeIf(Predicate<? super K> predicate) {
+            for (Iterator<Map.Entry<K, Location>> it = this.index.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<K, Location> e = it.next();
+                if (!predicate.test(e.getKey())) continue;
+                this.bytes -= e.getValue().length;
+                it.remove();
+            }
+        }
+
+        private synchronized void clear() {
+            this.index.clear();
+            for (List<K> keys : this.slabKeys) keys.clear();
+            for (ByteBuffer slab : this.slabs) if (slab != null) slab.clear();
+            this.current = -1;
+            this.bytes = 0;
+        }
+
+        private synchronized int size() {
+            return this.index.size();
+        }
+
+        private synchronized long bytes() {
+            return this.bytes;
+        }
+
+        /**
+         * 切换到下一个块 块已使用过时回收其中的记录 需要通知时未过期的记录复制到 recycled
+         */
+        private ByteBuffer next() {
+            this.current = (this.current + 1) % this.slabs.length;
+            ByteBuffer slab = this.slabs[this.current];
+            if (slab == null) {
+                slab = ByteBuffer.allocateDirect(this.slabSize);
+                this.slabs[this.current] = slab;
+            } else {
+                List<K> keys = this.slabKeys.get(this.current);
+                long now = this.collect ? this.clock.getAsLong() : 0;
+                for (K k : keys) {
+                    Location l = this.index.get(k);
+                    if (l != null && l.slab == this.current) {
+                        this.index.remove(k);
+                        this.bytes -= l.length;
+                        if (this.collect && l.expireAt > now) {
+                            if (this.recycled == null) this.recycled = new ArrayList<>();
+                            this.recycled.add(new AbstractMap.SimpleImmutableEntry<>(k, this.read(l)));
+                        }
+                    }
+                }
+                keys.clear();
+                slab.clear();
+            }
+            return slab;
+        }
+    }
+
+    private static final class Location {
+        private final int slab;
+        private final int offset;
+        private final int length;
+        private final long expireAt;
+
+        private Location(int slab, int offset, int length, long expireAt) {
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package commons.box.app.internal;
+
+import commons.box.app.AppError;
+import commons.box.app.DataCacheStats;
+import commons.box.app.DataCacheStatsMXBean;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 缓存统计JMX实现 每次读取属性时生成新的统计快照
+ * <p>
+ * 只弱引用所属的缓存 注册不会阻止缓存被回收 缓存被回收后各项统计为0 不再使用时应调用 unregister 注销
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public final class InternalDataCacheStatsMXBean<T> implements DataCacheStatsMXBean {
+    private static final DataCacheStats EMPTY = new DataCacheStats(0, 0, 0, 0, 0, 0, new long[0]);
+
+    private final WeakReference<T> owner;
+    private final Function<T, DataCacheStats> stats;
+    private final ToLongFunction<T> size;
+
+    private InternalDataCacheStatsMXBean(T owner, Function<T, DataCacheStats> stats, ToLongFunction<T> size) {
+        this.owner = new WeakReference<>(owner);
+        this.stats = stats;
+        this.size = size;
+    }
+
+    /**
+     * 注册到平台 MBeanServer 名称为 commons.box:type=类型,name=名称 已存在同名注册时出错
+     *
+     * @param type
+     * @param name
+     * @param owner
+     * @param stats
+     * @param size
+     * @return
+     * @throws AppError
+     */
+    public static <T> ObjectName register(String type, String name, T owner, Function<T, DataCacheStats> stats, ToLongFunction<T> size) throws AppError {
+        ObjectName on = objectName(type, name);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new InternalDataCacheStatsMXBean<>(owner, stats, size), on);
+            return on;
+        } catch (InstanceAlreadyExistsException e) {
+            throw AppError.error("缓存统计 " + on + " 已注册", e);
+        } catch (JMException e) {
+            throw AppError.error("无法注册缓存统计 " + on, e);
+        }
+    }
+
+    /**
+     * 注销 未注册时返回false
+     *
+     * @param type
+     * @param name
+     * @return
+     * @throws AppError
+     */
+    public static boolean unregister(String type, String name) throws AppError {
+        ObjectName on = objectName(type, name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(on);
+            return true;
+        } catch (InstanceNotFoundException e) {
+            return false;
+        } catch (JMException e) {
+            throw AppError.error("无法注销缓存统计 " + on, e);
+        }
+    }
+
+    private static ObjectName objectName(String type, String name) throws AppError {
+        if (name == null) throw AppError.error("缓存统计 " + type + " 缺少名称");
+        try {
+            return new ObjectName("commons.box:type=" + type + ",name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw AppError.error("缓存统计名称无效 " + type + " " + name, e);
+        }
+    }
+
+    private DataCacheStats stats() {
+        T o = this.owner.get();
+        return (o != null) ? this.stats.apply(o) : EMPTY;
+    }
+
+    @Override
+    public long getHitCount() {
+        return this.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return this.stats().missCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return this.stats().hitRate();
+    }
+
+    @Override
+    public long getLoadSuccessCount() {
+        return this.stats().loadSuccessCount();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return this.stats().loadFailureCount();
+    }
+
+    @Override
+    public double getAverageLoadPenalty() {
+        return this.stats().averageLoadPenalty();
+    }
+
+    @Override
+    public long getLoadLatency99() {
+        return this.stats().loadLatency(0.99d);
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return this.stats().evictionCount();
+    }
+
+    @Override
+    public long getSize() {
+        T o = this.owner.get();
+        return (o != null) ? this.size.applyAsLong(o) : 0;
+    }
+}
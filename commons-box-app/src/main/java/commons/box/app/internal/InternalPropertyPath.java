@@ -0,0 +1,209 @@
+package commons.box.app.internal;
+
+import commons.box.app.AppBean;
+import commons.box.app.AppClass;
+import commons.box.app.AppError;
+import commons.box.app.AppLog;
+import commons.box.app.bean.BeanAccess;
+import commons.box.app.bean.ClassAccessProperty;
+import commons.box.app.bean.PropertyPath;
+import commons.box.util.Logs;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 预编译属性路径的实现
+ * <p>
+ * 每一级属性持有一个小的内联缓存(运行时类型 - 属性访问器) 超过容量后视为多态过多 直接通过 AppClass 查找
+ * <p>
+ * Map 及 MetaBean 类型的中间对象 以及 AppBean 设置了自定义对象访问时 仍通过 AppBean 对应的 BeanAccess 访问
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+@SuppressWarnings("unchecked")
+public class InternalPropertyPath implements PropertyPath {
+    private static final AppLog LOG = Logs.get(PropertyPath.class);
+    /**
+     * 每一级缓存的运行时类型数量
+     */
+    public static final int INLINE_CACHE_SIZE = 4;
+
+    protected final AppBean bean;
+    protected final boolean throwError;
+    protected final Class<?> root;
+    protected final String path;
+    protected final String[] segments;
+    protected final Segment[] chain;
+
+    public InternalPropertyPath(AppBean bean, boolean throwError, Class<?> root, String path) throws AppError {
+        if (bean == null) throw AppError.error("无法编译属性路径 缺少AppBean");
+        String[] ps = AppBean.split(path);
+        if (ps.length < 1) throw AppError.error("无法编译属性路径 路径为空");
+        for (String p : ps) if (p == null || p.isEmpty()) throw AppError.error("无法编译属性路径 [" + path + "] 包含空的属性名");
+
+        this.bean = bean;
+        this.throwError = throwError;
+        this.root = root;
+        this.path = path;
+        this.segments = ps;
+        this.chain = new Segment[ps.length];
+        for (int i = 0; i < ps.length; i++) this.chain[i] = new Segment(ps[i]);
+
+        this.prime();
+    }
+
+    /**
+     * 按声明类型预先解析属性链 无法确定的类型在运行时解析
+     */
+    protected void prime() {
+        Class<?> type = this.root;
+        for (Segment seg : this.chain) {
+            if (type == null || Map.class.isAssignableFrom(type) || type.isInterface()) return;
+            ClassAccessProperty<Object, Object> ap = (ClassAccessProperty<Object, Object>) AppClass.from(type).access().prop(seg.name);
+            if (ap == null) return;
+            seg.cache(type, ap);
+            type = ap.type();
+        }
+    }
+
+    @Override
+    public String name() {
+        return this.path;
+    }
+
+    @Override
+    public Class<?> root() {
+        return this.root;
+    }
+
+    @Override
+    public String[] segments() {
+        return this.segments.clone();
+    }
+
+    @Override
+    public <O> O get(Object bean) throws AppError {
+        if (this.throwError) {
+            if (bean == null) throw AppError.error("操作目标对象为空 无法操作");
+            return this.doGet(bean);
+        } else {
+            if (bean == null) return null;
+            try {
+                return this.doGet(bean);
+            } catch (Throwable e) {
+                LOG.debug(e.getMessage(), e);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void set(Object bean, Object value) throws AppError {
+        this.set(bean, value, true);
+    }
+
+    @Override
+    public void set(Object bean, Object value, boolean autocreate) throws AppError {
+        if (this.throwError) {
+            if (bean == null) throw AppError.error("操作目标对象为空 无法操作");
+            this.doSet(bean, value, autocreate);
+        } else {
+            if (bean == null) return;
+            try {
+                this.doSet(bean, value, autocreate);
+            } catch (Throwable e) {
+                LOG.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    protected <O> O doGet(Object bean) throws AppError {
+        Object pto = bean;
+        for (Segment seg : this.chain) {
+            pto = this.prop(seg, pto);
+            if (pto == null) return null;
+        }
+        return (O) pto;
+    }
+
+    protected void doSet(Object bean, Object value, boolean autocreate) throws AppError {
+        Object pto = bean;
+        int lget = this.chain.length - 1;
+        for (int i = 0; i < lget; i++) {
+            Segment seg = this.chain[i];
+            Object prevo = pto;
+            pto = this.prop(seg, prevo);
+
+            if (pto == null && autocreate) {
+                BeanAccess pbo = this.bean.from(prevo);
+                Class<?> ptt = pbo.type(prevo, seg.name);
+                pto = this.bean.fromType(ptt).inst(ptt);
+                if (pto != null) this.prop(seg, prevo, pto);
+            }
+
+            // 即使自动创建后仍然为空 则抛出异常
+            if (pto == null) throw AppError.error("类型 [" + bean.getClass() + "] 未能设置属性 " + this.path);
+        }
+
+        this.prop(this.chain[lget], pto, value);
+    }
+
+    protected Object prop(Segment seg, Object o) throws AppError {
+        BeanAccess ba = this.bean.from(o);
+        if (ba != InternalBeanObjectAccess.INSTANCE) return ba.prop(o, seg.name);
+        return seg.resolve(o.getClass()).get(o);
+    }
+
+    protected void prop(Segment seg, Object o, Object value) throws AppError {
+        BeanAccess ba = this.bean.from(o);
+        if (ba != InternalBeanObjectAccess.INSTANCE) ba.prop(o, seg.name, value);
+        else seg.resolve(o.getClass()).set(o, value);
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyPath{" + this.path + "}";
+    }
+
+    /**
+     * 路径中的一级属性 缓存使用写时复制的数组 并发下丢失的写入只会导致重复解析
+     */
+    protected static final class Segment {
+        private static final Entry[] EMPTY = new Entry[0];
+        private final String name;
+        private volatile Entry[] entries = EMPTY;
+
+        private Segment(String name) {
+            this.name = name;
+        }
+
+        private ClassAccessProperty<Object, Object> resolve(Class<?> type) throws AppError {
+            Entry[] es = this.entries;
+            for (Entry e : es) if (e.type == type) return e.property;
+
+            ClassAccessProperty<Object, Object> ap = (ClassAccessProperty<Object, Object>) AppClass.from(type).access().prop(this.name);
+            if (ap == null) throw AppError.error("未找到类 [" + type + "] 的属性 " + this.name);
+            if (es.length < INLINE_CACHE_SIZE) this.cache(type, ap);
+            return ap;
+        }
+
+        private void cache(Class<?> type, ClassAccessProperty<Object, Object> property) {
+            Entry[] es = this.entries;
+            for (Entry e : es) if (e.type == type) return;
+            Entry[] nes = Arrays.copyOf(es, es.length + 1);
+            nes[es.length] = new Entry(type, property);
+            this.entries = nes;
+        }
+    }
+
+    protected static final class Entry {
+        private final Class<?> type;
+        private final ClassAccessProperty<Object, Object> property;
+
+        private Entry(Class<?> type, ClassAccessProperty<Object, Object> property) {
+            this.type = type;
+            this.property = property;
+        }
+    }
+}
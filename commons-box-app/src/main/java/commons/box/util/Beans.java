@@ -4,8 +4,15 @@ import com.google.common.collect.Ordering;
 import commons.box.app.AppError;
 import commons.box.app.AppBean;
 import commons.box.app.AppClass;
+import commons.box.app.DataValidator;
+import commons.box.app.TypeConverter;
+import commons.box.app.bean.BeanCopier;
+import commons.box.app.bean.BeanMapper;
+import commons.box.app.bean.BeanValidator;
 import commons.box.app.bean.ClassAccess;
+import commons.box.app.bean.PropertyPath;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -80,6 +87,30 @@ public final class Beans {
     }
 
 
+    /**
+     * 按属性对列表升序排序 比较规则与 orderByProps 一致 每个元素的属性只读取一次 适用于大列表
+     *
+     * @param list
+     * @param props
+     * @param <T>
+     */
+    public static <T> void sortByProps(List<T> list, String... props) {
+        Orders.sortByProps(list, false, props);
+    }
+
+    /**
+     * 按属性对列表升序排序 parallel=true 时并行提取属性并排序
+     *
+     * @param list
+     * @param parallel
+     * @param props
+     * @param <T>
+     */
+    public static <T> void sortByProps(List<T> list, boolean parallel, String... props) {
+        Orders.sortByProps(list, parallel, props);
+    }
+
+
     /**
      * 按map排序的Builder
      *
@@ -110,6 +141,61 @@ public final class Beans {
         return Orders.OrderBuilder.build(type);
     }
 
+    /**
+     * 编译多级属性路径 用于对大量对象重复获取或设置同一属性路径
+     *
+     * @param root 根对象类型 可为空
+     * @param path 属性路径 多级属性使用.分隔
+     * @return
+     */
+    public static PropertyPath compile(Class<?> root, String path) throws AppError {
+        return bean().compile(root, path);
+    }
+
+    /**
+     * 生成对象复制器 按属性名匹配且类型可赋值的属性会被复制 返回的实例可重复使用
+     *
+     * @param sourceType
+     * @param targetType
+     * @return
+     */
+    public static <S, T> BeanCopier<S, T> copier(Class<S> sourceType, Class<T> targetType) throws AppError {
+        return bean().copier(sourceType, targetType);
+    }
+
+    /**
+     * 生成对象复制器 converters 以目标属性名为键
+     *
+     * @param sourceType
+     * @param targetType
+     * @param converters
+     * @return
+     */
+    public static <S, T> BeanCopier<S, T> copier(Class<S> sourceType, Class<T> targetType, Map<String, TypeConverter<?, ?>> converters) throws AppError {
+        return bean().copier(sourceType, targetType, converters);
+    }
+
+    /**
+     * 生成对象与Map之间的转换器
+     *
+     * @param type
+     * @return
+     */
+    public static <T> BeanMapper<T> mapper(Class<T> type) throws AppError {
+        return bean().mapper(type);
+    }
+
+    /**
+     * 生成对象验证器 validators 以属性名为键
+     *
+     * @param type
+     * @param validators
+     * @return
+     */
+    public static <T> BeanValidator<T> validator(Class<T> type, Map<String, List<DataValidator<?>>> validators) throws AppError {
+        return bean().validator(type, validators);
+    }
+
     /**
      * 获取属性
      *
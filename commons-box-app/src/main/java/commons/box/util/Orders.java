@@ -5,8 +5,12 @@ import com.google.common.primitives.*;
 import commons.box.app.AppBean;
 import commons.box.app.AppClass;
 import commons.box.app.bean.ClassAccess;
+import commons.box.app.bean.PropertyPath;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
 
 import static commons.box.util.Orders.DefaultOrder.DEFAULT;
 
@@ -161,6 +165,26 @@ public final class Orders {
         return new ChainOrder(orders);
     }
 
+    /**
+     * 按属性对列表升序排序 比较规则与 BeanOrder 一致 但每个元素的属性只读取一次
+     * <p>
+     * 先将各属性值提取为列(数值属性使用 long[]/double[]) 再对下标排序 最后按结果回写列表 排序是稳定的
+     *
+     * @param list     要排序的列表
+     * @param parallel 是否并行提取属性及排序 适用于大列表
+     * @param props    属性 支持内联属性
+     * @param <T>
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void sortByProps(List<T> list, boolean parallel, String... props) {
+        if (list == null || list.size() < 2) return;
+        if (Collects.isEmpty(props)) {
+            list.sort((Comparator<T>) DEFAULT);
+            return;
+        }
+        new KeySort<>(list, parallel, props).sort();
+    }
+
     /**
      * 判断空值的排序器 本比较器可用于中间级别的比较,当值不为空时返回0,在ChainOrder中可以继续下一级判断
      */
@@ -356,6 +380,159 @@ public final class Orders {
     }
 
 
+    /**
+     * 基于预提取排序键的排序 空对象及空值认为是最小值
+     *
+     * @param <T>
+     */
+    private static final class KeySort<T> {
+        private static final int INSERTION_THRESHOLD = 7;
+        private static final int PARALLEL_THRESHOLD = 8192;
+
+        private final List<T> list;
+        private final boolean parallel;
+        private final Object[] items;
+        private final Object[] keys;
+        private final int nulls;
+        private final int size;
+
+        @SuppressWarnings("unchecked")
+        private KeySort(List<T> list, boolean parallel, String... props) {
+            this.list = list;
+            this.parallel = parallel;
+
+            // 空对象排在最前 不参与排序
+            Object[] all = list.toArray();
+            this.items = new Object[all.length];
+            int head = 0;
+            for (Object o : all) if (o == null) head++;
+            this.nulls = head;
+            for (Object o : all) if (o != null) this.items[head++] = o;
+            this.size = all.length - this.nulls;
+
+            List<Object> ks = new ArrayList<>();
+            AppBean bean = AppBean.inst(false);
+            for (String p : props) {
+                if (Strs.isEmpty(p)) continue;
+                ks.add(this.column(bean.compile(p)));
+            }
+            this.keys = ks.toArray();
+        }
+
+        private Object column(PropertyPath path) {
+            final Object[] vs = new Object[this.size];
+            IntStream is = IntStream.range(0, this.size);
+            if (this.parallel) is = is.parallel();
+            is.forEach(i -> vs[i] = path.get(this.items[this.nulls + i]));
+
+            boolean longs = true, doubles = true;
+            for (Object v : vs) {
+                if (!(v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte)) longs = false;
+                if (!(v instanceof Double || v instanceof Float)) doubles = false;
+                if (!longs && !doubles) return vs;
+            }
+
+            if (longs) {
+                long[] ls = new long[vs.length];
+                for (int i = 0; i < vs.length; i++) ls[i] = ((Number) vs[i]).longValue();
+                return ls;
+            } else {
+                double[] ds = new double[vs.length];
+                for (int i = 0; i < vs.length; i++) ds[i] = ((Number) vs[i]).doubleValue();
+                return ds;
+            }
+        }
+
+        private int compare(int a, int b) {
+            for (Object k : this.keys) {
+                int retval;
+                if (k instanceof long[]) retval = Long.compare(((long[]) k)[a], ((long[]) k)[b]);
+                else if (k instanceof double[]) retval = Double.compare(((double[]) k)[a], ((double[]) k)[b]);
+                else retval = DEFAULT.compare(((Object[]) k)[a], ((Object[]) k)[b]);
+                if (retval != 0) return retval;
+            }
+            return 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void sort() {
+            int[] idx = new int[this.size];
+            for (int i = 0; i < idx.length; i++) idx[i] = i;
+            int[] tmp = idx.clone();
+            if (this.parallel && idx.length > PARALLEL_THRESHOLD) ForkJoinPool.commonPool().invoke(new MergeTask(tmp, idx, 0, idx.length));
+            else this.mergeSort(tmp, idx, 0, idx.length);
+
+            ListIterator<T> it = this.list.listIterator();
+            for (int i = 0; i < this.nulls; i++) {
+                it.next();
+                it.set(null);
+            }
+            for (int i : idx) {
+                it.next();
+                it.set((T) this.items[this.nulls + i]);
+            }
+        }
+
+        /**
+         * 对下标做稳定的归并排序 不装箱 调用时 src 与 dst 在 [lo, hi) 内的内容相同 结果写入 dst
+         */
+        private void mergeSort(int[] src, int[] dst, int lo, int hi) {
+            if (hi - lo <= INSERTION_THRESHOLD) {
+                for (int i = lo + 1; i < hi; i++) {
+                    int v = dst[i], j = i;
+                    for (; j > lo && this.compare(dst[j - 1], v) > 0; j--) dst[j] = dst[j - 1];
+                    dst[j] = v;
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            this.mergeSort(dst, src, lo, mid);
+            this.mergeSort(dst, src, mid, hi);
+            this.merge(src, dst, lo, mid, hi);
+        }
+
+        private void merge(int[] src, int[] dst, int lo, int mid, int hi) {
+            if (this.compare(src[mid - 1], src[mid]) <= 0) {
+                System.arraycopy(src, lo, dst, lo, hi - lo);
+                return;
+            }
+            for (int i = lo, p = lo, q = mid; i < hi; i++) {
+                if (q >= hi || (p < mid && this.compare(src[p], src[q]) <= 0)) dst[i] = src[p++];
+                else dst[i] = src[q++];
+            }
+        }
+
+        /**
+         * 并行归并 两半分别排序后合并 区间较小时转为顺序排序
+         */
+        private final class MergeTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+            private final int[] src;
+            private final int[] dst;
+            private final int lo;
+            private final int hi;
+
+            private MergeTask(int[] src, int[] dst, int lo, int hi) {
+                this.src = src;
+                this.dst = dst;
+                this.lo = lo;
+                this.hi = hi;
+            }
+
+            @Override
+            protected void compute() {
+                if (this.hi - this.lo <= PARALLEL_THRESHOLD) {
+                    mergeSort(this.src, this.dst, this.lo, this.hi);
+                    return;
+                }
+                int mid = (this.lo + this.hi) >>> 1;
+                invokeAll(new MergeTask(this.dst, this.src, this.lo, mid), new MergeTask(this.dst, this.src, mid, this.hi));
+                merge(this.src, this.dst, this.lo, mid, this.hi);
+            }
+        }
+    }
+
+
     /**
      * 排序的Builder
      *
@@ -426,7 +603,7 @@ public final class Orders {
          */
         public OrderBuilder<T> comp(Comparator<?>... comparators) {
             this.tmpOrder = null;
-            if (comparators != null) for (Comparator<?> c : comps) if (c != null) this.comps.add(c);
+            if (comparators != null) for (Comparator<?> c : comparators) if (c != null) this.comps.add(c);
             return this;
         }
 
@@ -477,5 +654,88 @@ public final class Orders {
             Collections.sort(c, asc ? ot : ot.reverse());
             return this;
         }
+
+        /**
+         * 工具方法 并行排序 适用于大列表 排序是稳定的
+         *
+         * @param c
+         * @return
+         */
+        public OrderBuilder<T> parallelSort(List<T> c) {
+            return parallelSort(c, true);
+        }
+
+        /**
+         * 工具方法 并行排序 基于 Arrays.parallelSort(fork-join 归并排序) 排序后回写列表
+         *
+         * @param c
+         * @param asc 声明是升序还是降序
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        public OrderBuilder<T> parallelSort(List<T> c, boolean asc) {
+            if (c == null || c.isEmpty()) return this;
+
+            Ordering<T> ot = this.build();
+            if (ot == null) ot = (Ordering<T>) DefaultOrder.DEFAULT;
+            T[] items = (T[]) c.toArray();
+            Arrays.parallelSort(items, asc ? ot : ot.reverse());
+
+            ListIterator<T> it = c.listIterator();
+            for (T item : items) {
+                it.next();
+                it.set(item);
+            }
+            return this;
+        }
+
+        /**
+         * 返回排序后的前k个元素 不对全部元素排序
+         *
+         * @param c
+         * @param k
+         * @return
+         */
+        public List<T> topK(Iterable<T> c, int k) {
+            return topK(c, k, true);
+        }
+
+        /**
+         * 返回排序后的前k个元素 使用容量为k的堆 堆顶为当前保留元素中最靠后的一个 时间复杂度 O(n log k)
+         *
+         * @param c
+         * @param k
+         * @param asc 声明是升序还是降序
+         * @return 按顺序排列的前k个元素
+         */
+        @SuppressWarnings("unchecked")
+        public List<T> topK(Iterable<T> c, int k, boolean asc) {
+            if (c == null || k < 1) return new ArrayList<>();
+
+            Ordering<T> ot = this.build();
+            if (ot == null) ot = (Ordering<T>) DefaultOrder.DEFAULT;
+            Ordering<T> order = asc ? ot : ot.reverse();
+
+            PriorityQueue<T> heap = new PriorityQueue<>(Math.min(k, 1024), order.reverse());
+            int nulls = 0; // 堆不允许空值 空值单独计数 最后按比较器确定其位置
+            for (T t : c) {
+                if (t == null) nulls++;
+                else if (heap.size() < k) heap.offer(t);
+                else if (order.compare(t, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.offer(t);
+                }
+            }
+
+            List<T> list = new ArrayList<>(heap);
+            list.sort(order);
+            if (nulls > 0) {
+                List<T> ns = Collections.nCopies(nulls, null);
+                if (list.isEmpty() || order.compare(null, list.get(0)) <= 0) list.addAll(0, ns);
+                else list.addAll(ns);
+                if (list.size() > k) list = new ArrayList<>(list.subList(0, k));
+            }
+            return list;
+        }
     }
 }
@@ -1,5 +1,6 @@
 package commons.box.util;
 
+import com.google.common.primitives.Primitives;
 import commons.box.app.AppError;
 import commons.box.app.AppLog;
 import commons.box.app.internal.InternalSpringHelper;
@@ -82,10 +83,9 @@ public final class Types {
 
         if (ssize != apsize) return false;
 
-        if (ssize == 0) return true;
-        else for (int i = 0; i < ssize; i++) if (isType(sources[i], targets[i])) return true;
+        for (int i = 0; i < ssize; i++) if (!isType(wrap(sources[i]), wrap(targets[i]))) return false;
 
-        return false;
+        return true;
     }
 
     @SuppressWarnings("Duplicates")
@@ -98,13 +98,22 @@ public final class Types {
 
         if (ssize != apsize) return false;
 
-        if (ssize == 0) return true;
-        else for (int i = 0; i < ssize; i++) if (isType(sources[i], targets[i])) return true;
+        for (int i = 0; i < ssize; i++) if (!isType(wrap(sources[i]), targets[i])) return false;
 
-        return false;
+        return true;
     }
 
 
+    /**
+     * 基本类型转换为对应的包装类型 参数按值传递时基本类型参数接受对应的包装类型值
+     *
+     * @param type
+     * @return
+     */
+    private static Class<?> wrap(Class<?> type) {
+        return (type != null && type.isPrimitive()) ? Primitives.wrap(type) : type;
+    }
+
     /**
      * 可编辑的类型
      *
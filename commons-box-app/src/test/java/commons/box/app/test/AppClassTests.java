@@ -0,0 +1,524 @@
+package commons.box.app.test;
+
+import commons.box.app.AppClass;
+import commons.box.app.AppError;
+import commons.box.app.DataEntry;
+import commons.box.app.DataValidator;
+import commons.box.app.annotation.Label;
+import commons.box.app.annotation.Labels;
+import commons.box.app.bean.ClassAccess;
+import commons.box.app.bean.ClassAccessAnnotation;
+import commons.box.app.bean.ClassAccessField;
+import commons.box.app.bean.ClassAccessMethod;
+import commons.box.app.bean.ClassAccessProperty;
+import commons.box.app.internal.InternalClassAccess;
+import commons.box.app.internal.InternalClassAccessIndex;
+import commons.box.app.internal.InternalClassAccessProperty;
+import commons.box.util.Types;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.beans.PropertyDescriptor;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.lang.annotation.Repeatable;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public class AppClassTests {
+    public static class Item {
+        private int age;
+        private String name;
+
+        public Item() {
+        }
+
+        public Item(String name) {
+            this.name = name;
+        }
+
+        public Item(Integer age) {
+            this.age = age;
+        }
+
+        public String hello(String s) {
+            return "s:" + s;
+        }
+
+        public String hello(Integer i) {
+            return "i:" + i;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @Test
+    @DisplayName("测试默认访问策略")
+    public void testDefaultStrategy() {
+        // 未设置 app.asm 及 app.access 时使用反射
+        if (System.getProperty(AppClass.ASM_ENABLE) == null && System.getProperty(AppClass.ACCESS_STRATEGY) == null)
+            assertEquals(AppClass.AccessStrategy.REFLECT, AppClass.strategy());
+    }
+
+    @Test
+    @DisplayName("测试静态内部类使用指定策略")
+    public void testNestedStrategy() {
+        assertEquals(AppClass.AccessStrategy.HANDLE, AppClass.from(AppClass.AccessStrategy.HANDLE, Item.class).access().strategy());
+        Runnable anonymous = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        assertEquals(AppClass.AccessStrategy.REFLECT, AppClass.from(AppClass.AccessStrategy.HANDLE, anonymous.getClass()).access().strategy());
+    }
+
+    @Test
+    @DisplayName("测试基于索引的访问")
+    public void testIndexAccess() throws Throwable {
+        InternalClassAccess<Item> ca = AppClass.from(Item.class).access();
+        // 只实现按名称访问的 ClassAccess 使用默认的索引方法
+        ClassAccess<Item> da = new NamedAccess<>(ca);
+        for (ClassAccess<Item> a : Arrays.<ClassAccess<Item>>asList(ca, da)) {
+            Item item = new Item();
+            int age = a.propIndex("age");
+            assertEquals(ca.propIndex("age"), age);
+            assertEquals(-1, a.propIndex("none"));
+            a.set(item, age, 5);
+            assertEquals(Integer.valueOf(5), a.get(item, age));
+
+            int hello = a.methodIndex("hello", Integer.class);
+            assertEquals(ca.methodIndex("hello", Integer.class), hello);
+            assertEquals("i:2", a.invoke(item, hello, 2));
+            assertThrows(AppError.class, () -> a.get(item, 100));
+        }
+    }
+
+    @Test
+    @DisplayName("测试延迟扫描类信息")
+    public void testLazy() {
+        for (boolean lazy : new boolean[]{true, false}) {
+            AtomicInteger scans = new AtomicInteger();
+            InternalClassAccess<Item> ca = new InternalClassAccess<Item>(null, Item.class, AppClass.AccessStrategy.REFLECT, lazy) {
+                @Override
+                protected <P> InternalClassAccessProperty<Item, P> newAccessProperty(String pname, Class<P> ptype, PropertyDescriptor pd, Field field, Method getter, Method setter) {
+                    scans.incrementAndGet();
+                    return super.newAccessProperty(pname, ptype, pd, field, getter, setter);
+                }
+            };
+            // 延迟模式下构造时不扫描属性 首次使用时扫描一次
+            assertEquals(lazy ? 0 : 3, scans.get());
+            assertNotNull(ca.prop("age"));
+            assertEquals(3, scans.get());
+            assertTrue(ca.has("name"));
+            assertEquals(3, scans.get());
+        }
+    }
+
+    @Labels({@Label("a"), @Label("b")})
+    public static class Labeled {
+        @Label("c")
+        public String name;
+    }
+
+    @Test
+    @DisplayName("测试注解索引")
+    public void testAnnotations() {
+        // @Labels 中的注解按 Label 类型索引 Label 本身不是可重复注解
+        ClassAccess<Labeled> ca = AppClass.from(Labeled.class).access();
+        assertEquals(2, ca.accessAnnotation().annotations(Label.class).size());
+        assertNotNull(ca.accessAnnotation().annotation(Labels.class));
+        assertEquals("c", ca.field("name").accessAnno().annotation(Label.class).value()[0]);
+        assertNull(Label.class.getAnnotation(Repeatable.class));
+    }
+
+    @Test
+    @DisplayName("测试重载方法及构造方法解析")
+    public void testResolve() throws Throwable {
+        for (AppClass.AccessStrategy as : AppClass.AccessStrategy.values()) {
+            InternalClassAccess<Item> ca = AppClass.from(as, Item.class).access();
+            for (int r = 0; r < 3; r++) {
+                assertEquals("a", ca.instance("a").getName());
+                assertEquals(3, ca.instance(3).getAge());
+                assertEquals("s:x", ca.invoke(new Item(), "hello", "x"));
+                assertEquals("i:1", ca.invoke(new Item(), "hello", 1));
+                assertNull(ca.method("hello", Long.class));
+            }
+            assertThrows(AppError.class, () -> ca.instance(1L));
+        }
+    }
+
+    @Test
+    @DisplayName("测试重载解析缓存")
+    public void testResolveCache() throws Throwable {
+        class Access<T> extends InternalClassAccess<T> {
+            Access(Class<T> type) {
+                super(null, type, AppClass.AccessStrategy.REFLECT);
+            }
+
+            int resolved() {
+                return this.resolvedMethods.size();
+            }
+        }
+
+        // JDK类的访问不缓存其类加载器不可见的参数类型
+        Access<StringBuilder> ca = new Access<>(StringBuilder.class);
+        StringBuilder sb = new StringBuilder();
+        ca.invoke(sb, "append", new Item("a"));
+        assertEquals(0, ca.resolved());
+        ca.invoke(sb, "append", "b");
+        assertEquals(1, ca.resolved());
+
+        // 缓存有容量上限
+        for (Class<?> base : new Class<?>[]{String.class, Integer.class}) {
+            Class<?> t = base;
+            for (int i = 0; i < 150; i++, t = Array.newInstance(t, 0).getClass()) ca.method("append", t);
+        }
+        assertTrue(ca.resolved() <= 256);
+    }
+
+    @Test
+    @DisplayName("测试参数类型匹配")
+    public void testTypesMatch() {
+        // 每个位置都需要匹配 基本类型与包装类型互相匹配 null 匹配任意类型
+        assertTrue(Types.isTypesMatch(new Class<?>[]{Map.class, String.class}, new Class<?>[]{HashMap.class, String.class}));
+        assertFalse(Types.isTypesMatch(new Class<?>[]{Map.class, String.class}, new Class<?>[]{HashMap.class, Integer.class}));
+        assertTrue(Types.isTypesMatch(new Class<?>[]{int.class, Object.class}, new Class<?>[]{Integer.class, null}));
+        assertTrue(Types.isTypesMatch(new Class<?>[]{Integer.class}, new Class<?>[]{int.class}));
+        assertFalse(Types.isTypesMatch(new Class<?>[]{int.class}, new Class<?>[]{Long.class}));
+        assertFalse(Types.isTypesMatch(new Class<?>[]{String.class}, new Class<?>[0]));
+        assertTrue(Types.isTypesMatch(null, new Class<?>[0]));
+
+        assertTrue(Types.isTypesMatch(new Class<?>[]{int.class, String.class}, new Object[]{1, null}));
+        assertFalse(Types.isTypesMatch(new Class<?>[]{int.class, String.class}, new Object[]{1, 2}));
+        assertFalse(Types.isTypesMatch(new Class<?>[]{String.class, String.class}, new Object[]{"a", 2}));
+    }
+
+    @Test
+    @DisplayName("测试基本类型属性访问")
+    public void testPrimitiveProperty() {
+        for (AppClass.AccessStrategy as : AppClass.AccessStrategy.values()) {
+            ClassAccessProperty<Item, Integer> age = AppClass.from(as, Item.class).access().prop("age");
+            Item item = new Item();
+            age.setInt(item, 7);
+            assertEquals(7, age.getInt(item));
+            assertEquals(7L, age.getLong(item));
+            assertEquals(7D, age.getDouble(item));
+            // 窄化写入使用装箱转换
+            age.setLong(item, 9L);
+            assertEquals(9, item.getAge());
+            age.setDouble(item, 11D);
+            assertEquals(11, item.getAge());
+        }
+
+        // 只实现 get/set 的属性使用默认的装箱访问
+        ClassAccessProperty<Item, Integer> age = AppClass.from(Item.class).access().prop("age");
+        ClassAccessProperty<Item, Integer> boxed = new BoxedProperty<>(age);
+        Item item = new Item();
+        boxed.setLong(item, 5L);
+        assertEquals(5, boxed.getInt(item));
+        assertEquals(5D, boxed.getDouble(item));
+        assertTrue(boxed.getBoolean(item));
+    }
+
+    @Test
+    @DisplayName("测试类信息索引指纹")
+    public void testIndexFingerprint() throws Exception {
+        File file = File.createTempFile("app-index", ".idx");
+        try {
+            // 旧版本类的索引 只有一个属性 指纹与当前类不一致
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+                out.writeInt(0x43424958);
+                out.writeInt(3);
+                out.writeInt(1);
+                out.writeUTF(Item.class.getName());
+                out.writeUTF("stale");
+                out.writeInt(1);
+                out.writeShort(10);
+                for (String col : new String[]{"age", "int", Item.class.getName(), "getAge", "", "", "", "", "", ""}) out.writeUTF(col);
+                out.writeInt(-1);
+                out.writeInt(-1);
+            }
+            InternalClassAccessIndex index = InternalClassAccessIndex.open(file);
+            assertNull(index.properties(Item.class));
+
+            index.properties(Item.class, Collections.singletonList(new InternalClassAccessIndex.Property("age", int.class, Item.class.getMethod("getAge"), null, null)));
+            index.save();
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+            assertNotNull(InternalClassAccessIndex.open(file).properties(Item.class));
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    /**
+     * 只实现按名称访问的方法
+     */
+    private static final class NamedAccess<T> implements ClassAccess<T> {
+        private final ClassAccess<T> access;
+
+        private NamedAccess(ClassAccess<T> access) {
+            this.access = access;
+        }
+
+        @Override
+        public ClassAccessAnnotation accessAnnotation() {
+            return this.access.accessAnnotation();
+        }
+
+        @Override
+        public Map<String, ClassAccessField<T, ?>> accessFields() {
+            return this.access.accessFields();
+        }
+
+        @Override
+        public Map<String, ClassAccessMethod<T, ?>[]> accessMethods() {
+            return this.access.accessMethods();
+        }
+
+        @Override
+        public Map<String, ClassAccessProperty<T, ?>> accessProperties() {
+            return this.access.accessProperties();
+        }
+
+        @Override
+        public boolean canRead() {
+            return this.access.canRead();
+        }
+
+        @Override
+        public String name() {
+            return this.access.name();
+        }
+
+        @Override
+        public Class<T> type() {
+            return this.access.type();
+        }
+
+        @Override
+        public T instance(Object... parameters) throws AppError {
+            return this.access.instance(parameters);
+        }
+
+        @Override
+        public <F> ClassAccessField<T, F> field(String name) {
+            return this.access.field(name);
+        }
+
+        @Override
+        public <M> ClassAccessMethod<T, M> method(String name, Class<?>... parameterTypes) {
+            return this.access.method(name, parameterTypes);
+        }
+
+        @Override
+        public <P> ClassAccessProperty<T, P> prop(String name) {
+            return this.access.prop(name);
+        }
+
+        @Override
+        public boolean has(String property) {
+            return this.access.has(property);
+        }
+
+        @Override
+        public boolean hasField(String field) {
+            return this.access.hasField(field);
+        }
+
+        @Override
+        public boolean hasMethod(String methodName, Class<?>... parameterTypes) {
+            return this.access.hasMethod(methodName, parameterTypes);
+        }
+
+        @Override
+        public <F> F field(T object, String fieldName) throws AppError {
+            return this.access.field(object, fieldName);
+        }
+
+        @Override
+        public <F> void field(T object, String fieldName, F value) throws AppError {
+            this.access.field(object, fieldName, value);
+        }
+
+        @Override
+        public <M> M invoke(T object, String name, Object... parameters) throws Throwable {
+            return this.access.invoke(object, name, parameters);
+        }
+
+        @Override
+        public <M> M invokeByTypes(T object, String name, Class<?>[] parameterTypes, Object... parameters) throws Throwable {
+            return this.access.invokeByTypes(object, name, parameterTypes, parameters);
+        }
+
+        @Override
+        public Set<String> propNames() {
+            return this.access.propNames();
+        }
+
+        @Override
+        public <P> P get(T object, String property) throws AppError {
+            return this.access.get(object, property);
+        }
+
+        @Override
+        public <P> void set(T object, String property, P value) throws AppError {
+            this.access.set(object, property, value);
+        }
+    }
+
+    /**
+     * 只实现按对象访问的属性
+     */
+    private static final class BoxedProperty<C, P> implements ClassAccessProperty<C, P> {
+        private final ClassAccessProperty<C, P> property;
+
+        private BoxedProperty(ClassAccessProperty<C, P> property) {
+            this.property = property;
+        }
+
+        @Override
+        public ClassAccess<C> parent() {
+            return this.property.parent();
+        }
+
+        @Override
+        public ClassAccessAnnotation accessAnno() {
+            return this.property.accessAnno();
+        }
+
+        @Override
+        public ClassAccessField<C, P> accessField() {
+            return this.property.accessField();
+        }
+
+        @Override
+        public ClassAccessMethod<C, P> accessGetter() {
+            return this.property.accessGetter();
+        }
+
+        @Override
+        public ClassAccessMethod<C, ?> accessSetter() {
+            return this.property.accessSetter();
+        }
+
+        @Override
+        public Class<P> type() {
+            return this.property.type();
+        }
+
+        @Override
+        public boolean canRead() {
+            return this.property.canRead();
+        }
+
+        @Override
+        public boolean canWrite() {
+            return this.property.canWrite();
+        }
+
+        @Override
+        public P get(C object) throws AppError {
+            return this.property.get(object);
+        }
+
+        @Override
+        public void set(C object, P value) throws AppError {
+            this.property.set(object, value);
+        }
+
+        @Override
+        public List<DataValidator<?>> getValidators() {
+            return this.property.getValidators();
+        }
+
+        @Override
+        public String name() {
+            return this.property.name();
+        }
+    }
+
+    @Test
+    @DisplayName("测试类加载器卸载")
+    public void testUnload() throws Exception {
+        // 各访问策略都缓存了另一个类加载器中的类 加载器不再使用后仍可回收
+        WeakReference<ClassLoader> ref = isolated();
+        for (int i = 0; i < 100 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(ref.get());
+    }
+
+    private static WeakReference<ClassLoader> isolated() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = DataEntry.class.getResourceAsStream("DataEntry.class")) {
+            byte[] buf = new byte[4096];
+            for (int n; (n = in.read(buf)) > 0; ) bytes.write(buf, 0, n);
+        }
+        Isolated loader = new Isolated(AppClassTests.class.getClassLoader());
+        Class<?> type = loader.define(DataEntry.class.getName(), bytes.toByteArray());
+        assertNotSame(DataEntry.class, type);
+
+        Object entry = type.getConstructor(Object.class, Object.class).newInstance("k", "v");
+        for (AppClass.AccessStrategy s : AppClass.AccessStrategy.values()) {
+            ClassAccess<?> ca = AppClass.from(s, type).access();
+            assertEquals("k", ca.prop("key").get(cast(entry)));
+            assertNotNull(ca.accessAnnotation());
+        }
+        return new WeakReference<>(loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object o) {
+        return (T) o;
+    }
+
+    private static final class Isolated extends ClassLoader {
+        private Isolated(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return this.defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
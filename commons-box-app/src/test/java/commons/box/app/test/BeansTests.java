@@ -0,0 +1,336 @@
+package commons.box.app.test;
+
+import commons.box.app.AppBean;
+import commons.box.app.AppClass;
+import commons.box.app.AppError;
+import commons.box.app.DataValidator;
+import commons.box.app.bean.BeanCopier;
+import commons.box.app.bean.BeanMapper;
+import commons.box.app.bean.BeanObjectAccess;
+import commons.box.app.bean.BeanValidator;
+import commons.box.app.bean.ClassAccessProjection;
+import commons.box.app.bean.PropertyPath;
+import commons.box.app.internal.InternalBeanObjectAccess;
+import commons.box.util.Beans;
+import commons.box.util.Orders;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public class BeansTests {
+    public static class Narrow {
+        private int age;
+        private float score;
+        private Integer count;
+        private short level;
+        private char code;
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public float getScore() {
+            return score;
+        }
+
+        public void setScore(float score) {
+            this.score = score;
+        }
+
+        public Integer getCount() {
+            return count;
+        }
+
+        public void setCount(Integer count) {
+            this.count = count;
+        }
+
+        public short getLevel() {
+            return level;
+        }
+
+        public void setLevel(short level) {
+            this.level = level;
+        }
+
+        public char getCode() {
+            return code;
+        }
+
+        public void setCode(char code) {
+            this.code = code;
+        }
+    }
+
+    public static class Wide {
+        private long age;
+        private double score;
+        private Long count;
+        private int level;
+        private long code;
+
+        public long getAge() {
+            return age;
+        }
+
+        public void setAge(long age) {
+            this.age = age;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public void setScore(double score) {
+            this.score = score;
+        }
+
+        public Long getCount() {
+            return count;
+        }
+
+        public void setCount(Long count) {
+            this.count = count;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public long getCode() {
+            return code;
+        }
+
+        public void setCode(long code) {
+            this.code = code;
+        }
+    }
+
+    public static class Person {
+        private String name;
+        private int age;
+        private Person parent;
+
+        public Person() {
+        }
+
+        public Person(String name, int age) {
+            this.name = name;
+            this.age = age;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Person getParent() {
+            return parent;
+        }
+
+        public void setParent(Person parent) {
+            this.parent = parent;
+        }
+    }
+
+    @Test
+    @DisplayName("测试属性路径")
+    public void testPropertyPath() {
+        Person p = new Person();
+        PropertyPath path = AppBean.newinst(true).compile(Person.class, "parent.name");
+        path.set(p, "a");
+        assertEquals("a", p.getParent().getName());
+        assertEquals("a", path.get(p));
+
+        // 自定义的对象访问不应被属性路径绕过
+        AppBean bean = AppBean.newinst(true);
+        bean.setBeanObjectAccess((BeanObjectAccess) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{BeanObjectAccess.class}, (proxy, method, args) -> {
+            if ("prop".equals(method.getName()) && args.length == 2) return "custom";
+            return method.invoke(InternalBeanObjectAccess.INSTANCE, args);
+        }));
+        assertEquals("custom", bean.compile(Person.class, "name").get(p));
+    }
+
+    @Test
+    @DisplayName("测试对象复制及Map转换")
+    public void testCopierAndMapper() {
+        Person parent = new Person();
+        parent.setName("p");
+        Person p = new Person();
+        p.setName("a");
+        p.setParent(parent);
+
+        BeanCopier<Person, Person> copier = AppBean.newinst(true).copier(Person.class, Person.class);
+        Person c = copier.copy(p);
+        assertEquals("a", c.getName());
+        assertSame(parent, c.getParent());
+
+        BeanMapper<Person> mapper = AppBean.newinst(true).mapper(Person.class);
+        Map<String, Object> map = mapper.toMap(p);
+        assertEquals("a", map.get("name"));
+        assertEquals(3, map.size());
+        map.put("name", null);
+        Person m = mapper.fromMap(map, c);
+        assertNull(m.getName());
+        assertSame(parent, m.getParent());
+
+        // 基本类型不同时按拓宽转换复制 不能拓宽时创建复制器出错
+        Narrow narrow = new Narrow();
+        narrow.setAge(3);
+        narrow.setScore(1.5F);
+        narrow.setCount(7);
+        narrow.setLevel((short) 2);
+        narrow.setCode('A');
+        BeanCopier<Narrow, Wide> widen = AppBean.newinst(true).copier(Narrow.class, Wide.class);
+        assertEquals(5, widen.props().length);
+        Wide wide = widen.copy(narrow);
+        assertEquals(3L, wide.getAge());
+        assertEquals(1.5D, wide.getScore());
+        assertEquals(Long.valueOf(7), wide.getCount());
+        assertEquals(2, wide.getLevel());
+        assertEquals('A', wide.getCode());
+        narrow.setCount(null);
+        assertNull(widen.copy(narrow).getCount());
+        assertThrows(AppError.class, () -> AppBean.newinst(true).copier(Wide.class, Narrow.class));
+    }
+
+    @Test
+    @DisplayName("测试对象验证器")
+    public void testValidator() {
+        DataValidator<String> required = v -> {
+            if (v == null) throw AppError.error("不能为空");
+        };
+        Map<String, List<DataValidator<?>>> rules = new HashMap<>();
+        rules.put("name", Collections.singletonList(required));
+        BeanValidator<Person> validator = AppBean.newinst(true).validator(Person.class, rules);
+        assertEquals(Collections.singletonList("name"), Arrays.asList(validator.props()));
+
+        Person ok = new Person();
+        ok.setName("a");
+        Person bad = new Person();
+        assertTrue(validator.check(ok).isEmpty());
+        assertEquals(1, validator.check(bad).size());
+        assertThrows(AppError.class, () -> validator.validate(bad));
+        assertEquals(Collections.singleton(1), validator.checkAll(Arrays.asList(ok, bad, ok), false, true).keySet());
+
+        // 空对象视为验证不通过 非随机访问列表按原顺序返回位置
+        assertThrows(AppError.class, () -> validator.validate(null));
+        assertEquals(1, validator.check(null).size());
+        assertEquals(Arrays.asList(1, 2), new ArrayList<>(validator.checkAll(new LinkedList<>(Arrays.asList(ok, null, bad)), true, false).keySet()));
+
+        // 未指定验证规则时不创建验证器
+        assertThrows(AppError.class, () -> AppBean.newinst(true).validator(Person.class, Collections.emptyMap()));
+        rules.put("missing", Collections.singletonList(required));
+        assertThrows(AppError.class, () -> AppBean.newinst(true).validator(Person.class, rules));
+    }
+
+    @Test
+    @DisplayName("测试按列投影")
+    public void testProjection() {
+        List<Person> ps = Arrays.asList(new Person("a", 1), new Person("b", 2), null);
+        ClassAccessProjection<Person> pj = AppClass.from(Person.class).access().project(ps, "age", "name");
+        assertEquals(3, pj.size());
+        assertEquals(0, pj.index("age"));
+        assertArrayEquals(new int[]{1, 2, 0}, pj.ints(0));
+        assertThrows(AppError.class, () -> pj.longs(0));
+        assertArrayEquals(new Object[]{"a", "b", null}, pj.column(1));
+        assertThrows(AppError.class, () -> pj.ints(1));
+        assertThrows(AppError.class, () -> AppClass.from(Person.class).access().project(ps, "none"));
+    }
+
+    @Test
+    @DisplayName("测试排序")
+    public void testSort() {
+        List<Person> ps = new ArrayList<>(Arrays.asList(new Person("b", 2), new Person("a", 2), null, new Person("c", 1)));
+        Beans.sortByProps(ps, "age", "name");
+        assertNull(ps.get(0));
+        assertEquals(Arrays.asList("c", "a", "b"), Arrays.asList(ps.get(1).getName(), ps.get(2).getName(), ps.get(3).getName()));
+
+        // 超过并行阈值的列表 结果与稳定排序一致
+        Random random = new Random(7);
+        List<Person> large = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) large.add(new Person("p" + i, random.nextInt(100)));
+        List<Person> expected = new ArrayList<>(large);
+        expected.sort(Comparator.comparingInt(Person::getAge));
+        for (boolean parallel : new boolean[]{false, true}) {
+            List<Person> sorted = new ArrayList<>(large);
+            Beans.sortByProps(sorted, parallel, "age");
+            assertEquals(expected, sorted);
+        }
+    }
+
+    @Test
+    @DisplayName("测试并行排序及前k个元素")
+    public void testTopK() {
+        Random random = new Random(11);
+        List<Person> ps = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) ps.add(new Person("p" + i, random.nextInt(1000)));
+        ps.add(null);
+        ps.add(5000, null);
+        Orders.OrderBuilder<Person> ob = Orders.OrderBuilder.build(Person.class).asc("age");
+
+        // 并行排序是稳定的 与顺序排序结果一致 空值升序时在前 降序时在后
+        List<Person> asc = new ArrayList<>(ps), desc = new ArrayList<>(ps);
+        ob.sort(asc);
+        ob.sort(desc, false);
+        List<Person> sorted = new ArrayList<>(ps);
+        ob.parallelSort(sorted);
+        assertEquals(asc, sorted);
+        sorted = new ArrayList<>(ps);
+        ob.parallelSort(sorted, false);
+        assertEquals(desc, sorted);
+        assertNull(desc.get(desc.size() - 1));
+
+        assertEquals(ages(asc.subList(0, 10)), ages(ob.topK(ps, 10)));
+        assertEquals(ages(desc.subList(0, 10)), ages(ob.topK(ps, 10, false)));
+        assertTrue(ob.topK(ps, 0).isEmpty());
+
+        // k 大于元素数量时返回全部元素
+        List<Person> small = Arrays.asList(new Person("a", 3), null, new Person("b", 1));
+        assertEquals(Arrays.asList(null, 1, 3), ages(ob.topK(small, 10)));
+        assertEquals(Arrays.asList(3, 1, null), ages(ob.topK(small, 10, false)));
+
+        // comp 添加的比较器参与排序
+        List<Person> same = new ArrayList<>(Arrays.asList(new Person("a", 1), new Person("b", 1), new Person("c", 1)));
+        Orders.OrderBuilder.build(Person.class).asc("age").comp(Comparator.comparing(Person::getName).reversed()).sort(same);
+        assertEquals(Arrays.asList("c", "b", "a"), Arrays.asList(same.get(0).getName(), same.get(1).getName(), same.get(2).getName()));
+    }
+
+    private static List<Integer> ages(List<Person> ps) {
+        List<Integer> ages = new ArrayList<>();
+        for (Person p : ps) ages.add((p != null) ? p.getAge() : null);
+        return ages;
+    }
+}
@@ -0,0 +1,316 @@
+package commons.box.app.test;
+
+import commons.box.app.AppError;
+import commons.box.app.BatchDataLoader;
+import commons.box.app.DataCache;
+import commons.box.app.DataCacheStatsListener;
+import commons.box.app.DataWeigher;
+import commons.box.app.SafeLinkedMap;
+import commons.box.app.internal.InternalDataCacheOffHeap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <p>创建作者：xingxiuyi </p>
+ * <p>版权所属：xingxiuyi </p>
+ */
+public class DataCacheTests {
+    @Test
+    @DisplayName("测试并发载入合并")
+    public void testCoalesce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        DataCache<String, String> cache = DataCache.<String, String>builder().loader(k -> {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            return "v:" + k;
+        }).build();
+
+        ExecutorService es = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> fs = new ArrayList<>();
+            for (int i = 0; i < 8; i++) fs.add(es.submit(() -> {
+                start.await();
+                return cache.get("a");
+            }));
+            start.countDown();
+            for (Future<String> f : fs) assertEquals("v:a", f.get(5, TimeUnit.SECONDS));
+        } finally {
+            es.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals("v:a", cache.getAsync("a").get(5, TimeUnit.SECONDS));
+        assertEquals("v:b", cache.getAsync("b").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("测试载入异常")
+    public void testLoadError() {
+        AppError error = AppError.error("load failed");
+        DataCache<String, String> cache = DataCache.<String, String>builder().loader(k -> {
+            throw error;
+        }).build();
+
+        // loader 抛出的 AppError 原样抛出 其他异常包装为 AppError
+        assertSame(error, assertThrows(AppError.class, () -> cache.get("a")));
+        IllegalStateException ise = new IllegalStateException();
+        assertSame(ise, assertThrows(AppError.class, () -> cache.get("b", k -> {
+            throw ise;
+        })).getCause());
+    }
+
+    @Test
+    @DisplayName("测试异步刷新")
+    public void testRefresh() throws Exception {
+        AtomicInteger version = new AtomicInteger();
+        CountDownLatch reloading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DataCache<String, Integer> cache = DataCache.<String, Integer>builder().loader(k -> {
+            int v = version.incrementAndGet();
+            if (v > 1) {
+                reloading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+            return v;
+        }).refreshAfterWrite(50).build();
+
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        Thread.sleep(100);
+
+        // 重新载入在执行器中进行 载入完成前返回旧值
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertTrue(reloading.await(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        release.countDown();
+        for (int i = 0; i < 100 && cache.getIfPresent("a") != 2; i++) Thread.sleep(10);
+        assertEquals(Integer.valueOf(2), cache.getIfPresent("a"));
+    }
+
+    @Test
+    @DisplayName("测试按权重限制大小")
+    public void testWeight() {
+        assertEquals(16 + 24 + 6, DataWeigher.Bytes.estimate("abc"));
+        assertEquals(16 + 100, DataWeigher.Bytes.estimate(new byte[100]));
+
+        DataCache<Integer, byte[]> cache = DataCache.<Integer, byte[]>builder().loader(k -> new byte[1000]).maxWeight(20000).build();
+        for (int i = 0; i < 100; i++) cache.get(i);
+        assertTrue(cache.size() * (16 + 16 + 1000) <= 20000);
+        assertTrue(cache.size() > 0);
+
+        // 不能同时设置 max 与 maxWeight
+        assertThrows(AppError.class, () -> DataCache.<Integer, byte[]>builder().max(10).maxWeight(100).build());
+    }
+
+    @Test
+    @DisplayName("测试堆外存储")
+    public void testOffHeap() {
+        AtomicInteger loads = new AtomicInteger();
+        AtomicLong time = new AtomicLong();
+        DataCache<Integer, String> cache = DataCache.<Integer, String>builder().loader(k -> {
+            loads.incrementAndGet();
+            return "v" + k;
+        }).max(10).offHeap(1 << 20).expireAfterWrite(1000).ticker(time::get).build();
+
+        // 因容量清除的记录转入堆外 再次读取时取回 不调用loader
+        for (int i = 0; i < 50; i++) cache.get(i);
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.offHeapSize() > 0);
+        for (int i = 0; i < 50; i++) assertEquals("v" + i, cache.get(i));
+        assertEquals(50, loads.get());
+
+        // 写入及移除后不会取回堆外的旧值
+        cache.put(0, "new");
+        cache.remove(1);
+        for (int i = 2; i < 50; i++) cache.get(i);
+        assertEquals("new", cache.get(0));
+        assertEquals("v1", cache.get(1));
+        assertEquals(51, loads.get());
+
+        // 取回的记录仍按最初写入的时间过期
+        time.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        for (int i = 2; i < 50; i++) cache.get(i);
+        assertEquals(51, loads.get());
+        time.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        loads.set(0);
+        for (int i = 49; i >= 2; i--) cache.get(i);
+        assertEquals(48, loads.get());
+    }
+
+    @Test
+    @DisplayName("测试堆外存储分段")
+    public void testOffHeapStore() {
+        InternalDataCacheOffHeap<Integer> store = new InternalDataCacheOffHeap<>(64L << 20);
+        for (int i = 0; i < 1000; i++) store.put(i, new byte[]{(byte) i}, Long.MAX_VALUE);
+        assertEquals(1000, store.size());
+        assertEquals(1000, store.bytes());
+
+        InternalDataCacheOffHeap.Record r = store.take(7);
+        assertArrayEquals(new byte[]{7}, r.value());
+        assertEquals(Long.MAX_VALUE, r.expireAt());
+        assertNull(store.take(7));
+
+        // 已过期的记录不取回 超过块大小的记录不保存
+        store.put(8, new byte[1], System.currentTimeMillis() - 1);
+        assertNull(store.take(8));
+        assertFalse(store.put(9, new byte[64 << 20], Long.MAX_VALUE));
+        assertNull(store.take(9));
+
+        store.removeIf(k -> k < 500);
+        assertEquals(500, store.size());
+        store.clear();
+        assertEquals(0, store.size());
+
+        // 回收块时未过期的记录交给回收监听 已过期的直接丢弃
+        AtomicLong time = new AtomicLong();
+        Map<Integer, byte[]> evicted = new HashMap<>();
+        InternalDataCacheOffHeap<Integer> small = new InternalDataCacheOffHeap<>(1024, time::get, evicted::put);
+        small.put(1, new byte[400], 10);
+        small.put(2, new byte[400], Long.MAX_VALUE);
+        time.set(10);
+        assertTrue(small.put(3, new byte[400], Long.MAX_VALUE));
+        assertEquals(Collections.singleton(2), evicted.keySet());
+        assertEquals(400, evicted.get(2).length);
+        assertEquals(1, small.size());
+    }
+
+    @Test
+    @DisplayName("测试堆外回收通知")
+    public void testOffHeapEviction() {
+        List<Integer> removed = new ArrayList<>();
+        DataCache<Integer, String> cache = DataCache.<Integer, String>builder().loader(k -> "v" + k)
+                .max(1).offHeap(1024).removal(e -> removed.add(e.getKey())).build();
+        for (int i = 0; i < 500; i++) cache.get(i);
+
+        // 每个载入的记录在堆内、堆外或已通知移除 转入堆外不计为清除
+        assertFalse(removed.isEmpty());
+        assertEquals(500, cache.size() + cache.offHeapSize() + removed.size());
+        assertEquals(removed.size(), cache.stats().evictionCount());
+    }
+
+    @Test
+    @DisplayName("测试批量载入")
+    public void testGetAll() {
+        List<Set<Integer>> calls = new ArrayList<>();
+        DataCache<Integer, String> cache = DataCache.<Integer, String>builder().loader(new BatchDataLoader<Integer, String>() {
+            @Override
+            public Map<Integer, String> loadAll(Set<Integer> keys) {
+                calls.add(keys);
+                Map<Integer, String> map = new HashMap<>();
+                for (Integer k : keys) if (k != 3) map.put(k, "v" + k);
+                return map;
+            }
+        }).build();
+
+        cache.get(1);
+        Map<Integer, String> all = cache.getAll(Arrays.asList(1, 2, 2, 3, 4));
+        assertEquals(2, calls.size());
+        assertEquals(3, calls.get(1).size());
+        assertEquals(4, all.size());
+        assertEquals("v4", all.get(4));
+        assertNull(all.get(3));
+
+        // 重复的键只统计一次 载入结果中缺少的键不再重复载入
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(4, cache.stats().missCount());
+        cache.getAll(Arrays.asList(3, 4));
+        assertEquals(2, calls.size());
+        assertEquals(3, cache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("测试统计及MBean")
+    public void testStats() {
+        AtomicInteger evictions = new AtomicInteger();
+        DataCacheStatsListener failing = new DataCacheStatsListener() {
+            @Override
+            public void hits(int count) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void eviction() {
+                evictions.incrementAndGet();
+                throw new IllegalStateException();
+            }
+        };
+
+        // 监听器出错不影响读取
+        DataCache<Integer, String> cache = DataCache.<Integer, String>builder().loader(k -> "v" + k).max(4).statsListener(failing).build();
+        for (int r = 0; r < 2; r++) for (int i = 0; i < 3; i++) assertEquals("v" + i, cache.get(i));
+        assertEquals(3, cache.stats().hitCount());
+        assertEquals(3, cache.stats().loadCount());
+
+        SafeLinkedMap<Integer, Integer> map = new SafeLinkedMap.Builder<Integer, Integer>().maximumWeightedCapacity(10).statsListener(failing).build();
+        for (int i = 0; i < 20; i++) map.put(i, i);
+        assertEquals(Integer.valueOf(19), map.get(19));
+        map.cleanUp();
+        assertEquals(10, map.stats().evictionCount());
+        assertEquals(10, evictions.get());
+
+        // 同名注册出错 注销后可重新注册
+        ObjectName on = cache.registerMBean("tests");
+        try {
+            assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(on));
+            assertThrows(AppError.class, () -> cache.registerMBean("tests"));
+            assertTrue(cache.unregisterMBean("tests"));
+            assertFalse(cache.unregisterMBean("tests"));
+            assertEquals(on, cache.registerMBean("tests"));
+        } finally {
+            cache.unregisterMBean("tests");
+        }
+    }
+
+    @Test
+    @DisplayName("测试批量移除")
+    public void testInvalidate() {
+        AtomicInteger loads = new AtomicInteger();
+        DataCache<Integer, String> cache = DataCache.<Integer, String>builder().loader(k -> {
+            loads.incrementAndGet();
+            return "v" + k;
+        }).max(10).offHeap(1 << 20).build();
+        for (int i = 0; i < 40; i++) cache.get(i);
+        assertTrue(cache.offHeapSize() > 0);
+
+        // 堆内及堆外的记录都被移除 再次读取时重新载入
+        cache.invalidateAll(Arrays.asList(0, 39, 0));
+        cache.invalidateIf(k -> k % 2 == 1);
+        loads.set(0);
+        for (int i = 0; i < 40; i++) cache.get(i);
+        assertEquals(21, loads.get());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.offHeapSize());
+    }
+}
@@ -4,8 +4,27 @@ import commons.box.app.SafeLinkedMap;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * <p>创建作者：xingxiuyi </p>
@@ -56,4 +75,218 @@ public class MapsTests {
         m.remove("k6");
         assertEquals(4, m.size());
     }
+
+    @Test
+    @DisplayName("测试读缓冲")
+    public void testReadBuffer() throws Exception {
+        SafeLinkedMap<Integer, Integer> m = new SafeLinkedMap.Builder<Integer, Integer>()
+                .maximumWeightedCapacity(100).build();
+        for (int i = 0; i < 10; i++) m.put(i, i);
+
+        AtomicLong[] writes = field(m, "readBufferWriteCount");
+        AtomicLong[] drains = field(m, "readBufferDrainAtWriteCount");
+        AtomicReference<?>[][] buffers = field(m, "readBuffers");
+        int index = ((int) Thread.currentThread().getId()) & (writes.length - 1);
+
+        // 读取先记录在缓冲中 积压达到阈值时才整理
+        for (int i = 0; i < 32; i++) m.get(0);
+        assertEquals(32, writes[index].get());
+        assertEquals(0, drains[index].get());
+        m.get(0);
+        assertEquals(33, drains[index].get());
+        assertEquals(Integer.valueOf(0), m.descendingKeySet().iterator().next());
+
+        // 并发读取可能互相覆盖而丢失记录 缓冲大小固定
+        int threads = 8;
+        int reads = 5000;
+        long before = Arrays.stream(writes).mapToLong(AtomicLong::get).sum();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> fs = new ArrayList<>();
+            for (int t = 0; t < threads; t++) fs.add(es.submit(() -> {
+                start.await();
+                for (int i = 0; i < reads; i++) assertNotNull(m.get(ThreadLocalRandom.current().nextInt(10)));
+                return null;
+            }));
+            start.countDown();
+            for (Future<?> f : fs) f.get(10, TimeUnit.SECONDS);
+        } finally {
+            es.shutdownNow();
+        }
+        long recorded = Arrays.stream(writes).mapToLong(AtomicLong::get).sum() - before;
+        assertTrue(recorded > 0 && recorded <= (long) threads * reads);
+        for (AtomicReference<?>[] buffer : buffers) assertEquals(128, buffer.length);
+        m.cleanUp();
+        assertEquals(10, m.size());
+        assertEquals(10, m.ascendingKeySet().size());
+
+        // 缓冲多次循环使用后仍按最后读取的顺序排列
+        SafeLinkedMap<Integer, Integer> n = new SafeLinkedMap.Builder<Integer, Integer>()
+                .maximumWeightedCapacity(100).build();
+        for (int i = 0; i < 10; i++) n.put(i, i);
+        for (int i = 0; i < 10000; i++) n.get(ThreadLocalRandom.current().nextInt(10));
+        for (int i = 9; i >= 0; i--) n.get(i);
+        assertEquals(Arrays.asList(9, 8, 7, 6, 5, 4, 3, 2, 1, 0), new ArrayList<>(n.ascendingKeySet()));
+    }
+
+    @Test
+    @DisplayName("测试定时整理")
+    public void testCatchUp() throws Exception {
+        AtomicLong time = new AtomicLong();
+        ScheduledExecutorService es = Executors.newSingleThreadScheduledExecutor();
+        try {
+            SafeLinkedMap<Integer, Integer> m = new SafeLinkedMap.Builder<Integer, Integer>()
+                    .maximumWeightedCapacity(100).expireAfterWrite(1, TimeUnit.SECONDS).ticker(time::get)
+                    .catchup(es, 10, TimeUnit.MILLISECONDS).build();
+            for (int i = 0; i < 10; i++) m.put(i, i);
+            assertEquals(10, m.size());
+
+            // 没有读写时由定时任务移除过期数据
+            time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+            for (int i = 0; i < 500 && m.size() > 0; i++) Thread.sleep(10);
+            assertEquals(0, m.size());
+        } finally {
+            es.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("测试写缓冲上限")
+    public void testWriteBackpressure() throws Exception {
+        SafeLinkedMap<Integer, Integer> m = new SafeLinkedMap.Builder<Integer, Integer>()
+                .maximumWeightedCapacity(10000).build();
+        Lock lock = field(m, "evictionLock");
+        AtomicInteger pending = field(m, "writeBufferLength");
+
+        // 整理被占用时写入先进入缓冲 超过上限后写入线程等待整理
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        lock.lock();
+        try {
+            Future<?> writer;
+            try {
+                writer = es.submit(() -> {
+                    for (int i = 0; i < 2000; i++) m.put(i, i);
+                });
+                for (int i = 0; i < 500 && pending.get() <= 1024; i++) Thread.sleep(10);
+                Thread.sleep(100);
+                assertEquals(1025, pending.get());
+                assertFalse(writer.isDone());
+            } finally {
+                lock.unlock();
+            }
+            writer.get(10, TimeUnit.SECONDS);
+        } finally {
+            es.shutdownNow();
+        }
+        assertTrue(pending.get() <= 1024);
+        m.cleanUp();
+        assertEquals(0, pending.get());
+        assertEquals(2000, m.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <F> F field(SafeLinkedMap<?, ?> map, String name) throws Exception {
+        Field f = SafeLinkedMap.class.getDeclaredField(name);
+        f.setAccessible(true);
+        return (F) f.get(map);
+    }
+
+    @Test
+    @DisplayName("测试TinyLFU机制")
+    public void testTinyLFU() {
+        SafeLinkedMap<String, Object> m = new SafeLinkedMap.Builder<String, Object>()
+                .maximumWeightedCapacity(100).policy(SafeLinkedMap.Policy.TINY_LFU).build();
+
+        for (int i = 0; i < 50; i++) m.put("hot" + i, i);
+        for (int r = 0; r < 5; r++) for (int i = 0; i < 50; i++) m.get("hot" + i);
+
+        // 只访问一次的数据不应替换频繁访问的数据
+        for (int i = 0; i < 1000; i++) m.put("scan" + i, i);
+
+        assertEquals(100, m.size());
+        for (int i = 0; i < 50; i++) assertNotNull(m.get("hot" + i));
+        assertEquals(300, m.hitCount());
+    }
+
+    @Test
+    @DisplayName("测试TinyLFU调整容量")
+    public void testTinyLFUCapacity() {
+        SafeLinkedMap<String, Object> m = new SafeLinkedMap.Builder<String, Object>()
+                .maximumWeightedCapacity(100).policy(SafeLinkedMap.Policy.TINY_LFU).build();
+
+        for (int i = 0; i < 50; i++) m.put("hot" + i, i);
+        for (int r = 0; r < 5; r++) for (int i = 0; i < 50; i++) m.get("hot" + i);
+
+        // 缩小容量时保留已统计的访问频率
+        m.setCapacity(60);
+        for (int i = 0; i < 1000; i++) m.put("scan" + i, i);
+        assertEquals(60, m.size());
+        for (int i = 0; i < 50; i++) assertNotNull(m.get("hot" + i));
+
+        m.setCapacity(1);
+        m.put("last", 0);
+        assertEquals(1, m.size());
+    }
+
+    @Test
+    @DisplayName("测试过期")
+    public void testExpire() {
+        AtomicLong time = new AtomicLong();
+        SafeLinkedMap<String, Object> m = new SafeLinkedMap.Builder<String, Object>()
+                .maximumWeightedCapacity(100).expireAfterWrite(10, TimeUnit.SECONDS).ticker(time::get).build();
+
+        m.put("a", 1);
+        m.put("b", 2, 1, TimeUnit.MINUTES);
+        time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, m.get("a"));
+
+        time.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        assertNull(m.get("a"));
+        assertEquals(2, m.get("b"));
+
+        // 未访问的过期数据在整理时移除
+        time.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        m.cleanUp();
+        assertEquals(0, m.size());
+
+        // 替换时保留数据自身的过期时长并重新计时
+        m.put("c", 3, 1, TimeUnit.MINUTES);
+        time.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertEquals(3, m.replace("c", 4));
+        time.addAndGet(TimeUnit.SECONDS.toNanos(40));
+        assertEquals(4, m.get("c"));
+        time.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertNull(m.get("c"));
+
+        // 按访问过期时读取会延后过期时间 整理时未到期的数据重新加入时间轮
+        SafeLinkedMap<String, Object> a = new SafeLinkedMap.Builder<String, Object>()
+                .maximumWeightedCapacity(100).expireAfterAccess(10, TimeUnit.SECONDS).ticker(time::get).build();
+        a.put("a", 1);
+        a.put("b", 2);
+        time.addAndGet(TimeUnit.SECONDS.toNanos(8));
+        assertEquals(1, a.get("a"));
+        time.addAndGet(TimeUnit.SECONDS.toNanos(8));
+        a.cleanUp();
+        assertEquals(1, a.size());
+        assertEquals(1, a.get("a"));
+        time.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        a.cleanUp();
+        assertEquals(1, a.size());
+        time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        a.cleanUp();
+        assertEquals(0, a.size());
+
+        // 同时按写入过期时 读取不能超过写入的过期时间
+        SafeLinkedMap<String, Object> w = new SafeLinkedMap.Builder<String, Object>()
+                .maximumWeightedCapacity(100).expireAfterAccess(10, TimeUnit.SECONDS).expireAfterWrite(20, TimeUnit.SECONDS)
+                .ticker(time::get).build();
+        w.put("a", 1);
+        time.addAndGet(TimeUnit.SECONDS.toNanos(8));
+        assertEquals(1, w.get("a"));
+        time.addAndGet(TimeUnit.SECONDS.toNanos(8));
+        assertEquals(1, w.get("a"));
+        time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertNull(w.get("a"));
+    }
 }